@@ -0,0 +1,79 @@
+package site.aberdeen;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.swing.JTextField;
+import javax.swing.table.TableModel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the panel's per-edit work headlessly: recalculating the totals, reading an amount
+ * field and the checkpoint/undo/redo cycle.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class BudgetBaseBenchmark {
+
+    @Param({"6", "100", "1000"})
+    public int lineCount;
+
+    private BudgetBase budget;
+    private TableModel incomeTable;
+    private JTextField validField;
+    private JTextField invalidField;
+    private long amount;
+
+    @Setup
+    public void setUp() {
+        budget = new BudgetBase(null);
+        BudgetModel model = budget.getModel();
+        while (model.getLineCount() < lineCount) {
+            LineItems items = model.getLineCount() % 2 == 0 ? model.getIncomeItems() : model.getSpendingItems();
+            items.add("Line " + model.getLineCount(), model.getLineCount() * 1234L);
+        }
+        incomeTable = budget.getIncomeTable().getModel();
+        validField = new JTextField("$12,345.67");
+        invalidField = new JTextField("12,34x.5");
+    }
+
+    @Benchmark
+    public long calculateAll() {
+        budget.getModel().getIncomeItems().set(0, ++amount);
+        budget.calculateAll();
+        return budget.getModel().getCashFlow();
+    }
+
+    @Benchmark
+    public long getTextFieldValueValid() {
+        return budget.getTextFieldValue(validField);
+    }
+
+    @Benchmark
+    public long getTextFieldValueInvalid() {
+        return budget.getTextFieldValue(invalidField);
+    }
+
+    @Benchmark
+    public boolean saveStateUndoCycle() {
+        budget.saveState();
+        incomeTable.setValueAt(Long.toString(++amount), 0, LineItemTableModel.AMOUNT_COLUMN);
+        budget.saveState();
+        budget.undo();
+        budget.redo();
+        return budget.getHistory().canUndo();
+    }
+}
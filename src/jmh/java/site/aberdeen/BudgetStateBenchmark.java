@@ -0,0 +1,61 @@
+package site.aberdeen;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BudgetStateBenchmark {
+
+    @Param({"6", "100", "1000"})
+    public int lineCount;
+
+    private long[] incomeValues;
+    private long[] spendingValues;
+    private BudgetState state;
+    private BudgetState equalState;
+
+    @Setup
+    public void setUp() {
+        incomeValues = new long[lineCount / 2];
+        spendingValues = new long[lineCount - incomeValues.length];
+        for (int line = 0; line < incomeValues.length; line++) {
+            incomeValues[line] = line * 1234L;
+        }
+        for (int line = 0; line < spendingValues.length; line++) {
+            spendingValues[line] = line * 567L;
+        }
+        state = new BudgetState(incomeValues, spendingValues);
+        equalState = new BudgetState(incomeValues, spendingValues);
+    }
+
+    @Benchmark
+    public BudgetState construct() {
+        return new BudgetState(incomeValues, spendingValues);
+    }
+
+    @Benchmark
+    public boolean equalsEqualState() {
+        return state.equals(equalState);
+    }
+
+    @Benchmark
+    public int hashCodeState() {
+        return state.hashCode();
+    }
+}
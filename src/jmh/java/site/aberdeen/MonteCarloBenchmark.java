@@ -0,0 +1,47 @@
+package site.aberdeen;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MonteCarloBenchmark {
+
+    @Param({"6", "20"})
+    public int lineCount;
+
+    private MonteCarloSimulation simulation;
+
+    @Setup
+    public void setUp() {
+        int incomeCount = lineCount / 2;
+        simulation = new MonteCarloSimulation(incomeCount, lineCount - incomeCount);
+        for (int line = 0; line < lineCount; line++) {
+            if (line % 2 == 0) {
+                simulation.setNormal(line, 50000 + line * 1000, 5000);
+            } else {
+                simulation.setUniform(line, 30000, 60000);
+            }
+        }
+    }
+
+    @Benchmark
+    public SimulationResult tenMillionPaths() {
+        return simulation.run(10_000_000, 2024);
+    }
+}
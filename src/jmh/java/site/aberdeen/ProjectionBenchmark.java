@@ -0,0 +1,51 @@
+package site.aberdeen;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProjectionBenchmark {
+
+    @Param({"100", "500"})
+    public int scenarioCount;
+
+    @Param({"30", "50"})
+    public int years;
+
+    private Scenario[] scenarios;
+
+    @Setup
+    public void setUp() {
+        scenarios = new Scenario[scenarioCount];
+        for (int s = 0; s < scenarioCount; s++) {
+            scenarios[s] = new Scenario();
+            scenarios[s].setIncomeGrowth(0.01 + s * 0.0001);
+            scenarios[s].setInflation(0.025);
+            scenarios[s].setInterestRate(0.04);
+            scenarios[s].addEvent(s % (years * ProjectionEngine.WEEKS_PER_YEAR), -2_500_000);
+        }
+    }
+
+    @Benchmark
+    public Projection sweep() {
+        return ProjectionEngine.project(5_200_000, 4_000_000, scenarios,
+                years * ProjectionEngine.WEEKS_PER_YEAR, ForkJoinPool.commonPool());
+    }
+}
@@ -0,0 +1,66 @@
+package site.aberdeen;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SummationBenchmark {
+
+    @Param({"100", "10000", "1000000"})
+    public int length;
+
+    private long[] cents;
+    private double[] amounts;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(1);
+        cents = random.longs(length, 0, 10_000_000).toArray();
+        amounts = random.doubles(length, 0, 100_000).toArray();
+    }
+
+    @Benchmark
+    public long plainLongLoop() {
+        long total = 0;
+        for (long value : cents) {
+            total += value;
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long longKernel() {
+        return Summation.sum(cents);
+    }
+
+    @Benchmark
+    public double plainDoubleLoop() {
+        double total = 0;
+        for (double value : amounts) {
+            total += value;
+        }
+        return total;
+    }
+
+    @Benchmark
+    public double compensatedPairwise() {
+        return Summation.sum(amounts);
+    }
+}
@@ -0,0 +1,607 @@
+package site.aberdeen;
+
+import javax.swing.JComboBox;
+import javax.swing.JTable;
+import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * Load-test harness: replays an edit session (keystrokes into amount cells, focus moving in and
+ * out of them, period switches, undo and redo) against a {@link BudgetBase} through the Event
+ * Dispatch Thread, and measures each event's latency from the moment it was due to the moment the
+ * total fields show its effect, including any background recalculation. An event is shown once
+ * the {@link Recalculator} publishes the generation it left behind or a later one, whose totals
+ * include it; events shown by a later generation are also counted as coalesced, but never left
+ * out of the latencies, since they are exactly the ones queued behind slow recalculations.
+ * <p>
+ * Events are posted on schedule whether or not earlier ones have finished, so a stalled EDT shows
+ * up as latency of every event queued behind it rather than as fewer events sent. Results go into
+ * a {@link MetricsRegistry} alongside the allocation rate of the EDT and of every thread, and
+ * {@link #main} writes them in {@link MetricsRegistry#dump(Writer)} form so that runs of
+ * different versions can be diffed; {@code mvn -Ploadtest verify} runs a synthetic session. Lives
+ * in {@code src/loadtest/java}, which only that profile compiles, so it stays out of the jar.
+ * <p>
+ * Sessions are text, one event per line, with the time in milliseconds since the start:
+ * <pre>
+ * 0     edit income 1
+ * 80    type 4
+ * 160   backspace
+ * 400   commit
+ * 900   period overall monthly
+ * 1200  undo
+ * </pre>
+ * {@code edit} starts editing a line's amount with its text selected and {@code commit} ends the
+ * edit, as clicking into and away from a cell would.
+ */
+public class SessionReplayer {
+
+    public static final String LATENCY = "replay.latency";
+    public static final String EVENTS = "replay.events";
+    public static final String EVENTS_PER_SECOND = "replay.eventsPerSecond";
+    public static final String COALESCED = "replay.coalesced";
+    public static final String EDT_ALLOCATION_RATE = "replay.edt.allocatedBytesPerSecond";
+    public static final String ALLOCATION_RATE = "replay.allocatedBytesPerSecond";
+
+    public enum Command {
+        EDIT, TYPE, BACKSPACE, COMMIT, PERIOD, UNDO, REDO
+    }
+
+    private static final String[] SECTIONS = {"income", "spending", "overall"};
+    private static final TimePeriod[] PERIODS = TimePeriod.values();
+    private static final long COMPLETION_TIMEOUT_MILLIS = 30_000;
+
+    /**
+     * One step of a session. {@code section} indexes income, spending and overall, in that order.
+     */
+    public static final class Event {
+
+        final long nanos;
+        final Command command;
+        final int section;
+        final int row;
+        final String text;
+        final TimePeriod period;
+
+        Event(long nanos, Command command, int section, int row, String text, TimePeriod period) {
+            this.nanos = nanos;
+            this.command = command;
+            this.section = section;
+            this.row = row;
+            this.text = text;
+            this.period = period;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public Command getCommand() {
+            return command;
+        }
+
+        /**
+         * The event as a session line.
+         */
+        @Override
+        public String toString() {
+            String time = Double.toString(nanos / 1e6);
+            String name = command.name().toLowerCase(Locale.ROOT);
+            switch (command) {
+                case EDIT:
+                    return time + " " + name + " " + SECTIONS[section] + " " + row;
+                case TYPE:
+                    return time + " " + name + " " + text;
+                case PERIOD:
+                    return time + " " + name + " " + SECTIONS[section] + " " + period.name().toLowerCase(Locale.ROOT);
+                default:
+                    return time + " " + name;
+            }
+        }
+    }
+
+    private final BudgetBase budget;
+    private final Recalculator<?, ?> recalculator;
+    private LatencyHistogram latency;
+
+    // EDT only
+    private JTextField editor;
+    // Due time and recalculator generation of each event not yet shown, in dispatch order.
+    private long[] pending = new long[64];
+    private long[] pendingGenerations = new long[64];
+    private int pendingCount;
+    private long coalesced;
+    private boolean checkScheduled;
+
+    /**
+     * Must be called on the EDT, like everything touching {@code budget}.
+     */
+    public SessionReplayer(BudgetBase budget) {
+        this.budget = budget;
+        recalculator = budget.getRecalculator();
+        budget.getOverallField().getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                totalsChanged();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                totalsChanged();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+            }
+        });
+    }
+
+    /**
+     * Replays {@code session} with its times divided by {@code speed}, blocking until every event
+     * has been handled and the fields show the result, and records the results in {@code metrics}.
+     * Must not be called on the EDT.
+     *
+     * @throws IllegalStateException if the totals are still stale {@value #COMPLETION_TIMEOUT_MILLIS} ms after the last event
+     */
+    public void replay(List<Event> session, double speed, MetricsRegistry metrics) throws InterruptedException {
+        LatencyHistogram histogram = metrics.histogram(LATENCY);
+        Runnable[] dispatches = new Runnable[session.size()];
+        long[] scheduled = new long[session.size()];
+        for (int i = 0; i < dispatches.length; i++) {
+            Event event = session.get(i);
+            int index = i;
+            dispatches[i] = () -> dispatch(event, scheduled[index]);
+        }
+        long edtThread = onEdt(() -> {
+            latency = histogram;
+            coalesced = 0;
+            return Thread.currentThread().getId();
+        });
+        AllocationCounter allocation = new AllocationCounter(edtThread);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < dispatches.length; i++) {
+            long due = start + (long) (session.get(i).nanos / speed);
+            long wait;
+            while ((wait = due - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            scheduled[i] = due;
+            SwingUtilities.invokeLater(dispatches[i]);
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(COMPLETION_TIMEOUT_MILLIS);
+        long stale;
+        boolean published;
+        do {
+            // drain the events still queued, then wait for the recalculation they started
+            onEdt(() -> 0L);
+            published = recalculator.awaitPublished(COMPLETION_TIMEOUT_MILLIS);
+            stale = onEdt(() -> {
+                completeIfPublished();
+                return pendingCount;
+            });
+        } while (published && stale != 0 && System.nanoTime() < deadline);
+        long elapsed = System.nanoTime() - start;
+        if (stale != 0) {
+            throw new IllegalStateException(stale + " events never showed in the totals");
+        }
+
+        metrics.gauge(EVENTS).set(session.size());
+        metrics.gauge(COALESCED).set(onEdt(() -> coalesced));
+        metrics.gauge(EVENTS_PER_SECOND).set(perSecond(session.size(), elapsed));
+        metrics.gauge(EDT_ALLOCATION_RATE).set(perSecond(allocation.getEdtBytes(), elapsed));
+        metrics.gauge(ALLOCATION_RATE).set(perSecond(allocation.getTotalBytes(), elapsed));
+    }
+
+    private static long perSecond(long count, long nanos) {
+        return count < 0 ? -1 : Math.round(count * 1e9 / Math.max(nanos, 1));
+    }
+
+    private void dispatch(Event event, long scheduled) {
+        // a result published since the last check must be seen before this event supersedes it
+        completeIfPublished();
+        apply(event);
+        if (pendingCount == pending.length) {
+            pending = Arrays.copyOf(pending, pendingCount * 2);
+            pendingGenerations = Arrays.copyOf(pendingGenerations, pendingCount * 2);
+        }
+        pending[pendingCount] = scheduled;
+        pendingGenerations[pendingCount] = recalculator.getGeneration();
+        pendingCount++;
+        completeIfPublished();
+    }
+
+    private void apply(Event event) {
+        switch (event.command) {
+            case EDIT:
+                JTable table = event.section == 0 ? budget.getIncomeTable() : budget.getSpendingTable();
+                if (table.getRowCount() == 0) {
+                    editor = null;
+                    return;
+                }
+                if (table.isEditing()) {
+                    table.getCellEditor().stopCellEditing();
+                }
+                table.editCellAt(event.row % table.getRowCount(), LineItemTableModel.AMOUNT_COLUMN);
+                editor = (JTextField) table.getEditorComponent();
+                if (editor != null) {
+                    editor.selectAll();
+                }
+                break;
+            case TYPE:
+                if (isEditing()) {
+                    editor.replaceSelection(event.text);
+                }
+                break;
+            case BACKSPACE:
+                if (isEditing()) {
+                    backspace(editor);
+                }
+                break;
+            case COMMIT:
+                if (isEditing()) {
+                    JTable editing = (JTable) editor.getParent();
+                    editing.getCellEditor().stopCellEditing();
+                }
+                editor = null;
+                break;
+            case PERIOD:
+                combo(event.section).setSelectedItem(event.period);
+                break;
+            case UNDO:
+                budget.undo();
+                break;
+            case REDO:
+                budget.redo();
+                break;
+        }
+    }
+
+    private boolean isEditing() {
+        return editor != null && editor.getParent() instanceof JTable && ((JTable) editor.getParent()).isEditing();
+    }
+
+    private static void backspace(JTextField field) {
+        int start = field.getSelectionStart();
+        int end = field.getSelectionEnd();
+        if (start == end && start > 0) {
+            start--;
+        }
+        if (start < end) {
+            Document document = field.getDocument();
+            try {
+                document.remove(start, end - start);
+            } catch (BadLocationException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private JComboBox<TimePeriod> combo(int section) {
+        switch (section) {
+            case 0:
+                return budget.getIncomeGranularity();
+            case 1:
+                return budget.getExpenseGranularity();
+            default:
+                return budget.getOverallGranularity();
+        }
+    }
+
+    /**
+     * Called while a result is being published, before the recalculator counts it as published,
+     * so the check runs once the publication has finished.
+     */
+    private void totalsChanged() {
+        if (pendingCount > 0 && !checkScheduled) {
+            checkScheduled = true;
+            SwingUtilities.invokeLater(() -> {
+                checkScheduled = false;
+                completeIfPublished();
+            });
+        }
+    }
+
+    /**
+     * Completes the events whose generation is on screen or was superseded by the one on screen,
+     * recording the latency of each, and counts the superseded ones as coalesced.
+     */
+    private void completeIfPublished() {
+        long published = recalculator.getPublishedGeneration();
+        long now = System.nanoTime();
+        int done = 0;
+        while (done < pendingCount && pendingGenerations[done] <= published) {
+            latency.record(now - pending[done]);
+            if (pendingGenerations[done] != published) {
+                coalesced++;
+            }
+            done++;
+        }
+        if (done > 0) {
+            System.arraycopy(pending, done, pending, 0, pendingCount - done);
+            System.arraycopy(pendingGenerations, done, pendingGenerations, 0, pendingCount - done);
+            pendingCount -= done;
+        }
+    }
+
+    private static long onEdt(LongSupplier task) throws InterruptedException {
+        long[] result = new long[1];
+        try {
+            SwingUtilities.invokeAndWait(() -> result[0] = task.getAsLong());
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        return result[0];
+    }
+
+    /**
+     * Bytes allocated since construction by the EDT and by every platform thread alive at either
+     * end, from the HotSpot thread allocation counters; -1 where the JVM has none. Threads that
+     * start and finish in between are missed.
+     */
+    private static final class AllocationCounter {
+
+        private final com.sun.management.ThreadMXBean threads;
+        private final long edtThread;
+        private final Map<Long, Long> before = new HashMap<>();
+
+        AllocationCounter(long edtThread) {
+            java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            threads = bean instanceof com.sun.management.ThreadMXBean
+                    && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()
+                    ? (com.sun.management.ThreadMXBean) bean : null;
+            this.edtThread = edtThread;
+            if (threads != null) {
+                threads.setThreadAllocatedMemoryEnabled(true);
+                long[] ids = threads.getAllThreadIds();
+                long[] bytes = threads.getThreadAllocatedBytes(ids);
+                for (int i = 0; i < ids.length; i++) {
+                    before.put(ids[i], bytes[i]);
+                }
+            }
+        }
+
+        long getEdtBytes() {
+            if (threads == null) {
+                return -1;
+            }
+            return threads.getThreadAllocatedBytes(edtThread) - before.getOrDefault(edtThread, 0L);
+        }
+
+        long getTotalBytes() {
+            if (threads == null) {
+                return -1;
+            }
+            long[] ids = threads.getAllThreadIds();
+            long[] bytes = threads.getThreadAllocatedBytes(ids);
+            long total = 0;
+            for (int i = 0; i < ids.length; i++) {
+                if (bytes[i] >= 0) {
+                    total += bytes[i] - before.getOrDefault(ids[i], 0L);
+                }
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Reads a session, skipping blank lines and {@code #} comments.
+     */
+    public static List<Event> read(BufferedReader in) throws IOException {
+        List<Event> session = new ArrayList<>();
+        String line;
+        int number = 0;
+        while ((line = in.readLine()) != null) {
+            number++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            Event event = parse(line.split("\\s+"));
+            if (event == null) {
+                throw new IOException("line " + number + ": unknown event " + line);
+            }
+            if (!session.isEmpty() && event.nanos < session.get(session.size() - 1).nanos) {
+                throw new IOException("line " + number + ": time goes backwards");
+            }
+            session.add(event);
+        }
+        return session;
+    }
+
+    private static Event parse(String[] words) {
+        if (words.length < 2) {
+            return null;
+        }
+        long nanos;
+        Command command;
+        try {
+            nanos = Math.round(Double.parseDouble(words[0]) * 1e6);
+            command = Command.valueOf(words[1].toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (nanos < 0) {
+            return null;
+        }
+        int section = words.length > 2 ? Arrays.asList(SECTIONS).indexOf(words[2].toLowerCase(Locale.ROOT)) : -1;
+        switch (command) {
+            case EDIT:
+                if (words.length != 4 || section < 0 || section > 1) {
+                    return null;
+                }
+                int row;
+                try {
+                    row = Integer.parseInt(words[3]);
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+                return row < 0 ? null : new Event(nanos, command, section, row, null, null);
+            case TYPE:
+                return words.length == 3 ? new Event(nanos, command, -1, -1, words[2], null) : null;
+            case PERIOD:
+                if (words.length != 4 || section < 0) {
+                    return null;
+                }
+                TimePeriod period;
+                try {
+                    period = TimePeriod.valueOf(words[3].toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    return null;
+                }
+                return new Event(nanos, command, section, -1, null, period);
+            default:
+                return words.length == 2 ? new Event(nanos, command, -1, -1, null, null) : null;
+        }
+    }
+
+    public static void write(List<Event> session, Writer out) throws IOException {
+        for (Event event : session) {
+            out.write(event.toString());
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    /**
+     * A reproducible session of {@code count} events arriving at random (Poisson) times, on
+     * average {@code eventsPerSecond}: mostly someone clicking into an amount, typing a few
+     * digits with the odd correction and moving on, with period switches, undos and redos
+     * between edits. Either section may have no lines, but not both.
+     */
+    public static List<Event> synthesize(long seed, int count, double eventsPerSecond, int incomeLines, int spendingLines) {
+        if (incomeLines < 0 || spendingLines < 0 || incomeLines + spendingLines == 0) {
+            throw new IllegalArgumentException("Need at least one line: " + incomeLines + " income, "
+                    + spendingLines + " spending");
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        double meanInterval = 1e9 / eventsPerSecond;
+        List<Event> session = new ArrayList<>(count);
+        double time = 0;
+        int digitsLeft = 0;
+        for (int i = 0; i < count; i++) {
+            long nanos = Math.round(time);
+            time += -Math.log(1 - random.nextDouble()) * meanInterval;
+            if (digitsLeft > 0) {
+                digitsLeft--;
+                if (digitsLeft == 0) {
+                    session.add(new Event(nanos, Command.COMMIT, -1, -1, null, null));
+                } else if (random.nextInt(10) == 0) {
+                    session.add(new Event(nanos, Command.BACKSPACE, -1, -1, null, null));
+                } else {
+                    session.add(new Event(nanos, Command.TYPE, -1, -1, Integer.toString(random.nextInt(10)), null));
+                }
+                continue;
+            }
+            int choice = random.nextInt(20);
+            if (choice < 16) {
+                // picks a line of either section uniformly, so an empty section is never chosen
+                int line = random.nextInt(incomeLines + spendingLines);
+                int section = line < incomeLines ? 0 : 1;
+                int row = section == 0 ? line : line - incomeLines;
+                session.add(new Event(nanos, Command.EDIT, section, row, null, null));
+                digitsLeft = 2 + random.nextInt(6);
+            } else if (choice < 18) {
+                session.add(new Event(nanos, Command.PERIOD, random.nextInt(SECTIONS.length), -1, null,
+                        PERIODS[random.nextInt(PERIODS.length)]));
+            } else if (choice < 19) {
+                session.add(new Event(nanos, Command.UNDO, -1, -1, null, null));
+            } else {
+                session.add(new Event(nanos, Command.REDO, -1, -1, null, null));
+            }
+        }
+        return session;
+    }
+
+    /**
+     * {@code java -Djava.awt.headless=true site.aberdeen.SessionReplayer [options] [session]}
+     * replays {@code session}, or a synthetic one, and writes the report to stdout or
+     * {@code -out}. Options: {@code -events n} and {@code -rate eventsPerSecond} for the synthetic
+     * session, {@code -seed n}, {@code -lines n} budget lines, {@code -speed factor} to replay
+     * faster or slower, {@code -warmup n} unmeasured replays first, and {@code -save path} to
+     * keep the session that was replayed.
+     */
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        String sessionPath = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].startsWith("-") && i + 1 < args.length) {
+                options.put(args[i].substring(1), args[++i]);
+            } else {
+                sessionPath = args[i];
+            }
+        }
+        int lines = Integer.parseInt(options.getOrDefault("lines", "6"));
+        double speed = Double.parseDouble(options.getOrDefault("speed", "1"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "1"));
+
+        List<Event> session;
+        if (sessionPath != null) {
+            try (BufferedReader in = Files.newBufferedReader(Paths.get(sessionPath), StandardCharsets.UTF_8)) {
+                session = read(in);
+            }
+        } else {
+            session = synthesize(Long.parseLong(options.getOrDefault("seed", "1")),
+                    Integer.parseInt(options.getOrDefault("events", "20000")),
+                    Double.parseDouble(options.getOrDefault("rate", "2000")),
+                    (lines + 1) / 2, lines / 2);
+        }
+        if (options.containsKey("save")) {
+            try (Writer out = Files.newBufferedWriter(Paths.get(options.get("save")), StandardCharsets.UTF_8)) {
+                write(session, out);
+            }
+        }
+
+        MetricsRegistry metrics = new MetricsRegistry();
+        EdtMonitor.install(metrics);
+        BudgetBase[] budget = new BudgetBase[1];
+        SessionReplayer[] replayer = new SessionReplayer[1];
+        SwingUtilities.invokeAndWait(() -> {
+            budget[0] = new BudgetBase(null);
+            BudgetModel model = budget[0].getModel();
+            while (model.getLineCount() < lines) {
+                LineItems items = model.getLineCount() % 2 == 0 ? model.getIncomeItems() : model.getSpendingItems();
+                items.add("Line " + model.getLineCount(), model.getLineCount() * 1234L);
+            }
+            replayer[0] = new SessionReplayer(budget[0]);
+        });
+        for (int i = 0; i < warmup; i++) {
+            replayer[0].replay(session, speed, new MetricsRegistry());
+        }
+        metrics.histogram(MetricsRegistry.EDT_DISPATCH).reset();
+        replayer[0].replay(session, speed, metrics);
+        budget[0].getRecalculator().shutdown();
+
+        String out = options.get("out");
+        if (out != null) {
+            metrics.dump(Paths.get(out));
+            System.out.println("Report written to " + out);
+        } else {
+            metrics.dump(new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)));
+        }
+        System.exit(0);
+    }
+}
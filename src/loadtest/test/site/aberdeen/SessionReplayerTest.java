@@ -0,0 +1,91 @@
+package site.aberdeen;
+
+import org.junit.jupiter.api.Test;
+
+import javax.swing.SwingUtilities;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionReplayerTest {
+
+    @Test
+    void testSessionsRoundTrip() throws IOException {
+        List<SessionReplayer.Event> session = SessionReplayer.synthesize(7, 500, 1000, 3, 3);
+        assertEquals(500, session.size());
+        assertEquals(session.toString(), SessionReplayer.synthesize(7, 500, 1000, 3, 3).toString());
+
+        StringWriter out = new StringWriter();
+        SessionReplayer.write(session, out);
+        List<SessionReplayer.Event> read = SessionReplayer.read(new BufferedReader(new StringReader(out.toString())));
+        assertEquals(session.toString(), read.toString());
+
+        IOException e = assertThrows(IOException.class, () -> SessionReplayer.read(new BufferedReader(
+                new StringReader("# session\n0 edit income 0\n5 period yearly\n"))));
+        assertEquals("line 3: unknown event 5 period yearly", e.getMessage());
+    }
+
+    @Test
+    void testSessionsEditOnlySectionsWithLines() {
+        for (SessionReplayer.Event event : SessionReplayer.synthesize(3, 500, 1000, 1, 0)) {
+            if (event.getCommand() == SessionReplayer.Command.EDIT) {
+                assertEquals(0, event.section);
+                assertEquals(0, event.row);
+            }
+        }
+        for (SessionReplayer.Event event : SessionReplayer.synthesize(3, 500, 1000, 0, 2)) {
+            if (event.getCommand() == SessionReplayer.Command.EDIT) {
+                assertEquals(1, event.section);
+                assertTrue(event.row < 2);
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> SessionReplayer.synthesize(3, 10, 1000, 0, 0));
+    }
+
+    @Test
+    void testReplayEditsBudgetAndRecordsLatency() throws Exception {
+        List<SessionReplayer.Event> session = SessionReplayer.read(new BufferedReader(new StringReader(
+                "0 edit income 1\n"
+                        + "1 type 4\n"
+                        + "2 type 2\n"
+                        + "3 type 5\n"
+                        + "4 backspace\n"
+                        + "5 commit\n"
+                        + "6 period overall monthly\n"
+                        + "7 edit spending 0\n"
+                        + "8 type 9\n"
+                        + "9 commit\n"
+                        + "10 undo\n")));
+        BudgetBase[] budget = new BudgetBase[1];
+        SessionReplayer[] replayer = new SessionReplayer[1];
+        SwingUtilities.invokeAndWait(() -> {
+            budget[0] = new BudgetBase(null);
+            replayer[0] = new SessionReplayer(budget[0]);
+        });
+        MetricsRegistry metrics = new MetricsRegistry();
+
+        replayer[0].replay(session, 1, metrics);
+
+        long[] values = new long[2];
+        String[] overall = new String[1];
+        SwingUtilities.invokeAndWait(() -> {
+            values[0] = budget[0].getModel().getIncomeItems().get(1);
+            values[1] = budget[0].getModel().getSpendingItems().get(0);
+            overall[0] = budget[0].getOverallField().getText();
+        });
+        assertEquals(Money.ofUnits(42), values[0]);
+        assertEquals(0, values[1]);
+        assertEquals(TimePeriod.MONTHLY, budget[0].getModel().getOverallPeriod());
+        assertEquals(Money.toString(TimePeriod.WEEKLY.convert(Money.ofUnits(42), TimePeriod.MONTHLY)), overall[0]);
+        // every event has a latency, including those a later result showed
+        assertEquals(session.size(), metrics.histogram(SessionReplayer.LATENCY).getCount());
+        assertTrue(metrics.gauge(SessionReplayer.COALESCED).get() < session.size());
+        assertEquals(session.size(), metrics.gauge(SessionReplayer.EVENTS).get());
+        assertTrue(metrics.gauge(SessionReplayer.EVENTS_PER_SECOND).get() > 0);
+        budget[0].getRecalculator().shutdown();
+    }
+}
@@ -0,0 +1,274 @@
+package site.aberdeen;
+
+import java.text.DecimalFormatSymbols;
+import java.util.Currency;
+import java.util.Locale;
+
+/**
+ * Parses user-typed or imported amounts into cents without throwing or allocating. Accepts
+ * currency symbols before or after the number, thousands separators, a leading or trailing minus
+ * sign and accounting-style negatives in parentheses, e.g. {@code "($1,234.50)"} or
+ * {@code "1.234,50-"}.
+ * <p>
+ * A separator followed by one or two final digits is read as the decimal point even when it is
+ * the locale's grouping character, so values written by {@link Money#format} parse in any locale.
+ * <p>
+ * Instances keep the last result and are not thread-safe; use one per thread.
+ */
+public class AmountParser {
+
+    public static final int OK = 0;
+    public static final int EMPTY = 1;
+    public static final int MALFORMED = 2;
+    public static final int OVERFLOW = 3;
+
+    private static final long MAX_UNITS = (Long.MAX_VALUE - 100) / 100;
+
+    private final char decimalSeparator;
+    private final char groupingSeparator;
+    private final String currencySymbol;
+    private final String currencyCode;
+
+    private long value;
+    private int status = EMPTY;
+
+    public AmountParser() {
+        this(Locale.getDefault(Locale.Category.FORMAT));
+    }
+
+    public AmountParser(Locale locale) {
+        DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+        decimalSeparator = symbols.getDecimalSeparator();
+        groupingSeparator = symbols.getGroupingSeparator();
+        currencySymbol = symbols.getCurrencySymbol();
+        Currency currency = symbols.getCurrency();
+        currencyCode = currency == null ? "" : currency.getCurrencyCode();
+    }
+
+    public AmountParser(char decimalSeparator, char groupingSeparator) {
+        this.decimalSeparator = decimalSeparator;
+        this.groupingSeparator = groupingSeparator;
+        currencySymbol = "";
+        currencyCode = "";
+    }
+
+    public long getValue() {
+        return value;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Returns the parsed cents, or {@code fallback} if the last input was empty or invalid.
+     */
+    public long valueOr(CharSequence text, long fallback) {
+        return parse(text) == OK ? value : fallback;
+    }
+
+    public int parse(CharSequence text) {
+        return parse(text, 0, text.length());
+    }
+
+    public int parse(CharSequence text, int from, int to) {
+        value = 0;
+        from = skipSpace(text, from, to);
+        to = trimSpace(text, from, to);
+        if (from == to) {
+            return status = EMPTY;
+        }
+
+        boolean negative = false;
+        if (text.charAt(from) == '(') {
+            if (text.charAt(to - 1) != ')') {
+                return status = MALFORMED;
+            }
+            negative = true;
+            from = skipSpace(text, from + 1, to - 1);
+            to = trimSpace(text, from, to - 1);
+        }
+
+        boolean signed = false;
+        boolean currency = false;
+        while (from < to) {
+            char c = text.charAt(from);
+            int symbolLength;
+            if ((c == '-' || c == '+' || c == '\u2212') && !signed) {
+                signed = true;
+                negative ^= c != '+';
+                from++;
+            } else if (!currency && (symbolLength = currencyLength(text, from, to)) > 0) {
+                currency = true;
+                from += symbolLength;
+            } else if (isSpace(c)) {
+                from++;
+            } else {
+                break;
+            }
+        }
+        while (to > from) {
+            char c = text.charAt(to - 1);
+            int symbolLength;
+            if ((c == '-' || c == '\u2212') && !signed) {
+                signed = true;
+                negative = !negative;
+                to--;
+            } else if (!currency && (symbolLength = trailingCurrencyLength(text, from, to)) > 0) {
+                currency = true;
+                to -= symbolLength;
+            } else if (isSpace(c)) {
+                to--;
+            } else {
+                break;
+            }
+        }
+        if (from == to) {
+            return status = MALFORMED;
+        }
+
+        int result = parseNumber(text, from, to);
+        if (result == OK && negative) {
+            value = -value;
+        }
+        return status = result;
+    }
+
+    private int parseNumber(CharSequence text, int from, int to) {
+        long units = 0;
+        long fraction = 0;
+        int fractionDigits = 0;
+        int integerDigits = 0;
+        int groupRun = 0;
+        boolean grouped = false;
+        boolean inFraction = false;
+
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                int digit = c - '0';
+                if (inFraction) {
+                    if (fractionDigits < 2) {
+                        fraction = fraction * 10 + digit;
+                    } else if (fractionDigits == 2 && digit >= 5) {
+                        fraction++;
+                    }
+                    fractionDigits++;
+                } else {
+                    if (units > (MAX_UNITS - digit) / 10) {
+                        return OVERFLOW;
+                    }
+                    units = units * 10 + digit;
+                    integerDigits++;
+                    groupRun++;
+                }
+            } else if (inFraction) {
+                return MALFORMED;
+            } else if (c == decimalSeparator) {
+                if (grouped && groupRun != 3) {
+                    return MALFORMED;
+                }
+                inFraction = true;
+            } else if (isGrouping(c)) {
+                if (integerDigits == 0 || (grouped && groupRun != 3)) {
+                    return MALFORMED;
+                }
+                int run = digitRun(text, i + 1, to);
+                if (i + 1 + run == to && run > 0 && run < 3) {
+                    inFraction = true;
+                } else if (run != 3) {
+                    return MALFORMED;
+                } else {
+                    grouped = true;
+                    groupRun = 0;
+                }
+            } else {
+                return MALFORMED;
+            }
+        }
+
+        if (integerDigits + fractionDigits == 0 || (!inFraction && grouped && groupRun != 3)) {
+            return MALFORMED;
+        }
+        if (fractionDigits == 1) {
+            fraction *= 10;
+        }
+        value = units * 100 + fraction;
+        return OK;
+    }
+
+    private boolean isGrouping(char c) {
+        if (c == groupingSeparator || c == '\'' || c == '\u2019') {
+            return true;
+        }
+        if (isSpace(groupingSeparator) && isSpace(c)) {
+            return true;
+        }
+        return (c == '.' || c == ',') && c != decimalSeparator;
+    }
+
+    private int currencyLength(CharSequence text, int from, int to) {
+        if (Character.getType(text.charAt(from)) == Character.CURRENCY_SYMBOL) {
+            return 1;
+        }
+        if (matches(text, from, to, currencySymbol)) {
+            return currencySymbol.length();
+        }
+        if (matches(text, from, to, currencyCode)) {
+            return currencyCode.length();
+        }
+        return 0;
+    }
+
+    private int trailingCurrencyLength(CharSequence text, int from, int to) {
+        if (Character.getType(text.charAt(to - 1)) == Character.CURRENCY_SYMBOL) {
+            return 1;
+        }
+        if (currencySymbol.length() <= to - from && matches(text, to - currencySymbol.length(), to, currencySymbol)) {
+            return currencySymbol.length();
+        }
+        if (currencyCode.length() <= to - from && matches(text, to - currencyCode.length(), to, currencyCode)) {
+            return currencyCode.length();
+        }
+        return 0;
+    }
+
+    private static boolean matches(CharSequence text, int from, int to, String symbol) {
+        int length = symbol.length();
+        if (length == 0 || to - from < length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(from + i) != symbol.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int digitRun(CharSequence text, int from, int to) {
+        int i = from;
+        while (i < to && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+            i++;
+        }
+        return i - from;
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\u00A0' || c == '\u202F';
+    }
+
+    private static int skipSpace(CharSequence text, int from, int to) {
+        while (from < to && (isSpace(text.charAt(from)) || text.charAt(from) < ' ')) {
+            from++;
+        }
+        return from;
+    }
+
+    private static int trimSpace(CharSequence text, int from, int to) {
+        while (to > from && (isSpace(text.charAt(to - 1)) || text.charAt(to - 1) < ' ')) {
+            to--;
+        }
+        return to;
+    }
+}
@@ -1,9 +1,29 @@
 package site.aberdeen;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.event.TableModelEvent;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.TableColumn;
 import java.awt.*;
-import java.awt.event.*;
-import java.util.Stack;
+import java.awt.event.ActionEvent;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 
 public class BudgetBase extends JPanel {
 
@@ -11,59 +31,273 @@ public class BudgetBase extends JPanel {
     private static final int COLUMN_TEXT_FIELD = 1;
     private static final int COLUMN_COMBO_BOX = 2;
 
+    private static final Dimension TABLE_VIEWPORT_SIZE = new Dimension(240, 128);
+    private static final int SNAPSHOT_DELAY_MS = 2000;
+    private static final int TOTALS_CACHE_ENTRIES = 64;
+    private static final long TOTALS_CACHE_LINES = 1 << 20;
+    private static final int LEDGER_WINDOW_DAYS = 7 * 52;
+    private static final int CHART_WEEKS = 10 * ProjectionEngine.WEEKS_PER_YEAR;
+
+    static final String[] DEFAULT_INCOME_LINES = {"Wages", "Loans", "Sales"};
+    static final String[] DEFAULT_SPENDING_LINES = {"Taxes", "Credits", "Food"};
+    static final String DEFAULT_BUDGET = "budget";
+    // Shown instead of totals that cannot be converted into the reporting currency.
+    static final String UNKNOWN_TOTAL = "?";
+
     private final JFrame topLevelFrame;
     private final GridBagConstraints layoutConstraints = new GridBagConstraints();
 
     private JButton calculateButton;
     private JButton exitButton;
     private JButton undoButton;
+    private JButton redoButton;
+    private JButton importButton;
+    private JButton exportButton;
 
-    private JTextField[] incomeFields;
+    private JTable incomeTable;
+    private JButton addIncomeButton;
+    private JButton removeIncomeButton;
     private JTextField totalIncomeField;
     private JComboBox<TimePeriod> incomeGranularity;
 
-    private JTextField[] spendingFields;
+    private JTable spendingTable;
+    private JButton addSpendingButton;
+    private JButton removeSpendingButton;
     private JTextField totalSpendingField;
     private JComboBox<TimePeriod> expenseGranularity;
 
     private JTextField overallField;
     private JComboBox<TimePeriod> overallGranularity;
+    private CashFlowChart cashFlowChart;
+    private JComboBox<String> reportingCurrency;
+    private ExchangeRates exchangeRates;
+
+    private BudgetModel model;
+
+    private final int historyCapacity;
+    private EditHistory history;
+    private UndoTree versions;
+
+    private Recalculator<Totals, Totals> recalculator;
+    private final StateCache<Totals> totalsCache = new StateCache<>(TOTALS_CACHE_ENTRIES, TOTALS_CACHE_LINES);
+    private Ledger ledger;
+
+    private BudgetStore store;
+    private boolean snapshotPending;
+    private Timer snapshotTimer;
+
+    private final char[] formatBuffer = new char[Money.MAX_FORMATTED_LENGTH];
+    private final AmountParser amountParser = new AmountParser();
 
-    private Stack<BudgetState> undoStack;
+    private final MetricsRegistry metrics = MetricsRegistry.global();
+    private final LatencyHistogram calculateAllTimes = metrics.histogram(MetricsRegistry.CALCULATE_ALL);
 
     public BudgetBase(JFrame frame) {
+        this(frame, EditHistory.DEFAULT_CAPACITY);
+    }
+
+    public BudgetBase(JFrame frame, int historyCapacity) {
+        topLevelFrame = frame;
+        this.historyCapacity = historyCapacity;
+        setLayout(new GridBagLayout());
+        BudgetModel model = new BudgetModel(new LineItems(DEFAULT_INCOME_LINES), new LineItems(DEFAULT_SPENDING_LINES));
+        initComponents(model, new EditHistory(model.getLineCount(), historyCapacity));
+    }
+
+    /**
+     * Edits a budget of a {@link Workspace} in place: its model, history and journal are the
+     * workspace's own, so evicting or releasing it saves every edit made here. Call
+     * {@link #dispose()} once the workspace has done either.
+     */
+    public BudgetBase(JFrame frame, Workspace.Budget budget) {
         topLevelFrame = frame;
+        historyCapacity = budget.getHistory().capacity();
         setLayout(new GridBagLayout());
-        undoStack = new Stack<>();
-        initComponents();
+        initComponents(budget.getModel(), budget.getHistory());
+        store = budget.getStore();
+        incomeGranularity.setSelectedItem(model.getIncomePeriod());
+        expenseGranularity.setSelectedItem(model.getSpendingPeriod());
+        overallGranularity.setSelectedItem(model.getOverallPeriod());
+        calculateAll();
     }
 
-    class UpdateTotalFocusAdapter extends FocusAdapter {
+    class AmountCellEditor extends DefaultCellEditor implements DocumentListener {
+
+        private final JTable table;
+        private final LineItems items;
+        private final JTextField field;
+
+        AmountCellEditor(JTable table, LineItems items) {
+            super(createTextField());
+            this.table = table;
+            this.items = items;
+            field = (JTextField) getComponent();
+            field.getDocument().addDocumentListener(this);
+            setClickCountToStart(1);
+        }
 
         @Override
-        public void focusGained(FocusEvent e){
-            saveState();
+        public boolean stopCellEditing() {
+            validateField(field);
+            return super.stopCellEditing();
         }
 
         @Override
-        public void focusLost(FocusEvent e) {
-            calculateAll();
+        public void insertUpdate(DocumentEvent e) {
+            lineEdited();
+        }
+
+        @Override
+        public void removeUpdate(DocumentEvent e) {
+            lineEdited();
+        }
+
+        @Override
+        public void changedUpdate(DocumentEvent e) {
+        }
+
+        private void lineEdited() {
+            int row = table.getEditingRow();
+            if (table.isEditing() && row >= 0 && row < items.size()) {
+                items.set(row, getTextFieldValue(field));
+            }
         }
     }
 
-    private void initComponents() {
+    /**
+     * The inputs and result of one cash flow calculation, captured on the EDT in constant time,
+     * with the result already formatted for display.
+     */
+    static final class Totals {
+
+        final long totalIncome;
+        final long totalSpending;
+        final TimePeriod incomePeriod;
+        final TimePeriod spendingPeriod;
+        final TimePeriod overallPeriod;
+        // Why the lines could not be converted into the reporting currency, or null.
+        final String conversionError;
+        long cashFlow;
+        String totalIncomeText;
+        String totalSpendingText;
+        String cashFlowText;
+
+        Totals(BudgetModel model) {
+            long income = 0;
+            long spending = 0;
+            String error = null;
+            try {
+                income = model.getTotalIncome();
+                spending = model.getTotalSpending();
+            } catch (IllegalArgumentException e) {
+                error = e.getMessage();
+            }
+            totalIncome = income;
+            totalSpending = spending;
+            conversionError = error;
+            incomePeriod = model.getIncomePeriod();
+            spendingPeriod = model.getSpendingPeriod();
+            overallPeriod = model.getOverallPeriod();
+        }
+
+        /**
+         * Actual average income and spending per selected period over the ledger's last 52 weeks,
+         * or its whole history if that is shorter.
+         */
+        Totals(Ledger ledger, BudgetModel model) {
+            int toDay = ledger.getLastDay() + 1;
+            int fromDay = Math.max(ledger.getFirstDay(), toDay - LEDGER_WINDOW_DAYS);
+            incomePeriod = model.getIncomePeriod();
+            spendingPeriod = model.getSpendingPeriod();
+            overallPeriod = model.getOverallPeriod();
+            totalIncome = ledger.getAverageIncome(incomePeriod, fromDay, toDay);
+            totalSpending = ledger.getAverageSpending(spendingPeriod, fromDay, toDay);
+            conversionError = null;
+        }
+
+        /**
+         * Computes the cash flow and formats the totals, or marks all three unknown if there
+         * was a {@link #conversionError}.
+         */
+        Totals calculate() {
+            if (conversionError != null) {
+                totalIncomeText = totalSpendingText = cashFlowText = UNKNOWN_TOTAL;
+                return this;
+            }
+            cashFlow = BudgetEngine.cashFlow(totalIncome, incomePeriod, totalSpending, spendingPeriod, overallPeriod);
+            totalIncomeText = Money.toString(totalIncome);
+            totalSpendingText = Money.toString(totalSpending);
+            cashFlowText = Money.toString(cashFlow);
+            return this;
+        }
+    }
+
+    class StructureListener implements LineItems.Listener {
+
+        @Override
+        public void linesInserted(LineItems items, int first, int last) {
+            history.reset(model.getValues());
+            scheduleSnapshot();
+        }
+
+        @Override
+        public void linesRemoved(LineItems items, int first, int last) {
+            history.reset(model.getValues());
+            scheduleSnapshot();
+        }
+
+        @Override
+        public void linesUpdated(LineItems items, int first, int last) {
+        }
+    }
+
+    private void initComponents(BudgetModel model, EditHistory history) {
+        this.model = model;
+        this.history = history;
+        versions = new UndoTree(model.getSnapshot(), historyCapacity);
+        recalculator = new Recalculator<>(Totals::calculate, this::publishTotals);
         initIncomeComponents();
         initSpendingComponents();
         initOverallComponents();
         initListeners();
     }
 
-    public JTextField[] getIncomeFields() {
-        return incomeFields;
+    public Recalculator<?, ?> getRecalculator() {
+        return recalculator;
+    }
+
+    /**
+     * Stops the background recalculation thread once the panel leaves its window, e.g. when the
+     * frame is disposed.
+     */
+    @Override
+    public void removeNotify() {
+        super.removeNotify();
+        recalculator.shutdown();
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        if (recalculator.isShutdown()) {
+            recalculator = new Recalculator<>(Totals::calculate, this::publishTotals);
+        }
     }
 
-    public JTextField[] getSpendingFields() {
-        return spendingFields;
+    public BudgetModel getModel() {
+        return model;
+    }
+
+    public UndoTree getVersions() {
+        return versions;
+    }
+
+    public JTable getIncomeTable() {
+        return incomeTable;
+    }
+
+    public JTable getSpendingTable() {
+        return spendingTable;
     }
 
     public JTextField getTotalIncomeField() {
@@ -90,12 +324,31 @@ public class BudgetBase extends JPanel {
         return overallGranularity;
     }
 
+    /**
+     * Reporting currency for the totals; blank reports amounts as entered. Enabled once
+     * {@link #setExchangeRates} has loaded rates.
+     */
+    public JComboBox<String> getReportingCurrency() {
+        return reportingCurrency;
+    }
+
+    /**
+     * Daily cash flow from the ledger, if there is one, or else the balance projected week by week
+     * from the current totals.
+     */
+    public CashFlowChart getCashFlowChart() {
+        return cashFlowChart;
+    }
+
     private void initIncomeComponents() {
         addLabel("INCOME", 0, 0);
 
-        String[] incomeLabels = {"Wages", "Loans", "Sales"};
-        incomeFields = createTextFields(incomeLabels.length);
-        addLabelAndFields(incomeLabels, incomeFields,0);
+        incomeTable = createLineItemTable("IncomeTable", model.getIncomeItems());
+        addTable(incomeTable, 1, 0);
+        addIncomeButton = new JButton("Add");
+        addComponent(addIncomeButton, 2, 0, COLUMN_LABEL);
+        removeIncomeButton = new JButton("Remove");
+        addComponent(removeIncomeButton, 2, 1, COLUMN_LABEL);
 
         addLabel("Total Income", 4, 0);
         incomeGranularity = new JComboBox<>(TimePeriod.values());
@@ -108,9 +361,12 @@ public class BudgetBase extends JPanel {
     private void initSpendingComponents() {
         addLabel("SPENDING", 0, 4);
 
-        String[] spendingLabels = {"Taxes", "Credits", "Food"};
-        spendingFields = createTextFields(spendingLabels.length);
-        addLabelAndFields(spendingLabels, spendingFields,4);
+        spendingTable = createLineItemTable("SpendingTable", model.getSpendingItems());
+        addTable(spendingTable, 1, 4);
+        addSpendingButton = new JButton("Add");
+        addComponent(addSpendingButton, 2, 4, COLUMN_LABEL);
+        removeSpendingButton = new JButton("Remove");
+        addComponent(removeSpendingButton, 2, 5, COLUMN_LABEL);
 
         addLabel("Total Spending", 4, 4);
         expenseGranularity = new JComboBox<>(TimePeriod.values());
@@ -129,45 +385,208 @@ public class BudgetBase extends JPanel {
         addComponent(calculateButton, 5, 0, COLUMN_LABEL);
         undoButton = new JButton("Undo");
         addComponent(undoButton, 6, 0, COLUMN_LABEL);
+        redoButton = new JButton("Redo");
+        addComponent(redoButton, 6, 1, COLUMN_LABEL);
         exitButton = new JButton("Exit");
         addComponent(exitButton, 7, 0, COLUMN_LABEL);
+        importButton = new JButton("Import");
+        addComponent(importButton, 7, 1, COLUMN_LABEL);
+        exportButton = new JButton("Export");
+        addComponent(exportButton, 7, 3, COLUMN_LABEL);
+        reportingCurrency = new JComboBox<>(new String[]{""});
+        reportingCurrency.setEnabled(false);
+        addComboBox(reportingCurrency, 7, 2);
+        cashFlowChart = new CashFlowChart();
+        cashFlowChart.setShares(model.getSnapshot());
+        addChart(cashFlowChart, 8, 0);
+    }
+
+    private JTable createLineItemTable(String name, LineItems items) {
+        JTable table = new JTable(new LineItemTableModel(items));
+        table.setName(name);
+        table.setFillsViewportHeight(true);
+        table.setPreferredScrollableViewportSize(TABLE_VIEWPORT_SIZE);
+        table.putClientProperty("terminateEditOnFocusLost", Boolean.TRUE);
+
+        TableColumn amountColumn = table.getColumnModel().getColumn(LineItemTableModel.AMOUNT_COLUMN);
+        DefaultTableCellRenderer amountRenderer = new DefaultTableCellRenderer();
+        amountRenderer.setHorizontalAlignment(SwingConstants.RIGHT);
+        amountColumn.setCellRenderer(amountRenderer);
+        amountColumn.setCellEditor(new AmountCellEditor(table, items));
+        return table;
+    }
+
+    private void addLineItemListeners(JTable table, JButton addButton, JButton removeButton, boolean income) {
+        LineItemTableModel tableModel = (LineItemTableModel) table.getModel();
+        LineItems items = tableModel.getItems();
+        items.addListener(new StructureListener());
+        tableModel.addTableModelListener(e -> {
+            if (e.getType() == TableModelEvent.UPDATE && e.getColumn() == LineItemTableModel.AMOUNT_COLUMN) {
+                int offset = income ? 0 : model.getIncomeItems().size();
+                for (int row = e.getFirstRow(); row <= e.getLastRow(); row++) {
+                    history.record(offset + row, items.get(row));
+                    journal(BudgetStore.RECORD_SET, offset + row, items.get(row));
+                }
+            } else if (e.getType() == TableModelEvent.UPDATE && (e.getColumn() == LineItemTableModel.NAME_COLUMN
+                    || e.getColumn() == LineItemTableModel.CURRENCY_COLUMN)) {
+                scheduleSnapshot();
+            }
+        });
+        table.addPropertyChangeListener("tableCellEditor", e -> {
+            if (e.getNewValue() != null) {
+                saveState();
+            }
+        });
+        addButton.addActionListener(e -> addLine(table));
+        removeButton.addActionListener(e -> removeSelectedLines(table));
+    }
+
+    private void addLine(JTable table) {
+        stopEditing();
+        LineItems items = ((LineItemTableModel) table.getModel()).getItems();
+        int row = items.add("", 0);
+        table.scrollRectToVisible(table.getCellRect(row, LineItemTableModel.NAME_COLUMN, true));
+        table.editCellAt(row, LineItemTableModel.NAME_COLUMN);
+    }
+
+    private void removeSelectedLines(JTable table) {
+        if (table.isEditing()) {
+            table.getCellEditor().cancelCellEditing();
+        }
+        LineItems items = ((LineItemTableModel) table.getModel()).getItems();
+        ListSelectionModel selection = table.getSelectionModel();
+        int row = selection.getMaxSelectionIndex();
+        int minimum = selection.getMinSelectionIndex();
+        while (row >= minimum && row >= 0) {
+            int last = row;
+            while (row > minimum && selection.isSelectedIndex(row - 1)) {
+                row--;
+            }
+            if (selection.isSelectedIndex(last)) {
+                items.remove(row, last);
+            }
+            row--;
+        }
+        selection.clearSelection();
+    }
+
+    /**
+     * Commits any amount or name being edited into the model.
+     */
+    void stopEditing() {
+        stopEditing(incomeTable);
+        stopEditing(spendingTable);
     }
 
-    private void addFocusListener(String name, JTextField[] fields){
-        for (int i = 0; i < fields.length; i++) {
-            fields[i].setName(name + i);
-            fields[i].addFocusListener(new UpdateTotalFocusAdapter());
+    private void stopEditing(JTable table) {
+        if (table.isEditing()) {
+            table.getCellEditor().stopCellEditing();
         }
     }
 
     private void addActionListeners(){
-        incomeGranularity.addActionListener(e -> calculateAll());
-        expenseGranularity.addActionListener(e -> calculateAll());
-        overallGranularity.addActionListener(e -> calculateAll());
+        incomeGranularity.addActionListener(e -> periodsChanged());
+        expenseGranularity.addActionListener(e -> periodsChanged());
+        overallGranularity.addActionListener(e -> periodsChanged());
+        reportingCurrency.addActionListener(e -> {
+            String currency = LineItems.normalizeCurrency((String) reportingCurrency.getSelectedItem());
+            if (exchangeRates != null && !Objects.equals(currency, model.getReportingCurrency())) {
+                setReportingCurrency(currency);
+            }
+        });
     }
 
-    private JTextField[] createTextFields(int count) {
-        JTextField[] fields = new JTextField[count];
-        for (int i = 0; i < count; i++) {
-            fields[i] = createTextField();
+    /**
+     * Makes {@code rates} available as reporting currencies, keeping the current one if they
+     * still quote it.
+     */
+    public void setExchangeRates(ExchangeRates rates) {
+        String current = model.getReportingCurrency();
+        exchangeRates = rates;
+        reportingCurrency.removeAllItems();
+        reportingCurrency.addItem("");
+        for (String currency : rates.getCurrencies()) {
+            reportingCurrency.addItem(currency);
         }
-        return fields;
+        reportingCurrency.setEnabled(true);
+        setReportingCurrency(current != null && rates.indexOf(current) >= 0 ? current : null);
+    }
+
+    public ExchangeRates getExchangeRates() {
+        return exchangeRates;
     }
 
-    private void addLabelAndFields(String[] labels, JTextField[] fields, int startColumn) {
-        for (int i = 0; i < labels.length; i++) {
-            addLabel(labels[i], i + 1, startColumn);
-            addTextField(fields[i], i + 1, startColumn + 1);
+    /**
+     * Converts every total into {@code currency} at today's rates, or stops converting if it is
+     * null or blank.
+     */
+    public void setReportingCurrency(String currency) {
+        if (exchangeRates == null && LineItems.normalizeCurrency(currency) != null) {
+            throw new IllegalStateException("No exchange rates loaded");
+        }
+        model.setReportingCurrency(exchangeRates, currency, (int) LocalDate.now().toEpochDay());
+        String selected = model.getReportingCurrency() == null ? "" : model.getReportingCurrency();
+        if (!selected.equals(reportingCurrency.getSelectedItem())) {
+            reportingCurrency.setSelectedItem(selected);
+        }
+        // cached totals were keyed by amounts alone
+        totalsCache.clear();
+        calculateAll();
+    }
+
+    private void periodsChanged() {
+        TimePeriod incomePeriod = (TimePeriod) incomeGranularity.getSelectedItem();
+        TimePeriod spendingPeriod = (TimePeriod) expenseGranularity.getSelectedItem();
+        TimePeriod overallPeriod = (TimePeriod) overallGranularity.getSelectedItem();
+        if (incomePeriod == model.getIncomePeriod() && spendingPeriod == model.getSpendingPeriod()
+                && overallPeriod == model.getOverallPeriod()) {
+            return;
+        }
+        model.setPeriods(incomePeriod, spendingPeriod, overallPeriod);
+        calculateAll();
+        if (isJournaling() && !store.appendPeriods(incomePeriod, spendingPeriod, overallPeriod)) {
+            writeSnapshot();
         }
     }
 
     private void initListeners() {
-        addFocusListener("Income", incomeFields);
-        addFocusListener("Spending", spendingFields);
+        addLineItemListeners(incomeTable, addIncomeButton, removeIncomeButton, true);
+        addLineItemListeners(spendingTable, addSpendingButton, removeSpendingButton, false);
         addActionListeners();
-        exitButton.addActionListener(e -> System.exit(0));
+        model.addListener(m -> {
+            if (ledger == null) {
+                recalculator.request(new Totals(m));
+            }
+        });
+        model.addSnapshotListener((previous, current) -> {
+            if (!previous.hasSameCurrencies(current)) {
+                totalsCache.clear();
+            }
+            cashFlowChart.setShares(current);
+        });
+        exitButton.addActionListener(e -> {
+            if (topLevelFrame != null) {
+                // the frame's window listeners save whatever it shows, one budget or a workspace
+                topLevelFrame.dispatchEvent(new WindowEvent(topLevelFrame, WindowEvent.WINDOW_CLOSING));
+            } else {
+                closeStore();
+                System.exit(0);
+            }
+        });
         calculateButton.addActionListener(e -> calculateAll());
         undoButton.addActionListener(e -> undo());
+        redoButton.addActionListener(e -> redo());
+        importButton.addActionListener(e -> importStatement());
+        exportButton.addActionListener(e -> exportReport());
+
+        getInputMap(WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(KeyEvent.VK_M,
+                InputEvent.CTRL_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK), "dumpMetrics");
+        getActionMap().put("dumpMetrics", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                dumpMetrics();
+            }
+        });
     }
 
     private void addComponent(Component component, int row, int column, int type) {
@@ -188,6 +607,26 @@ public class BudgetBase extends JPanel {
         }
     }
 
+    private void addTable(JTable table, int row, int column) {
+        setCommonLayoutConstraints(row, column);
+        layoutConstraints.fill = GridBagConstraints.BOTH;
+        layoutConstraints.gridwidth = 2;
+        add(new JScrollPane(table), layoutConstraints);
+        layoutConstraints.gridwidth = 1;
+    }
+
+    private void addChart(JComponent chart, int row, int column) {
+        setCommonLayoutConstraints(row, column);
+        layoutConstraints.fill = GridBagConstraints.BOTH;
+        layoutConstraints.gridwidth = 6;
+        layoutConstraints.weightx = 1;
+        layoutConstraints.weighty = 1;
+        add(chart, layoutConstraints);
+        layoutConstraints.gridwidth = 1;
+        layoutConstraints.weightx = 0;
+        layoutConstraints.weighty = 0;
+    }
+
     private void setCommonLayoutConstraints(int gridrow, int gridcol) {
         layoutConstraints.fill = GridBagConstraints.HORIZONTAL;
         layoutConstraints.gridx = gridcol;
@@ -220,119 +659,563 @@ public class BudgetBase extends JPanel {
         addComponent(comboBox, row, column, COLUMN_COMBO_BOX);
     }
 
+    /**
+     * Shows every total immediately, reusing the result for a recently seen budget state and
+     * period combination (e.g. when flipping periods or undoing) instead of recomputing it. Plain
+     * edits are recalculated in the background instead, see {@link Recalculator}.
+     */
     public void calculateAll(){
-        double income = calculateTotalIncome();
-        double spending = calculateTotalSpending();
-        calculateCashFlow(income, spending);
+        long start = System.nanoTime();
+        recalculator.cancel();
+        publishTotals(ledger != null ? new Totals(ledger, model).calculate() : cachedTotals());
+
+        long nanos = System.nanoTime() - start;
+        calculateAllTimes.record(nanos);
+        RecalculationEvent event = new RecalculationEvent();
+        if (event.shouldCommit()) {
+            event.latency = nanos;
+            event.commit();
+        }
     }
 
-    public double calculateTotalIncome() {
-        double totalIncome = 0.0;
-        for (JTextField field : incomeFields) {
-            totalIncome += getTextFieldValue(field);
+    private Totals cachedTotals() {
+        BudgetState state = model.getState();
+        TimePeriod incomePeriod = model.getIncomePeriod();
+        TimePeriod spendingPeriod = model.getSpendingPeriod();
+        TimePeriod overallPeriod = model.getOverallPeriod();
+        Totals totals = totalsCache.get(state, incomePeriod, spendingPeriod, overallPeriod);
+        if (totals == null) {
+            totals = new Totals(model).calculate();
+            totalsCache.put(state, incomePeriod, spendingPeriod, overallPeriod, totals);
         }
+        return totals;
+    }
 
-        totalIncomeField.setText(String.format("%.2f", totalIncome));
-        return totalIncome;
+    /**
+     * Drives the total and overall fields from actual dated history instead of the line items,
+     * see {@link Totals#Totals(Ledger, BudgetModel)}. An empty or {@code null} ledger switches
+     * back to the line item estimates.
+     */
+    public void setLedger(Ledger ledger) {
+        this.ledger = ledger == null || ledger.isEmpty() ? null : ledger;
+        if (this.ledger != null) {
+            cashFlowChart.setSeries(this.ledger.getDailyCashFlow());
+        }
+        calculateAll();
+    }
+
+    public Ledger getLedger() {
+        return ledger;
     }
 
-    public double calculateTotalSpending() {
-        double totalSpending = 0.0;
-        for (JTextField field : spendingFields) {
-            totalSpending += getTextFieldValue(field);
+    private void publishTotals(Totals totals) {
+        totalIncomeField.setText(totals.totalIncomeText);
+        totalSpendingField.setText(totals.totalSpendingText);
+        overallField.setForeground(totals.cashFlow < 0 ? Color.RED : Color.BLACK);
+        overallField.setText(totals.cashFlowText);
+        totalIncomeField.setToolTipText(totals.conversionError);
+        totalSpendingField.setToolTipText(totals.conversionError);
+        overallField.setToolTipText(totals.conversionError);
+        if (ledger == null && totals.conversionError == null) {
+            long[] balances = new long[CHART_WEEKS];
+            ProjectionEngine.project(totals.incomePeriod.annualize(totals.totalIncome),
+                    totals.spendingPeriod.annualize(totals.totalSpending), new Scenario(), balances, 0, CHART_WEEKS);
+            cashFlowChart.setSeries(balances);
         }
+    }
 
-        totalSpendingField.setText(String.format("%.2f", totalSpending));
-        return totalSpending;
+    public long calculateTotalIncome() {
+        long totalIncome = model.getTotalIncome();
+        setMoneyText(totalIncomeField, totalIncome);
+        return totalIncome;
     }
 
-    private void calculateCashFlow(double income, double spending) {
-        TimePeriod incomeTimePeriod = (TimePeriod) incomeGranularity.getSelectedItem();
-        TimePeriod spendingTimePeriod = (TimePeriod) expenseGranularity.getSelectedItem();
-        TimePeriod overallTimePeriod = (TimePeriod) overallGranularity.getSelectedItem();
+    public long calculateTotalSpending() {
+        long totalSpending = model.getTotalSpending();
+        setMoneyText(totalSpendingField, totalSpending);
+        return totalSpending;
+    }
 
-        double cashState = (income / incomeTimePeriod.getValue()) - (spending / spendingTimePeriod.getValue());
+    private void setMoneyText(JTextField field, long cents) {
+        int length = Money.format(cents, formatBuffer, 0);
+        field.setText(new String(formatBuffer, 0, length));
+    }
 
-        if (cashState < 0) {
-            overallField.setForeground(Color.RED);
-        } else {
-            overallField.setForeground(Color.BLACK);
+    protected long getTextFieldValue(JTextField field) {
+        int status = amountParser.parse(field.getText());
+        if (status == AmountParser.OK) {
+            return amountParser.getValue();
         }
-        overallField.setText(String.format("%.2f", cashState * overallTimePeriod.getValue()));
+        if (status != AmountParser.EMPTY) {
+            metrics.counter(MetricsRegistry.PARSE_FAILURES).increment();
+        }
+        return 0;
     }
 
-    protected double getTextFieldValue(JTextField field) {
-        String fieldString = field.getText();
-        if (fieldString.isBlank()) {
-            field.setText("0");
-            return 0;
-        } else {
-            try {
-                return Double.parseDouble(fieldString);
-            } catch (NumberFormatException ex) {
-                field.setText("");
-                JOptionPane.showMessageDialog(topLevelFrame, "Please enter a valid number");
-                return Double.NaN;
-            }
+    private void validateField(JTextField field) {
+        int status = amountParser.parse(field.getText());
+        if (status != AmountParser.OK && status != AmountParser.EMPTY) {
+            field.setText("");
+            JOptionPane.showMessageDialog(topLevelFrame, "Please enter a valid number");
         }
     }
 
     private static void createAndShowGUI() {
+        EdtMonitor.install(MetricsRegistry.global());
         JFrame frame = new JFrame("Budget Calculator");
         frame.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
 
-        BudgetBase newContentPane = new BudgetBase(frame);
+        // every budget lives in the workspace directory; the one saved before workspaces existed
+        // is the default budget, budget.dat
+        Path workspacePath = Paths.get(System.getProperty("user.home"), ".budget-swing");
+        WorkspacePanel newContentPane;
+        try {
+            Workspace workspace = new Workspace(workspacePath);
+            newContentPane = new WorkspacePanel(frame, workspace);
+            if (workspace.contains(DEFAULT_BUDGET)) {
+                newContentPane.open(DEFAULT_BUDGET);
+            } else {
+                newContentPane.create(DEFAULT_BUDGET);
+            }
+        } catch (IOException | RuntimeException e) {
+            JOptionPane.showMessageDialog(frame, "Could not open " + workspacePath + ": " + e.getMessage());
+            BudgetBase unsaved = new BudgetBase(frame);
+            unsaved.setOpaque(true);
+            frame.setContentPane(unsaved);
+            frame.pack();
+            frame.setVisible(true);
+            return;
+        }
         newContentPane.setOpaque(true);
         frame.setContentPane(newContentPane);
 
+        Path ratesPath = workspacePath.resolve("rates");
+        if (Files.isDirectory(ratesPath)) {
+            try {
+                newContentPane.setExchangeRates(ExchangeRates.load(ratesPath));
+            } catch (IOException | RuntimeException e) {
+                JOptionPane.showMessageDialog(frame, "Could not read " + ratesPath + ": " + e.getMessage());
+            }
+        }
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                try {
+                    newContentPane.close();
+                } catch (IOException ex) {
+                    JOptionPane.showMessageDialog(frame, "Could not save " + workspacePath + ": " + ex.getMessage());
+                }
+            }
+        });
+
         frame.pack();
         frame.setVisible(true);
     }
 
-    public void saveState() {
-        BudgetState currentState = getCurrentState();
-        if(!undoStack.isEmpty() && (undoStack.peek().equals(currentState)))
+    public EditHistory getHistory() {
+        return history;
+    }
+
+    public BudgetStore getStore() {
+        return store;
+    }
+
+    /**
+     * Restores the budget saved in {@code store}, if any, and journals every later edit to it.
+     */
+    public void setStore(BudgetStore store) throws IOException {
+        stopEditing();
+        EditHistory restored = store.load(model);
+        if (restored != null) {
+            history = restored;
+            versions = new UndoTree(model.getSnapshot(), historyCapacity);
+            incomeGranularity.setSelectedItem(model.getIncomePeriod());
+            expenseGranularity.setSelectedItem(model.getSpendingPeriod());
+            overallGranularity.setSelectedItem(model.getOverallPeriod());
+        } else {
+            store.compact(model, history);
+        }
+        this.store = store;
+        snapshotPending = false;
+        calculateAll();
+    }
+
+    /**
+     * Writes a final snapshot and releases the store.
+     */
+    public void closeStore() {
+        if (store == null) {
             return;
+        }
+        stopEditing();
+        writeSnapshot();
+        try {
+            store.close();
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(topLevelFrame, "Could not close " + store.getSnapshotPath() + ": " + e.getMessage());
+        }
+        store = null;
+    }
 
-        undoStack.push(currentState);
+    /**
+     * Stops saving to the store, without writing it, and stops background recalculation. For an
+     * editor whose {@link Workspace} budget was evicted or released, which already saved it.
+     */
+    public void dispose() {
+        store = null;
+        snapshotPending = false;
+        if (snapshotTimer != null) {
+            snapshotTimer.stop();
+        }
+        stopEditing();
+        recalculator.shutdown();
     }
 
-    public void undo() {
-        if(!undoStack.isEmpty() && (undoStack.peek().equals(getCurrentState())))
-            undoStack.pop();
+    private boolean isJournaling() {
+        return store != null && !snapshotPending;
+    }
 
-        if (!undoStack.isEmpty()) {
-            BudgetState previousState = undoStack.pop();
-            setFieldsFromState(previousState);
-            calculateAll();
+    private void journal(byte type, int line, long value) {
+        if (isJournaling() && !store.append(type, line, value)) {
+            writeSnapshot();
+        }
+    }
+
+    private void scheduleSnapshot() {
+        if (store == null) {
+            return;
+        }
+        snapshotPending = true;
+        if (snapshotTimer == null) {
+            snapshotTimer = new Timer(SNAPSHOT_DELAY_MS, e -> writeSnapshot());
+            snapshotTimer.setRepeats(false);
+        }
+        snapshotTimer.restart();
+    }
+
+    private void writeSnapshot() {
+        if (store == null) {
+            return;
+        }
+        if (snapshotTimer != null) {
+            snapshotTimer.stop();
+        }
+        try {
+            store.compact(model, history);
+            snapshotPending = false;
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(topLevelFrame, "Could not save " + store.getSnapshotPath() + ": " + e.getMessage());
+        }
+    }
+
+    private void importStatement() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path path = chooser.getSelectedFile().toPath();
+        StatementImporter importer;
+        try {
+            importer = createImporter();
+        } catch (IOException | IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(topLevelFrame, "Could not read " + rulesPath() + ": " + e.getMessage());
+            return;
         }
+        Ledger imported = new Ledger();
+        importer.setLedger(imported, 0);
+        ProgressMonitor monitor = new ProgressMonitor(this, "Importing " + path.getFileName(), null, 0, 1000);
+        // the monitor is a Swing component, so it is read on the EDT; cancel() only sets a
+        // volatile flag the importing thread checks
+        importer.setProgressListener((read, total) -> SwingUtilities.invokeLater(() -> {
+            if (monitor.isCanceled()) {
+                importer.cancel();
+            }
+            monitor.setProgress((int) (read * 1000 / total));
+        }));
+
+        new SwingWorker<BudgetState, Void>() {
+            @Override
+            protected BudgetState doInBackground() throws IOException {
+                return importer.importFile(path);
+            }
+
+            @Override
+            protected void done() {
+                monitor.close();
+                try {
+                    BudgetState totals = get();
+                    if (imported.isEmpty()) {
+                        addImportedLines(path.getFileName().toString(), totals);
+                    } else {
+                        if (totals.getLineCount() > 2) {
+                            addImportedLines(path.getFileName().toString(), totals);
+                        }
+                        setLedger(imported);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    if (!(e.getCause() instanceof CancellationException)) {
+                        JOptionPane.showMessageDialog(topLevelFrame, "Import failed: " + e.getCause().getMessage());
+                    }
+                }
+            }
+        }.execute();
     }
 
-    private BudgetState getCurrentState(){
-        double[] incomeValues = new double[incomeFields.length];
-        double[] spendingValues = new double[spendingFields.length];
+    private void exportReport() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path path = chooser.getSelectedFile().toPath();
+        ReportExporter.Format format = ReportExporter.Format.forFileName(path.getFileName().toString());
+        if (format == null) {
+            JOptionPane.showMessageDialog(topLevelFrame, "Choose a file name ending in .csv, .html or .pdf");
+            return;
+        }
+        ReportExporter exporter = createExporter();
+        ProgressMonitor monitor = new ProgressMonitor(this, "Exporting " + path.getFileName(), null, 0, 1000);
+        // the monitor is a Swing component, so its cancel state is read on the EDT
+        exporter.setProgressListener((written, total) -> SwingUtilities.invokeLater(() -> {
+            if (monitor.isCanceled()) {
+                exporter.cancel();
+            }
+            monitor.setProgress((int) (written * 1000 / total));
+        }));
+
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws IOException {
+                exporter.export(path, format);
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                monitor.close();
+                try {
+                    get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    if (!(e.getCause() instanceof CancellationException)) {
+                        JOptionPane.showMessageDialog(topLevelFrame, "Export failed: " + e.getCause().getMessage());
+                    }
+                }
+            }
+        }.execute();
+    }
 
-        for (int i = 0; i < incomeFields.length; i++) {
-            incomeValues[i] = getTextFieldValue(incomeFields[i]);
+    /**
+     * An exporter for the current budget, ledger and version history that can run on another
+     * thread: the snapshot is immutable, the history is copied, and the ledger is replaced rather
+     * than changed once set, so once prepared for reading the export only reads it. Totals are
+     * converted and, with a ledger, averaged as in the total fields.
+     */
+    ReportExporter createExporter() {
+        ReportExporter exporter = new ReportExporter(model.getSnapshot());
+        exporter.setReportingCurrency(model.getExchangeRates(), model.getReportingCurrency(), model.getRateDay());
+        if (ledger != null) {
+            ledger.prepareForReading();
+            exporter.setLedger(ledger);
+            Totals totals = new Totals(ledger, model);
+            exporter.setTotals(totals.totalIncome, totals.totalSpending);
         }
+        exporter.setVersions(versions.copy());
+        return exporter;
+    }
 
-        for (int i = 0; i < spendingFields.length; i++) {
-            spendingValues[i] = getTextFieldValue(spendingFields[i]);
+    private static Path rulesPath() {
+        return Paths.get(System.getProperty("user.home"), ".budget-swing", "rules.txt");
+    }
+
+    /**
+     * Creates an importer with one category per line plus, last in each section, one for
+     * transactions no rule matched. Without a rules file every transaction is unmatched.
+     */
+    private StatementImporter createImporter() throws IOException {
+        LineItems income = model.getIncomeItems();
+        LineItems spending = model.getSpendingItems();
+        Path rulesPath = rulesPath();
+        if (!Files.exists(rulesPath)) {
+            return new StatementImporter(1, 1, StatementImporter.bySign(1), new AmountParser());
+        }
+        List<String> categories = new ArrayList<>();
+        for (int line = 0; line < income.size(); line++) {
+            categories.add(income.getName(line));
+        }
+        categories.add(null);
+        for (int line = 0; line < spending.size(); line++) {
+            categories.add(spending.getName(line));
         }
+        CategoryRules rules;
+        try (BufferedReader in = Files.newBufferedReader(rulesPath, StandardCharsets.UTF_8)) {
+            rules = CategoryRules.read(in, categories);
+        }
+        int unmatchedIncome = income.size();
+        int unmatchedSpending = categories.size();
+        rules.setFallback((description, cents) -> cents >= 0 ? unmatchedIncome : unmatchedSpending);
+        return new StatementImporter(income.size() + 1, spending.size() + 1, rules, new AmountParser());
+    }
 
-        return new BudgetState(incomeValues, spendingValues);
+    /**
+     * Adds the imported totals to their lines, and the unmatched ones to a new line named
+     * {@code name} per section, as a single edit that {@link #undo()} takes back.
+     */
+    void addImportedLines(String name, BudgetState imported) {
+        long[] income = imported.getIncomeValues();
+        long[] spending = imported.getSpendingValues();
+        int incomeLines = model.getIncomeItems().size();
+        int spendingLines = model.getSpendingItems().size();
+        boolean matched = income.length - 1 == incomeLines && spending.length - 1 == spendingLines;
+        // if lines were added or removed while importing, everything counts as unmatched
+        long unmatchedIncome = matched ? income[incomeLines] : BudgetEngine.total(income);
+        long unmatchedSpending = matched ? spending[spendingLines] : BudgetEngine.total(spending);
+        stopEditing();
+        versions.commit(model.getSnapshot());
+        // New lines start at zero: the structure listeners reset the history to the budget as it
+        // was, so the amounts below are one edit on top of it.
+        if (unmatchedIncome != 0) {
+            model.getIncomeItems().add(name, 0);
+        }
+        if (unmatchedSpending != 0) {
+            model.getSpendingItems().add(name, 0);
+        }
+        long[] values = model.getValues();
+        history.commit(values);
+        if (matched) {
+            for (int line = 0; line < incomeLines; line++) {
+                values[line] += income[line];
+            }
+            for (int line = 0; line < spendingLines; line++) {
+                values[model.getIncomeItems().size() + line] += spending[line];
+            }
+        }
+        if (unmatchedIncome != 0) {
+            values[incomeLines] = unmatchedIncome;
+        }
+        if (unmatchedSpending != 0) {
+            values[values.length - 1] = unmatchedSpending;
+        }
+        model.setValues(values);
+        history.commit(values);
+        versions.commit(model.getSnapshot());
+        writeSnapshot();
     }
 
-    private void setFieldsFromState(BudgetState state) {
-        double[] incomeValues = state.getIncomeValues();
-        double[] spendingValues = state.getSpendingValues();
+    /**
+     * Writes the metrics registry next to the saved budget, for attaching to a performance report.
+     * Bound to Ctrl+Shift+M.
+     */
+    public void dumpMetrics() {
+        Path path = Paths.get(System.getProperty("user.home"), ".budget-swing", "metrics.txt");
+        try {
+            metrics.dump(path);
+            JOptionPane.showMessageDialog(topLevelFrame, "Metrics written to " + path);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(topLevelFrame, "Could not write " + path + ": " + e.getMessage());
+        }
+    }
 
-        for (int i = 0; i < incomeFields.length; i++) {
-            incomeFields[i].setText(String.valueOf(incomeValues[i]));
+    public void saveState() {
+        HistoryEvent event = new HistoryEvent();
+        event.begin();
+        long start = System.nanoTime();
+        if (history.checkpoint()) {
+            journal(BudgetStore.RECORD_CHECKPOINT, 0, 0);
         }
+        versions.commit(model.getSnapshot());
+        historyOperationDone(MetricsRegistry.SAVE_STATE, start, event);
+    }
+
+    public void undo() {
+        HistoryEvent event = new HistoryEvent();
+        event.begin();
+        long start = System.nanoTime();
+        stopEditing();
+        long[] values = model.getValues();
+        boolean unrecorded = history.commit(values);
+        boolean undone = history.undo(values);
+        versions.commit(model.getSnapshot());
+        if (undone) {
+            model.setValues(values);
+            versions.commit(model.getSnapshot());
+            calculateAll();
+        }
+        historyMoved(unrecorded, undone, BudgetStore.RECORD_UNDO);
+        historyOperationDone(MetricsRegistry.UNDO, start, event);
+    }
+
+    public void redo() {
+        HistoryEvent event = new HistoryEvent();
+        event.begin();
+        long start = System.nanoTime();
+        stopEditing();
+        long[] values = model.getValues();
+        boolean unrecorded = history.commit(values);
+        boolean redone = history.redo(values);
+        versions.commit(model.getSnapshot());
+        if (redone) {
+            model.setValues(values);
+            versions.commit(model.getSnapshot());
+            calculateAll();
+        }
+        historyMoved(unrecorded, redone, BudgetStore.RECORD_REDO);
+        historyOperationDone(MetricsRegistry.REDO, start, event);
+    }
+
+    /**
+     * Restores any version in {@link #getVersions()}, including branches that later edits moved
+     * away from. The jump is itself recorded as one edit, so {@link #undo()} returns from it.
+     */
+    public void jumpTo(int version) {
+        stopEditing();
+        BudgetSnapshot target = versions.getSnapshot(version);
+        versions.commit(model.getSnapshot());
+        if (target.hasSameNames(model.getSnapshot())) {
+            long[] values = model.getValues();
+            history.commit(values);
+            target.getState().getIncomeVector().copyTo(values, 0);
+            target.getState().getSpendingVector().copyTo(values, target.getIncomeCount());
+            model.setValues(values);
+            history.commit(values);
+            writeSnapshot();
+        } else {
+            // a different set of lines: the structure listeners reset the linear history
+            model.getIncomeItems().replaceAll(target.getIncomeNames(), target.getState().getIncomeValues(),
+                    target.getIncomeCurrencies());
+            model.getSpendingItems().replaceAll(target.getSpendingNames(), target.getState().getSpendingValues(),
+                    target.getSpendingCurrencies());
+        }
+        if (versions.contains(version)) {
+            versions.moveTo(version);
+        } else {
+            // evicted by the commit above, which made room for the budget being left
+            versions.commit(model.getSnapshot());
+        }
+        calculateAll();
+    }
+
+    private void historyOperationDone(String operation, long start, HistoryEvent event) {
+        metrics.histogram(operation).record(System.nanoTime() - start);
+        metrics.gauge(MetricsRegistry.HISTORY_DEPTH).set(history.size());
+        metrics.gauge(MetricsRegistry.HISTORY_BYTES).set(history.getByteSize());
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.depth = history.size();
+            event.bytes = history.getByteSize();
+            event.commit();
+        }
+    }
 
-        for (int i = 0; i < spendingFields.length; i++) {
-            spendingFields[i].setText(String.valueOf(spendingValues[i]));
+    private void historyMoved(boolean unrecorded, boolean moved, byte type) {
+        if (unrecorded) {
+            // the journal cannot express commit's diff, so capture it in a snapshot instead
+            writeSnapshot();
+        } else if (moved) {
+            journal(type, 0, 0);
         }
     }
 
@@ -0,0 +1,199 @@
+package site.aberdeen;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+
+/**
+ * Headless entry point for scripts. Reads one budget per file argument (or from stdin when there
+ * are none, or for {@code -}) and prints tab-separated totals and cash flow for every
+ * {@link TimePeriod}:
+ * <pre>
+ * source  period  totalIncome  totalSpending  cashFlow
+ * </pre>
+ * Input lines are {@code income <amount> [name]}, {@code spending <amount> [name]} and
+ * {@code period income|spending <weekly|monthly|yearly>}; blank lines and {@code #} comments are
+ * skipped. Amounts default to the weekly period.
+ * <p>
+ * Nothing here touches {@code java.awt} or Swing. For the fastest startup, build the AppCDS
+ * archive with {@code mvn -Pappcds package} (the JDK 11 class-list flow) and run the CLI from the
+ * same jar:
+ * {@code java -XX:SharedArchiveFile=target/budget-cli.jsa -XX:TieredStopAtLevel=1
+ * -cp target/Budget_Swing-1.0-SNAPSHOT.jar site.aberdeen.BudgetCli}.
+ */
+public final class BudgetCli {
+
+    static final int EXIT_OK = 0;
+    static final int EXIT_INVALID_INPUT = 1;
+    static final int EXIT_IO_ERROR = 2;
+
+    private static final TimePeriod[] PERIODS = TimePeriod.values();
+
+    private final AmountParser amountParser = new AmountParser('.', ',');
+    private final char[] formatBuffer = new char[Money.MAX_FORMATTED_LENGTH];
+    private final StringBuilder line = new StringBuilder(Money.MAX_FORMATTED_LENGTH * 4);
+
+    private long totalIncome;
+    private long totalSpending;
+    private TimePeriod incomePeriod;
+    private TimePeriod spendingPeriod;
+
+    public static void main(String[] args) {
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+        int status;
+        try {
+            status = new BudgetCli().run(args, out);
+            out.flush();
+        } catch (IOException e) {
+            System.err.println("budget: " + e.getMessage());
+            status = EXIT_IO_ERROR;
+        }
+        System.exit(status);
+    }
+
+    /**
+     * Processes every source in {@code args} and returns the process exit status.
+     */
+    public int run(String[] args, Writer out) throws IOException {
+        if (args.length == 0) {
+            return runSource("-", out);
+        }
+        int status = EXIT_OK;
+        for (String source : args) {
+            status = Math.max(status, runSource(source, out));
+        }
+        return status;
+    }
+
+    /**
+     * Totals one source. A source that cannot be read is reported like invalid input, so the
+     * remaining sources still run; only failing to write {@code out} is thrown.
+     */
+    private int runSource(String source, Writer out) throws IOException {
+        String error;
+        try (BufferedReader in = open(source)) {
+            error = read(in);
+        } catch (NoSuchFileException e) {
+            System.err.println("budget: " + source + ": no such file");
+            return EXIT_IO_ERROR;
+        } catch (IOException e) {
+            System.err.println("budget: " + source + ": " + e.getMessage());
+            return EXIT_IO_ERROR;
+        }
+        if (error != null) {
+            System.err.println("budget: " + source + ": " + error);
+            return EXIT_INVALID_INPUT;
+        }
+        write(source, out);
+        return EXIT_OK;
+    }
+
+    private static BufferedReader open(String source) throws IOException {
+        Reader reader = "-".equals(source)
+                ? new InputStreamReader(System.in, StandardCharsets.UTF_8)
+                : Files.newBufferedReader(Paths.get(source), StandardCharsets.UTF_8);
+        return new BufferedReader(reader, 1 << 16);
+    }
+
+    /**
+     * Reads one budget, returning an error message or null on success.
+     */
+    String read(BufferedReader in) throws IOException {
+        totalIncome = 0;
+        totalSpending = 0;
+        incomePeriod = TimePeriod.WEEKLY;
+        spendingPeriod = TimePeriod.WEEKLY;
+
+        String text;
+        int number = 0;
+        while ((text = in.readLine()) != null) {
+            number++;
+            int from = skipSpace(text, 0);
+            if (from == text.length() || text.charAt(from) == '#') {
+                continue;
+            }
+            int keywordEnd = wordEnd(text, from);
+            int argumentStart = skipSpace(text, keywordEnd);
+            int argumentEnd = wordEnd(text, argumentStart);
+            boolean income = isWord(text, from, keywordEnd, "income");
+            boolean spending = isWord(text, from, keywordEnd, "spending");
+            if (income || spending) {
+                if (amountParser.parse(text, argumentStart, argumentEnd) != AmountParser.OK) {
+                    return "line " + number + ": invalid amount";
+                }
+                if (income) {
+                    totalIncome += amountParser.getValue();
+                } else {
+                    totalSpending += amountParser.getValue();
+                }
+            } else if (isWord(text, from, keywordEnd, "period")) {
+                int periodStart = skipSpace(text, argumentEnd);
+                TimePeriod period = parsePeriod(text, periodStart, wordEnd(text, periodStart));
+                if (period == null) {
+                    return "line " + number + ": unknown period";
+                } else if (isWord(text, argumentStart, argumentEnd, "income")) {
+                    incomePeriod = period;
+                } else if (isWord(text, argumentStart, argumentEnd, "spending")) {
+                    spendingPeriod = period;
+                } else {
+                    return "line " + number + ": expected income or spending";
+                }
+            } else {
+                return "line " + number + ": expected income, spending or period";
+            }
+        }
+        return null;
+    }
+
+    void write(String source, Writer out) throws IOException {
+        for (TimePeriod period : PERIODS) {
+            line.setLength(0);
+            line.append(source).append('\t').append(period.name().toLowerCase()).append('\t');
+            appendMoney(incomePeriod.convert(totalIncome, period)).append('\t');
+            appendMoney(spendingPeriod.convert(totalSpending, period)).append('\t');
+            appendMoney(BudgetEngine.cashFlow(totalIncome, incomePeriod, totalSpending, spendingPeriod, period))
+                    .append('\n');
+            out.append(line);
+        }
+    }
+
+    private StringBuilder appendMoney(long cents) {
+        int length = Money.format(cents, formatBuffer, 0);
+        return line.append(formatBuffer, 0, length);
+    }
+
+    private static TimePeriod parsePeriod(String text, int from, int to) {
+        for (TimePeriod period : PERIODS) {
+            if (isWord(text, from, to, period.name())) {
+                return period;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isWord(String text, int from, int to, String word) {
+        return to - from == word.length() && text.regionMatches(true, from, word, 0, word.length());
+    }
+
+    private static int skipSpace(String text, int from) {
+        while (from < text.length() && Character.isWhitespace(text.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    private static int wordEnd(String text, int from) {
+        while (from < text.length() && !Character.isWhitespace(text.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+}
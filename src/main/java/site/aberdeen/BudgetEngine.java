@@ -0,0 +1,76 @@
+package site.aberdeen;
+
+/**
+ * UI-free budget arithmetic in {@link Money} cents. Budgets are passed in columnar form: the line
+ * items of budget {@code b} are {@code values[offsets[b]] .. values[offsets[b + 1] - 1]} and periods
+ * are {@link TimePeriod} ordinals.
+ */
+public final class BudgetEngine {
+
+    private static final TimePeriod[] PERIODS = TimePeriod.values();
+
+    private BudgetEngine() {
+    }
+
+    public static long total(long[] values, int from, int to) {
+        return Summation.sum(values, from, to);
+    }
+
+    public static long total(long[] values) {
+        return total(values, 0, values.length);
+    }
+
+    /**
+     * Cash flow in cents per {@code overallPeriod}. Both sides are annualized exactly and the result
+     * is rounded once, so the answer does not depend on which periods the inputs were entered in.
+     */
+    public static long cashFlow(long income, TimePeriod incomePeriod,
+                                long spending, TimePeriod spendingPeriod,
+                                TimePeriod overallPeriod) {
+        long annualCashState = incomePeriod.annualize(income) - spendingPeriod.annualize(spending);
+        return overallPeriod.fromAnnual(annualCashState);
+    }
+
+    public static void calculate(int budgetCount,
+                                 long[] incomeValues, int[] incomeOffsets,
+                                 long[] spendingValues, int[] spendingOffsets,
+                                 byte[] incomePeriods, byte[] spendingPeriods, byte[] overallPeriods,
+                                 long[] totalIncome, long[] totalSpending, long[] cashFlow) {
+        checkOffsets("income", incomeOffsets, budgetCount, incomeValues.length);
+        checkOffsets("spending", spendingOffsets, budgetCount, spendingValues.length);
+        checkLength("incomePeriods", incomePeriods.length, budgetCount);
+        checkLength("spendingPeriods", spendingPeriods.length, budgetCount);
+        checkLength("overallPeriods", overallPeriods.length, budgetCount);
+        checkLength("totalIncome", totalIncome.length, budgetCount);
+        checkLength("totalSpending", totalSpending.length, budgetCount);
+        checkLength("cashFlow", cashFlow.length, budgetCount);
+
+        for (int b = 0; b < budgetCount; b++) {
+            long income = total(incomeValues, incomeOffsets[b], incomeOffsets[b + 1]);
+            long spending = total(spendingValues, spendingOffsets[b], spendingOffsets[b + 1]);
+            totalIncome[b] = income;
+            totalSpending[b] = spending;
+            cashFlow[b] = cashFlow(income, PERIODS[incomePeriods[b]],
+                    spending, PERIODS[spendingPeriods[b]],
+                    PERIODS[overallPeriods[b]]);
+        }
+    }
+
+    private static void checkOffsets(String name, int[] offsets, int budgetCount, int valueCount) {
+        checkLength(name + "Offsets", offsets.length, budgetCount + 1);
+        if (offsets[0] < 0 || offsets[budgetCount] > valueCount) {
+            throw new IllegalArgumentException(name + " offsets out of range");
+        }
+        for (int b = 0; b < budgetCount; b++) {
+            if (offsets[b] > offsets[b + 1]) {
+                throw new IllegalArgumentException(name + " offsets must be non-decreasing at budget " + b);
+            }
+        }
+    }
+
+    private static void checkLength(String name, int actual, int required) {
+        if (actual < required) {
+            throw new IllegalArgumentException(name + " has length " + actual + ", need " + required);
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package site.aberdeen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * Income and spending line items, periods and running totals for one budget. Setting a line
+ * applies only the difference to its section total, so an edit costs the same however many
+ * lines there are.
+ * <p>
+ * The line items belong to the Event Dispatch Thread. Every change is also published as an
+ * immutable {@link BudgetSnapshot} through an atomic reference, so other threads can read a
+ * consistent budget with {@link #getSnapshot()} without locking; a value edit costs O(log n) to
+ * publish since the new snapshot shares all unchanged chunks with the old one.
+ */
+public class BudgetModel {
+
+    public interface Listener {
+        void budgetChanged(BudgetModel model);
+    }
+
+    /**
+     * Notified on the writing thread after each snapshot is published.
+     */
+    public interface SnapshotListener {
+        void snapshotChanged(BudgetSnapshot previous, BudgetSnapshot current);
+    }
+
+    private final LineItems income;
+    private final LineItems spending;
+
+    private TimePeriod incomePeriod = TimePeriod.WEEKLY;
+    private TimePeriod spendingPeriod = TimePeriod.WEEKLY;
+    private TimePeriod overallPeriod = TimePeriod.WEEKLY;
+
+    private ExchangeRates exchangeRates;
+    private String reportingCurrency;
+    private int rateDay;
+
+    private final List<Listener> listeners = new ArrayList<>();
+    private final List<SnapshotListener> snapshotListeners = new CopyOnWriteArrayList<>();
+
+    private final AtomicReference<BudgetSnapshot> snapshot;
+    // Set while setValues changes both sections, which then publish once together.
+    private boolean replacingValues;
+
+    public BudgetModel(int incomeCount, int spendingCount) {
+        this(blankLines(incomeCount), blankLines(spendingCount));
+    }
+
+    public BudgetModel(LineItems income, LineItems spending) {
+        this.income = income;
+        this.spending = spending;
+        snapshot = new AtomicReference<>(BudgetSnapshot.of(income, spending, incomePeriod, spendingPeriod, overallPeriod));
+        LineItems.Listener forward = new LineItems.Listener() {
+            @Override
+            public void linesInserted(LineItems items, int first, int last) {
+                update(current -> sectionChanged(current, items));
+                fireChanged();
+            }
+
+            @Override
+            public void linesRemoved(LineItems items, int first, int last) {
+                update(current -> sectionChanged(current, items));
+                fireChanged();
+            }
+
+            @Override
+            public void linesUpdated(LineItems items, int first, int last) {
+                if (replacingValues) {
+                    return;
+                }
+                update(current -> first == last ? lineChanged(current, items, first) : sectionChanged(current, items));
+                fireChanged();
+            }
+        };
+        income.addListener(forward);
+        spending.addListener(forward);
+    }
+
+    private static LineItems blankLines(int count) {
+        LineItems items = new LineItems();
+        for (int i = 0; i < count; i++) {
+            items.add("", 0);
+        }
+        return items;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public void addSnapshotListener(SnapshotListener listener) {
+        snapshotListeners.add(listener);
+    }
+
+    public void removeSnapshotListener(SnapshotListener listener) {
+        snapshotListeners.remove(listener);
+    }
+
+    /**
+     * The latest published budget. Safe to call from any thread.
+     */
+    public BudgetSnapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    public LineItems getIncomeItems() {
+        return income;
+    }
+
+    public LineItems getSpendingItems() {
+        return spending;
+    }
+
+    public int getLineCount() {
+        return income.size() + spending.size();
+    }
+
+    /**
+     * Replaces every amount at once, e.g. when restoring history. Values are ordered income first,
+     * then spending, as returned by {@link #getValues()}. Published as one snapshot, so no reader
+     * sees new income with old spending.
+     */
+    public void setValues(long[] values) {
+        if (values.length != getLineCount()) {
+            throw new IllegalArgumentException("expected " + getLineCount() + " values, got " + values.length);
+        }
+        replacingValues = true;
+        try {
+            income.setAll(values, 0);
+            spending.setAll(values, income.size());
+        } finally {
+            replacingValues = false;
+        }
+        update(current -> current.withIncome(income).withSpending(spending));
+        fireChanged();
+    }
+
+    public long[] getValues() {
+        long[] values = new long[getLineCount()];
+        income.copyTo(values, 0);
+        spending.copyTo(values, income.size());
+        return values;
+    }
+
+    /**
+     * Returns the current amounts as an immutable state. The instance is reused until a line
+     * changes, so repeated calls between edits cost nothing.
+     */
+    public BudgetState getState() {
+        return snapshot.get().getState();
+    }
+
+    /**
+     * Total income, converted into the reporting currency if one is set.
+     */
+    public long getTotalIncome() {
+        if (reportingCurrency == null) {
+            return income.getTotal();
+        }
+        return snapshot.get().getTotalIncome(exchangeRates, reportingCurrency, rateDay);
+    }
+
+    public long getTotalSpending() {
+        if (reportingCurrency == null) {
+            return spending.getTotal();
+        }
+        return snapshot.get().getTotalSpending(exchangeRates, reportingCurrency, rateDay);
+    }
+
+    public long getCashFlow() {
+        return BudgetEngine.cashFlow(getTotalIncome(), incomePeriod,
+                getTotalSpending(), spendingPeriod, overallPeriod);
+    }
+
+    /**
+     * Reports totals in {@code reportingCurrency}, converting lines at the {@code rates} in effect
+     * on {@code day}. A null currency turns conversion off, adding amounts as they are.
+     *
+     * @throws IllegalArgumentException if {@code rates} has no column for the currency
+     */
+    public void setReportingCurrency(ExchangeRates rates, String reportingCurrency, int day) {
+        reportingCurrency = LineItems.normalizeCurrency(reportingCurrency);
+        if (reportingCurrency != null && rates.indexOf(reportingCurrency) < 0) {
+            throw new IllegalArgumentException("No rates for " + reportingCurrency);
+        }
+        this.exchangeRates = reportingCurrency == null ? null : rates;
+        this.reportingCurrency = reportingCurrency;
+        this.rateDay = day;
+        fireChanged();
+    }
+
+    public String getReportingCurrency() {
+        return reportingCurrency;
+    }
+
+    public ExchangeRates getExchangeRates() {
+        return exchangeRates;
+    }
+
+    public int getRateDay() {
+        return rateDay;
+    }
+
+    public TimePeriod getIncomePeriod() {
+        return incomePeriod;
+    }
+
+    public TimePeriod getSpendingPeriod() {
+        return spendingPeriod;
+    }
+
+    public TimePeriod getOverallPeriod() {
+        return overallPeriod;
+    }
+
+    public void setPeriods(TimePeriod incomePeriod, TimePeriod spendingPeriod, TimePeriod overallPeriod) {
+        if (this.incomePeriod != incomePeriod || this.spendingPeriod != spendingPeriod
+                || this.overallPeriod != overallPeriod) {
+            this.incomePeriod = incomePeriod;
+            this.spendingPeriod = spendingPeriod;
+            this.overallPeriod = overallPeriod;
+            update(current -> current.withPeriods(incomePeriod, spendingPeriod, overallPeriod));
+            fireChanged();
+        }
+    }
+
+    private BudgetSnapshot lineChanged(BudgetSnapshot current, LineItems items, int line) {
+        if (items == income) {
+            return current.withIncomeLine(line, items.getName(line), items.getCurrency(line), items.get(line));
+        }
+        return current.withSpendingLine(line, items.getName(line), items.getCurrency(line), items.get(line));
+    }
+
+    private BudgetSnapshot sectionChanged(BudgetSnapshot current, LineItems items) {
+        return items == income ? current.withIncome(items) : current.withSpending(items);
+    }
+
+    /**
+     * Publishes {@code change} applied to the latest snapshot, retrying if another writer got
+     * there first, then notifies snapshot listeners with the snapshot it replaced.
+     */
+    private BudgetSnapshot update(UnaryOperator<BudgetSnapshot> change) {
+        BudgetSnapshot previous;
+        BudgetSnapshot next;
+        do {
+            previous = snapshot.get();
+            next = change.apply(previous);
+        } while (previous != next && !snapshot.compareAndSet(previous, next));
+        if (previous != next) {
+            for (SnapshotListener listener : snapshotListeners) {
+                listener.snapshotChanged(previous, next);
+            }
+        }
+        return next;
+    }
+
+    private void fireChanged() {
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).budgetChanged(this);
+        }
+    }
+}
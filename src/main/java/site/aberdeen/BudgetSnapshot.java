@@ -0,0 +1,348 @@
+package site.aberdeen;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * One consistent, immutable view of a budget: line names, amounts and periods. Published by
+ * {@link BudgetModel#getSnapshot()} so that any thread can read the whole budget without locking
+ * while the Event Dispatch Thread keeps editing. Name and currency arrays are shared between
+ * snapshots until a line is renamed, added or removed or changes currency.
+ */
+public final class BudgetSnapshot {
+
+    // Amounts summed per currency, computed on first conversion and then carried from snapshot to
+    // snapshot through single line edits.
+    private static final class Subtotals {
+
+        final String[] currencies;
+        final long[] totals;
+        final int count;
+
+        Subtotals(String[] lineCurrencies, LongVector values) {
+            String[] distinct = new String[4];
+            long[] sums = new long[4];
+            int distinctCount = 0;
+            for (int line = 0; line < lineCurrencies.length; line++) {
+                String currency = lineCurrencies[line];
+                int i = 0;
+                while (i < distinctCount && !Objects.equals(distinct[i], currency)) {
+                    i++;
+                }
+                if (i == distinctCount) {
+                    if (i == distinct.length) {
+                        distinct = Arrays.copyOf(distinct, i * 2);
+                        sums = Arrays.copyOf(sums, i * 2);
+                    }
+                    distinct[i] = currency;
+                    distinctCount++;
+                }
+                sums[i] += values.get(line);
+            }
+            currencies = distinct;
+            totals = sums;
+            count = distinctCount;
+        }
+
+        private Subtotals(String[] currencies, long[] totals, int count) {
+            this.currencies = currencies;
+            this.totals = totals;
+            this.count = count;
+        }
+
+        // A currency whose lines now sum to zero keeps its entry, which converts to nothing.
+        Subtotals withLine(String oldCurrency, long oldCents, String currency, long cents) {
+            String[] newCurrencies = Arrays.copyOf(currencies, count + 1);
+            long[] newTotals = Arrays.copyOf(totals, count + 1);
+            int newCount = count;
+            for (int i = 0; i < newCount; i++) {
+                if (Objects.equals(newCurrencies[i], oldCurrency)) {
+                    newTotals[i] -= oldCents;
+                    break;
+                }
+            }
+            int i = 0;
+            while (i < newCount && !Objects.equals(newCurrencies[i], currency)) {
+                i++;
+            }
+            if (i == newCount) {
+                newCurrencies[i] = currency;
+                newCount++;
+            }
+            newTotals[i] += cents;
+            return new Subtotals(newCurrencies, newTotals, newCount);
+        }
+
+        long convert(ExchangeRates rates, String reportingCurrency, int day) {
+            double[] factors = rates.getFactors(reportingCurrency, day);
+            long total = 0;
+            for (int i = 0; i < count; i++) {
+                if (currencies[i] == null || totals[i] == 0) {
+                    total += totals[i];
+                    continue;
+                }
+                int column = rates.indexOf(currencies[i]);
+                double factor = column < 0 ? Double.NaN : factors[column];
+                if (Double.isNaN(factor)) {
+                    throw new IllegalArgumentException("No " + currencies[i] + " to " + reportingCurrency + " rate");
+                }
+                total += Math.round(totals[i] * factor);
+            }
+            return total;
+        }
+    }
+
+    private final String[] incomeNames;
+    private final String[] spendingNames;
+    private final String[] incomeCurrencies;
+    private final String[] spendingCurrencies;
+    private final BudgetState state;
+    private final TimePeriod incomePeriod;
+    private final TimePeriod spendingPeriod;
+    private final TimePeriod overallPeriod;
+
+    private volatile Subtotals incomeSubtotals;
+    private volatile Subtotals spendingSubtotals;
+
+    private BudgetSnapshot(String[] incomeNames, String[] spendingNames, String[] incomeCurrencies,
+                           String[] spendingCurrencies, BudgetState state,
+                           TimePeriod incomePeriod, TimePeriod spendingPeriod, TimePeriod overallPeriod) {
+        this.incomeNames = incomeNames;
+        this.spendingNames = spendingNames;
+        this.incomeCurrencies = incomeCurrencies;
+        this.spendingCurrencies = spendingCurrencies;
+        this.state = state;
+        this.incomePeriod = incomePeriod;
+        this.spendingPeriod = spendingPeriod;
+        this.overallPeriod = overallPeriod;
+    }
+
+    static BudgetSnapshot of(LineItems income, LineItems spending,
+                             TimePeriod incomePeriod, TimePeriod spendingPeriod, TimePeriod overallPeriod) {
+        return new BudgetSnapshot(names(income), names(spending), currencies(income), currencies(spending),
+                new BudgetState(values(income), values(spending)), incomePeriod, spendingPeriod, overallPeriod);
+    }
+
+    private static String[] names(LineItems items) {
+        String[] names = new String[items.size()];
+        for (int line = 0; line < names.length; line++) {
+            names[line] = items.getName(line);
+        }
+        return names;
+    }
+
+    private static String[] currencies(LineItems items) {
+        String[] currencies = new String[items.size()];
+        for (int line = 0; line < currencies.length; line++) {
+            currencies[line] = items.getCurrency(line);
+        }
+        return currencies;
+    }
+
+    private static LongVector values(LineItems items) {
+        long[] values = new long[items.size()];
+        items.copyTo(values, 0);
+        return LongVector.of(values);
+    }
+
+    public BudgetState getState() {
+        return state;
+    }
+
+    public int getIncomeCount() {
+        return incomeNames.length;
+    }
+
+    public int getSpendingCount() {
+        return spendingNames.length;
+    }
+
+    public String getIncomeName(int line) {
+        return incomeNames[line];
+    }
+
+    public String getSpendingName(int line) {
+        return spendingNames[line];
+    }
+
+    /**
+     * The line's currency code, or null if it is in the reporting currency.
+     */
+    public String getIncomeCurrency(int line) {
+        return incomeCurrencies[line];
+    }
+
+    public String getSpendingCurrency(int line) {
+        return spendingCurrencies[line];
+    }
+
+    public long getIncomeValue(int line) {
+        return state.getIncomeValue(line);
+    }
+
+    public long getSpendingValue(int line) {
+        return state.getSpendingValue(line);
+    }
+
+    public long getTotalIncome() {
+        return state.getTotalIncome();
+    }
+
+    public long getTotalSpending() {
+        return state.getTotalSpending();
+    }
+
+    public long getCashFlow() {
+        return BudgetEngine.cashFlow(state.getTotalIncome(), incomePeriod,
+                state.getTotalSpending(), spendingPeriod, overallPeriod);
+    }
+
+    /**
+     * Total income in {@code reportingCurrency} at the rates of {@code day}. Lines are summed
+     * exactly per currency first, once per snapshot, so each conversion costs one multiply per
+     * currency used whatever the number of lines. Lines without a currency count as they are.
+     *
+     * @throws IllegalArgumentException if a line is in a currency {@code rates} has no rate for
+     *                                  on {@code day}
+     */
+    public long getTotalIncome(ExchangeRates rates, String reportingCurrency, int day) {
+        Subtotals subtotals = incomeSubtotals;
+        if (subtotals == null) {
+            subtotals = new Subtotals(incomeCurrencies, state.getIncomeVector());
+            incomeSubtotals = subtotals;
+        }
+        return subtotals.convert(rates, reportingCurrency, day);
+    }
+
+    public long getTotalSpending(ExchangeRates rates, String reportingCurrency, int day) {
+        Subtotals subtotals = spendingSubtotals;
+        if (subtotals == null) {
+            subtotals = new Subtotals(spendingCurrencies, state.getSpendingVector());
+            spendingSubtotals = subtotals;
+        }
+        return subtotals.convert(rates, reportingCurrency, day);
+    }
+
+    public TimePeriod getIncomePeriod() {
+        return incomePeriod;
+    }
+
+    public TimePeriod getSpendingPeriod() {
+        return spendingPeriod;
+    }
+
+    public TimePeriod getOverallPeriod() {
+        return overallPeriod;
+    }
+
+    /**
+     * Whether both snapshots have the same lines in the same order, with the same names and
+     * currencies, whatever their amounts.
+     */
+    public boolean hasSameNames(BudgetSnapshot other) {
+        return Arrays.equals(incomeNames, other.incomeNames) && Arrays.equals(spendingNames, other.spendingNames)
+                && hasSameCurrencies(other);
+    }
+
+    public boolean hasSameCurrencies(BudgetSnapshot other) {
+        return Arrays.equals(incomeCurrencies, other.incomeCurrencies)
+                && Arrays.equals(spendingCurrencies, other.spendingCurrencies);
+    }
+
+    /**
+     * Whether both snapshots hold the very same income names and amounts, in O(1). False does not
+     * mean they differ, only that they were built separately.
+     */
+    boolean sharesIncomeLines(BudgetSnapshot other) {
+        return incomeNames == other.incomeNames && state.getIncomeVector() == other.state.getIncomeVector();
+    }
+
+    boolean sharesSpendingLines(BudgetSnapshot other) {
+        return spendingNames == other.spendingNames && state.getSpendingVector() == other.state.getSpendingVector();
+    }
+
+    String[] getIncomeNames() {
+        return incomeNames.clone();
+    }
+
+    String[] getSpendingNames() {
+        return spendingNames.clone();
+    }
+
+    String[] getIncomeCurrencies() {
+        return incomeCurrencies.clone();
+    }
+
+    String[] getSpendingCurrencies() {
+        return spendingCurrencies.clone();
+    }
+
+    BudgetSnapshot withIncomeLine(int line, String name, String currency, long cents) {
+        BudgetSnapshot snapshot = with(withName(incomeNames, line, name), spendingNames,
+                withName(incomeCurrencies, line, currency), spendingCurrencies, state.withIncomeValue(line, cents));
+        Subtotals subtotals = incomeSubtotals;
+        if (snapshot != this && subtotals != null) {
+            snapshot.incomeSubtotals = subtotals.withLine(incomeCurrencies[line], getIncomeValue(line), currency, cents);
+        }
+        return snapshot;
+    }
+
+    BudgetSnapshot withSpendingLine(int line, String name, String currency, long cents) {
+        BudgetSnapshot snapshot = with(incomeNames, withName(spendingNames, line, name), incomeCurrencies,
+                withName(spendingCurrencies, line, currency), state.withSpendingValue(line, cents));
+        Subtotals subtotals = spendingSubtotals;
+        if (snapshot != this && subtotals != null) {
+            snapshot.spendingSubtotals = subtotals.withLine(spendingCurrencies[line], getSpendingValue(line),
+                    currency, cents);
+        }
+        return snapshot;
+    }
+
+    BudgetSnapshot withIncome(LineItems income) {
+        return with(names(income), spendingNames, currencies(income), spendingCurrencies,
+                new BudgetState(values(income), state.getSpendingVector()));
+    }
+
+    BudgetSnapshot withSpending(LineItems spending) {
+        return with(incomeNames, names(spending), incomeCurrencies, currencies(spending),
+                new BudgetState(state.getIncomeVector(), values(spending)));
+    }
+
+    BudgetSnapshot withPeriods(TimePeriod incomePeriod, TimePeriod spendingPeriod, TimePeriod overallPeriod) {
+        BudgetSnapshot snapshot = new BudgetSnapshot(incomeNames, spendingNames, incomeCurrencies, spendingCurrencies,
+                state, incomePeriod, spendingPeriod, overallPeriod);
+        snapshot.incomeSubtotals = incomeSubtotals;
+        snapshot.spendingSubtotals = spendingSubtotals;
+        return snapshot;
+    }
+
+    // The new snapshot keeps the subtotals of whichever side is unchanged.
+    private BudgetSnapshot with(String[] incomeNames, String[] spendingNames, String[] incomeCurrencies,
+                                String[] spendingCurrencies, BudgetState state) {
+        if (incomeNames == this.incomeNames && spendingNames == this.spendingNames
+                && incomeCurrencies == this.incomeCurrencies && spendingCurrencies == this.spendingCurrencies
+                && state == this.state) {
+            return this;
+        }
+        BudgetSnapshot snapshot = new BudgetSnapshot(incomeNames, spendingNames, incomeCurrencies,
+                spendingCurrencies, state, incomePeriod, spendingPeriod, overallPeriod);
+        if (incomeCurrencies == this.incomeCurrencies && state.getIncomeVector() == this.state.getIncomeVector()) {
+            snapshot.incomeSubtotals = incomeSubtotals;
+        }
+        if (spendingCurrencies == this.spendingCurrencies
+                && state.getSpendingVector() == this.state.getSpendingVector()) {
+            snapshot.spendingSubtotals = spendingSubtotals;
+        }
+        return snapshot;
+    }
+
+    // Used for names and currencies alike; either may be null.
+    private static String[] withName(String[] names, int line, String name) {
+        if (Objects.equals(names[line], name)) {
+            return names;
+        }
+        String[] renamed = Arrays.copyOf(names, names.length);
+        renamed[line] = name;
+        return renamed;
+    }
+}
@@ -1,22 +1,92 @@
 package site.aberdeen;
 
-import java.util.Arrays;
-
+/**
+ * Immutable income and spending amounts with their totals. Amounts are held in
+ * {@link LongVector}s, so {@link #withIncomeValue} and {@link #withSpendingValue} return a new
+ * state in O(log n) that shares everything but the changed chunk with this one.
+ */
 public class BudgetState {
-    private final double[] incomeValues;
-    private final double[] spendingValues;
+    private final LongVector incomeValues;
+    private final LongVector spendingValues;
+    private final long totalIncome;
+    private final long totalSpending;
+
+    // Computed on first use and cached; 0 until then, like String.hashCode.
+    private int hash;
+
+    public BudgetState(long[] incomeValues, long[] spendingValues){
+        this(LongVector.of(incomeValues), LongVector.of(spendingValues));
+    }
+
+    BudgetState(LongVector incomeValues, LongVector spendingValues) {
+        this(incomeValues, spendingValues, incomeValues.sum(), spendingValues.sum());
+    }
+
+    private BudgetState(LongVector incomeValues, LongVector spendingValues, long totalIncome, long totalSpending) {
+        this.incomeValues = incomeValues;
+        this.spendingValues = spendingValues;
+        this.totalIncome = totalIncome;
+        this.totalSpending = totalSpending;
+    }
+
+    public long[] getIncomeValues() {
+        return incomeValues.toArray();
+    }
+
+    public long[] getSpendingValues() {
+        return spendingValues.toArray();
+    }
+
+    public int getIncomeCount() {
+        return incomeValues.size();
+    }
+
+    public int getSpendingCount() {
+        return spendingValues.size();
+    }
+
+    public long getIncomeValue(int line) {
+        return incomeValues.get(line);
+    }
+
+    public long getSpendingValue(int line) {
+        return spendingValues.get(line);
+    }
+
+    public long getTotalIncome() {
+        return totalIncome;
+    }
+
+    public long getTotalSpending() {
+        return totalSpending;
+    }
+
+    public int getLineCount() {
+        return incomeValues.size() + spendingValues.size();
+    }
+
+    public BudgetState withIncomeValue(int line, long cents) {
+        LongVector values = incomeValues.with(line, cents);
+        if (values == incomeValues) {
+            return this;
+        }
+        return new BudgetState(values, spendingValues, totalIncome - incomeValues.get(line) + cents, totalSpending);
+    }
 
-    public BudgetState(double[] incomeValues, double[] spendingValues){
-        this.incomeValues = Arrays.copyOf(incomeValues, incomeValues.length);
-        this.spendingValues = Arrays.copyOf(spendingValues, spendingValues.length);
+    public BudgetState withSpendingValue(int line, long cents) {
+        LongVector values = spendingValues.with(line, cents);
+        if (values == spendingValues) {
+            return this;
+        }
+        return new BudgetState(incomeValues, values, totalIncome, totalSpending - spendingValues.get(line) + cents);
     }
 
-    public double[] getIncomeValues() {
-        return Arrays.copyOf(incomeValues, incomeValues.length);
+    LongVector getIncomeVector() {
+        return incomeValues;
     }
 
-    public double[] getSpendingValues() {
-        return Arrays.copyOf(spendingValues, spendingValues.length);
+    LongVector getSpendingVector() {
+        return spendingValues;
     }
 
     @Override
@@ -24,13 +94,19 @@ public class BudgetState {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         BudgetState that = (BudgetState) o;
-        return Arrays.equals(incomeValues, that.incomeValues) && Arrays.equals(spendingValues, that.spendingValues);
+        if (hash != 0 && that.hash != 0 && hash != that.hash) return false;
+        return totalIncome == that.totalIncome && totalSpending == that.totalSpending
+                && incomeValues.equals(that.incomeValues) && spendingValues.equals(that.spendingValues);
     }
 
     @Override
     public int hashCode() {
-        int result = Arrays.hashCode(incomeValues);
-        result = 31 * result + Arrays.hashCode(spendingValues);
+        int result = hash;
+        if (result == 0) {
+            result = incomeValues.hashCode();
+            result = 31 * result + spendingValues.hashCode();
+            hash = result;
+        }
         return result;
     }
 }
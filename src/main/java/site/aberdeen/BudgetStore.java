@@ -0,0 +1,361 @@
+package site.aberdeen;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Persists a budget and its {@link EditHistory} as a versioned binary snapshot plus an
+ * append-only journal of edits made since that snapshot.
+ * <p>
+ * The journal is a fixed-size memory-mapped file of 24-byte records, so appending an edit is a
+ * few stores into the mapping with no system call. When it fills up the caller writes a new
+ * snapshot with {@link #compact}, which bounds both files. Snapshots are written to a temporary
+ * file and atomically renamed; journal records carry a CRC that includes the snapshot
+ * generation, so a torn record or a journal left over from an older snapshot is ignored on load.
+ */
+public class BudgetStore implements Closeable {
+
+    public static final int DEFAULT_JOURNAL_RECORDS = 1 << 16;
+
+    public static final byte RECORD_SET = 1;
+    public static final byte RECORD_CHECKPOINT = 2;
+    public static final byte RECORD_UNDO = 3;
+    public static final byte RECORD_REDO = 4;
+    public static final byte RECORD_PERIODS = 5;
+
+    static final int SNAPSHOT_MAGIC = 0x42475353;
+    static final int JOURNAL_MAGIC = 0x4247534A;
+    static final short FORMAT_VERSION = 2;
+    static final short JOURNAL_VERSION = 1;
+
+    private static final int JOURNAL_HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 24;
+    private static final int RECORD_PAYLOAD_SIZE = 16;
+    private static final TimePeriod[] PERIODS = TimePeriod.values();
+
+    private final Path snapshotPath;
+    private final Path journalPath;
+    private final int journalRecords;
+    private final CRC32 crc = new CRC32();
+    private final byte[] recordBuffer = new byte[RECORD_PAYLOAD_SIZE];
+    private final ByteBuffer record = ByteBuffer.wrap(recordBuffer);
+
+    private FileChannel journalChannel;
+    private MappedByteBuffer journal;
+    private int journalCount;
+    private long generation;
+
+    public BudgetStore(Path snapshotPath) {
+        this(snapshotPath, DEFAULT_JOURNAL_RECORDS);
+    }
+
+    public BudgetStore(Path snapshotPath, int journalRecords) {
+        this.snapshotPath = snapshotPath;
+        this.journalPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".journal");
+        this.journalRecords = journalRecords;
+    }
+
+    public Path getSnapshotPath() {
+        return snapshotPath;
+    }
+
+    public int getJournalCount() {
+        return journalCount;
+    }
+
+    /**
+     * Restores the latest snapshot into {@code model}, replays the journal on top and returns the
+     * restored history. Returns null and leaves {@code model} untouched if nothing was saved yet;
+     * the caller should then {@link #compact} once to create the files.
+     */
+    public EditHistory load(BudgetModel model) throws IOException {
+        if (!Files.exists(snapshotPath)) {
+            return null;
+        }
+        EditHistory history = readSnapshot(model);
+        openJournal();
+        replayJournal(model, history);
+        return history;
+    }
+
+    /**
+     * Appends one journal record. Returns false, without writing, when the journal is full and a
+     * {@link #compact} is due.
+     */
+    public boolean append(byte type, int line, long value) {
+        if (journal == null || journalCount == journalRecords) {
+            return false;
+        }
+        record.clear();
+        record.put(type).put((byte) 0).putShort((short) 0).putInt(line).putLong(value);
+        crc.reset();
+        crc.update(recordBuffer, 0, RECORD_PAYLOAD_SIZE);
+        updateCrc(generation);
+
+        int position = JOURNAL_HEADER_SIZE + journalCount * RECORD_SIZE;
+        journal.position(position);
+        journal.put(recordBuffer);
+        journal.putInt(position + RECORD_PAYLOAD_SIZE, (int) crc.getValue());
+        journalCount++;
+        if (journalCount < journalRecords) {
+            journal.put(position + RECORD_SIZE, (byte) 0);
+        }
+        return true;
+    }
+
+    public boolean appendPeriods(TimePeriod income, TimePeriod spending, TimePeriod overall) {
+        long packed = (income.ordinal() << 16) | (spending.ordinal() << 8) | overall.ordinal();
+        return append(RECORD_PERIODS, 0, packed);
+    }
+
+    /**
+     * Writes a new snapshot of {@code model} and {@code history} and empties the journal.
+     */
+    public void compact(BudgetModel model, EditHistory history) throws IOException {
+        long nextGeneration = generation + 1;
+        Path temporary = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        Files.createDirectories(snapshotPath.toAbsolutePath().getParent());
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            CRC32 checksum = new CRC32();
+            OutputStream channelOut = Channels.newOutputStream(channel);
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                    new BufferedOutputStream(channelOut, 1 << 16), checksum));
+            writeSnapshot(out, nextGeneration, model, history);
+            out.flush();
+            DataOutputStream trailer = new DataOutputStream(channelOut);
+            trailer.writeInt((int) checksum.getValue());
+            trailer.flush();
+            channel.force(true);
+        }
+        Files.move(temporary, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        generation = nextGeneration;
+        if (journal == null) {
+            openJournal();
+        }
+        resetJournal();
+    }
+
+    /**
+     * Closes the store and deletes its journal file. Only valid while the journal is empty, i.e.
+     * right after {@link #compact} or a {@link #load} that had nothing to replay, so no edit is lost.
+     */
+    public void discardJournal() throws IOException {
+        if (journalCount != 0) {
+            throw new IllegalStateException("Journal holds " + journalCount + " records not in the snapshot");
+        }
+        close();
+        Files.deleteIfExists(journalPath);
+    }
+
+    public void flush() {
+        if (journal != null) {
+            journal.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        journal = null;
+        if (journalChannel != null) {
+            journalChannel.close();
+            journalChannel = null;
+        }
+    }
+
+    private void writeSnapshot(DataOutputStream out, long generation, BudgetModel model,
+                               EditHistory history) throws IOException {
+        out.writeInt(SNAPSHOT_MAGIC);
+        out.writeShort(FORMAT_VERSION);
+        out.writeShort(0);
+        out.writeLong(generation);
+        BudgetSnapshot snapshot = model.getSnapshot();
+        out.writeByte(snapshot.getIncomePeriod().ordinal());
+        out.writeByte(snapshot.getSpendingPeriod().ordinal());
+        out.writeByte(snapshot.getOverallPeriod().ordinal());
+        out.writeByte(0);
+        writeLines(out, snapshot, true);
+        writeLines(out, snapshot, false);
+        history.writeTo(out);
+    }
+
+    private static void writeLines(DataOutputStream out, BudgetSnapshot snapshot, boolean income) throws IOException {
+        int size = income ? snapshot.getIncomeCount() : snapshot.getSpendingCount();
+        out.writeInt(size);
+        for (int line = 0; line < size; line++) {
+            out.writeLong(income ? snapshot.getIncomeValue(line) : snapshot.getSpendingValue(line));
+        }
+        for (int line = 0; line < size; line++) {
+            String name = income ? snapshot.getIncomeName(line) : snapshot.getSpendingName(line);
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        for (int line = 0; line < size; line++) {
+            String currency = income ? snapshot.getIncomeCurrency(line) : snapshot.getSpendingCurrency(line);
+            byte[] bytes = currency == null ? new byte[0] : currency.getBytes(StandardCharsets.UTF_8);
+            out.writeByte(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private EditHistory readSnapshot(BudgetModel model) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 4) {
+                throw new IOException("Truncated budget snapshot " + snapshotPath);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            CRC32 checksum = new CRC32();
+            ByteBuffer body = buffer.duplicate();
+            body.limit((int) size - 4);
+            checksum.update(body);
+            if ((int) checksum.getValue() != buffer.getInt((int) size - 4)) {
+                throw new IOException("Checksum mismatch in budget snapshot " + snapshotPath);
+            }
+
+            if (buffer.getInt() != SNAPSHOT_MAGIC) {
+                throw new IOException(snapshotPath + " is not a budget snapshot");
+            }
+            short version = buffer.getShort();
+            if (version < 1 || version > FORMAT_VERSION) {
+                throw new IOException("Unsupported budget snapshot version " + version);
+            }
+            buffer.getShort();
+            generation = buffer.getLong();
+            TimePeriod incomePeriod = PERIODS[buffer.get()];
+            TimePeriod spendingPeriod = PERIODS[buffer.get()];
+            TimePeriod overallPeriod = PERIODS[buffer.get()];
+            buffer.get();
+
+            readLines(buffer, model.getIncomeItems(), version);
+            readLines(buffer, model.getSpendingItems(), version);
+            model.setPeriods(incomePeriod, spendingPeriod, overallPeriod);
+            return EditHistory.readFrom(buffer);
+        }
+    }
+
+    // Version 1 snapshots have no currencies.
+    private static void readLines(ByteBuffer buffer, LineItems items, short version) {
+        int size = buffer.getInt();
+        long[] values = new long[size];
+        String[] names = new String[size];
+        for (int line = 0; line < size; line++) {
+            values[line] = buffer.getLong();
+        }
+        for (int line = 0; line < size; line++) {
+            byte[] name = new byte[buffer.getInt()];
+            buffer.get(name);
+            names[line] = new String(name, StandardCharsets.UTF_8);
+        }
+        String[] currencies = null;
+        if (version >= 2) {
+            currencies = new String[size];
+            for (int line = 0; line < size; line++) {
+                byte[] currency = new byte[buffer.get() & 0xFF];
+                buffer.get(currency);
+                currencies[line] = new String(currency, StandardCharsets.UTF_8);
+            }
+        }
+        items.replaceAll(names, values, currencies);
+    }
+
+    private void openJournal() throws IOException {
+        long length = JOURNAL_HEADER_SIZE + (long) journalRecords * RECORD_SIZE;
+        journalChannel = FileChannel.open(journalPath, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        journal = journalChannel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+    }
+
+    private void resetJournal() {
+        journal.putInt(0, JOURNAL_MAGIC);
+        journal.putShort(4, JOURNAL_VERSION);
+        journal.putShort(6, (short) 0);
+        journal.putLong(8, generation);
+        journal.put(JOURNAL_HEADER_SIZE, (byte) 0);
+        journalCount = 0;
+        journal.force();
+    }
+
+    private void replayJournal(BudgetModel model, EditHistory history) {
+        if (journal.getInt(0) != JOURNAL_MAGIC || journal.getShort(4) != JOURNAL_VERSION
+                || journal.getLong(8) != generation) {
+            resetJournal();
+            return;
+        }
+
+        journalCount = 0;
+        while (journalCount < journalRecords) {
+            int position = JOURNAL_HEADER_SIZE + journalCount * RECORD_SIZE;
+            byte type = journal.get(position);
+            if (type == 0) {
+                break;
+            }
+            journal.position(position);
+            journal.get(recordBuffer);
+            crc.reset();
+            crc.update(recordBuffer, 0, RECORD_PAYLOAD_SIZE);
+            updateCrc(generation);
+            if ((int) crc.getValue() != journal.getInt(position + RECORD_PAYLOAD_SIZE)) {
+                break;
+            }
+            apply(type, journal.getInt(position + 4), journal.getLong(position + 8), model, history);
+            journalCount++;
+        }
+        if (journalCount < journalRecords) {
+            journal.put(JOURNAL_HEADER_SIZE + journalCount * RECORD_SIZE, (byte) 0);
+        }
+    }
+
+    private static void apply(byte type, int line, long value, BudgetModel model, EditHistory history) {
+        switch (type) {
+            case RECORD_SET:
+                int incomeCount = model.getIncomeItems().size();
+                if (line < incomeCount) {
+                    model.getIncomeItems().set(line, value);
+                } else {
+                    model.getSpendingItems().set(line - incomeCount, value);
+                }
+                history.record(line, value);
+                break;
+            case RECORD_CHECKPOINT:
+                history.checkpoint();
+                break;
+            case RECORD_UNDO:
+            case RECORD_REDO:
+                long[] values = model.getValues();
+                if (type == RECORD_UNDO ? history.undo(values) : history.redo(values)) {
+                    model.setValues(values);
+                }
+                break;
+            case RECORD_PERIODS:
+                model.setPeriods(PERIODS[(int) (value >> 16) & 0xFF], PERIODS[(int) (value >> 8) & 0xFF],
+                        PERIODS[(int) value & 0xFF]);
+                break;
+            default:
+        }
+    }
+
+    private void updateCrc(long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            crc.update((int) (value >>> shift));
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package site.aberdeen;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.InputEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * A series of amounts over time above two strips showing each income and spending line's share
+ * of its total. The series is drawn into cached images {@value #TILE_WIDTH} pixels wide, each
+ * from at most two points per pixel column chosen by
+ * {@link Downsampling#largestTriangleThreeBuckets}, so scrolling only copies images and draws the
+ * tiles coming into view, and however long the series, no tile draws more than a few hundred
+ * points. Changing a few points redraws only the tiles they fall in; changing a line's amount
+ * repaints only its strip.
+ * <p>
+ * Drag or use the wheel to scroll, Ctrl+wheel to zoom. Until zoomed the whole series fits the
+ * width. Use on the Event Dispatch Thread.
+ */
+public class CashFlowChart extends JComponent {
+
+    static final int TILE_WIDTH = 256;
+    static final int SHARE_HEIGHT = 18;
+
+    private static final int MAX_TILES = 64;
+    private static final int PADDING = 4;
+    private static final double MAX_PIXELS_PER_POINT = 32;
+    private static final double ZOOM_STEP = 1.25;
+    private static final int SCROLL_STEP = 48;
+    // Past this many changed points a new series is redrawn whole.
+    private static final int MAX_CHANGED_POINTS = 64;
+
+    private static final Color LINE_COLOR = new Color(0x1F5FA8);
+    private static final Color AXIS_COLOR = Color.LIGHT_GRAY;
+    private static final Color[] PALETTE = {
+            new Color(0x4E79A7), new Color(0xF28E2B), new Color(0xE15759), new Color(0x76B7B2),
+            new Color(0x59A14F), new Color(0xEDC948), new Color(0xB07AA1), new Color(0xFF9DA7)
+    };
+
+    private long[] series = new long[0];
+    private long minimum;
+    private long maximum = 1;
+
+    private double pixelsPerPoint = 1;
+    private int scrollX;
+    private boolean zoomed;
+    private int fittedWidth = -1;
+
+    // Tiles for the current zoom and height by index, least recently drawn first.
+    private final LinkedHashMap<Integer, BufferedImage> tiles = new LinkedHashMap<>(16, 0.75f, true);
+    private int tileHeight;
+    private long tilesRendered;
+
+    // Lines shown in the share strips, read when painting; null until set.
+    private BudgetSnapshot shares;
+
+    public CashFlowChart() {
+        setPreferredSize(new Dimension(480, 160));
+        setOpaque(true);
+        setBackground(Color.WHITE);
+        MouseAdapter mouse = new MouseAdapter() {
+            private int dragX;
+
+            @Override
+            public void mousePressed(MouseEvent e) {
+                dragX = e.getX();
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                scrollBy(dragX - e.getX());
+                dragX = e.getX();
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                double rotation = e.getPreciseWheelRotation();
+                if ((e.getModifiersEx() & InputEvent.CTRL_DOWN_MASK) != 0) {
+                    zoom(Math.pow(ZOOM_STEP, -rotation), e.getX());
+                } else {
+                    scrollBy((int) Math.round(rotation * SCROLL_STEP));
+                }
+            }
+        };
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+        addMouseWheelListener(mouse);
+    }
+
+    /**
+     * Shows {@code values}, one point each. A series of the same length keeps the zoom and scroll
+     * position, and if only a few points differ only their tiles are redrawn.
+     */
+    public void setSeries(long[] values) {
+        if (values.length == series.length) {
+            int changed = 0;
+            for (int i = 0; i < values.length && changed <= MAX_CHANGED_POINTS; i++) {
+                if (values[i] != series[i]) {
+                    changed++;
+                }
+            }
+            if (changed <= MAX_CHANGED_POINTS) {
+                for (int i = 0; i < values.length; i++) {
+                    setValue(i, values[i]);
+                }
+                return;
+            }
+        } else {
+            zoomed = false;
+            fittedWidth = -1;
+        }
+        series = values.clone();
+        updateRange();
+        invalidateTiles();
+    }
+
+    /**
+     * Changes one point, redrawing only the tiles its line segments cross unless it falls outside
+     * the current vertical range.
+     */
+    public void setValue(int index, long value) {
+        if (series[index] == value) {
+            return;
+        }
+        series[index] = value;
+        if (value < minimum || value > maximum) {
+            updateRange();
+            invalidateTiles();
+            return;
+        }
+        int firstTile = tileOf(Math.max(index - 1, 0));
+        int lastTile = tileOf(Math.min(index + 1, series.length - 1));
+        for (int tile = firstTile; tile <= lastTile; tile++) {
+            tiles.remove(tile);
+            repaint(tile * TILE_WIDTH - scrollX, 0, TILE_WIDTH, getPlotHeight());
+        }
+    }
+
+    public long[] getSeries() {
+        return series.clone();
+    }
+
+    /**
+     * Shows the lines of {@code snapshot} in the share strips, repainting only a strip whose lines
+     * changed. Runs in constant time, as on every edit: snapshots share the names and amounts
+     * they did not change, so comparing those by identity finds the strip to repaint.
+     */
+    public void setShares(BudgetSnapshot snapshot) {
+        BudgetSnapshot previous = shares;
+        shares = snapshot;
+        if (previous == null || !previous.sharesIncomeLines(snapshot)) {
+            repaint(0, getPlotHeight(), getWidth(), SHARE_HEIGHT);
+        }
+        if (previous == null || !previous.sharesSpendingLines(snapshot)) {
+            repaint(0, getPlotHeight() + SHARE_HEIGHT, getWidth(), SHARE_HEIGHT);
+        }
+    }
+
+    public double getPixelsPerPoint() {
+        return pixelsPerPoint;
+    }
+
+    /**
+     * Zooms to {@code pixelsPerPoint}, keeping the left edge on the same point. Zooming out stops
+     * where the whole series fits.
+     */
+    public void setPixelsPerPoint(double pixelsPerPoint) {
+        fit();
+        zoom(pixelsPerPoint / this.pixelsPerPoint, 0);
+    }
+
+    public int getScrollX() {
+        return scrollX;
+    }
+
+    public void setScrollX(int scrollX) {
+        scrollBy(scrollX - this.scrollX);
+    }
+
+    public void scrollBy(int pixels) {
+        int previous = scrollX;
+        scrollX += pixels;
+        clampScroll();
+        if (scrollX != previous) {
+            repaint(0, 0, getWidth(), getPlotHeight());
+        }
+    }
+
+    private void zoom(double factor, int anchorX) {
+        fit();
+        double anchor = (scrollX + anchorX) / pixelsPerPoint;
+        double zoomedIn = Math.min(Math.max(pixelsPerPoint * factor, getFittingPixelsPerPoint()), MAX_PIXELS_PER_POINT);
+        zoomed = true;
+        if (zoomedIn != pixelsPerPoint) {
+            pixelsPerPoint = zoomedIn;
+            scrollX = (int) Math.round(anchor * pixelsPerPoint) - anchorX;
+            clampScroll();
+            invalidateTiles();
+        }
+    }
+
+    /**
+     * Number of tiles drawn so far, to check that scrolling and small changes reuse them.
+     */
+    long getTilesRendered() {
+        return tilesRendered;
+    }
+
+    int getCachedTileCount() {
+        return tiles.size();
+    }
+
+    int getContentWidth() {
+        return series.length == 0 ? 0 : (int) Math.ceil((series.length - 1) * pixelsPerPoint) + 1;
+    }
+
+    private int getPlotHeight() {
+        return Math.max(getHeight() - 2 * SHARE_HEIGHT, 0);
+    }
+
+    private double getFittingPixelsPerPoint() {
+        if (series.length < 2 || getWidth() <= 1) {
+            return Math.min(pixelsPerPoint, MAX_PIXELS_PER_POINT);
+        }
+        return Math.min((getWidth() - 1.0) / (series.length - 1), MAX_PIXELS_PER_POINT);
+    }
+
+    // Fits the series to the width until the user zooms.
+    private void fit() {
+        if (!zoomed && getWidth() > 0 && getWidth() != fittedWidth) {
+            fittedWidth = getWidth();
+            pixelsPerPoint = getFittingPixelsPerPoint();
+            scrollX = 0;
+            tiles.clear();
+        }
+    }
+
+    private void clampScroll() {
+        scrollX = Math.max(0, Math.min(scrollX, getContentWidth() - getWidth()));
+    }
+
+    private int tileOf(int point) {
+        return (int) (point * pixelsPerPoint / TILE_WIDTH);
+    }
+
+    private void updateRange() {
+        minimum = 0;
+        maximum = 0;
+        for (long value : series) {
+            minimum = Math.min(minimum, value);
+            maximum = Math.max(maximum, value);
+        }
+        if (maximum == minimum) {
+            maximum = minimum + 1;
+        }
+    }
+
+    private void invalidateTiles() {
+        tiles.clear();
+        clampScroll();
+        repaint();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        fit();
+        clampScroll();
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+        g.setColor(getBackground());
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+        int plotHeight = getPlotHeight();
+        if (plotHeight != tileHeight) {
+            tiles.clear();
+            tileHeight = plotHeight;
+        }
+        if (plotHeight > 0 && series.length > 0 && clip.y < plotHeight) {
+            int lastTile = (getContentWidth() - 1) / TILE_WIDTH;
+            int from = (scrollX + Math.max(clip.x, 0)) / TILE_WIDTH;
+            int to = Math.min((scrollX + clip.x + clip.width - 1) / TILE_WIDTH, lastTile);
+            for (int tile = from; tile <= to; tile++) {
+                g.drawImage(getTile(tile), tile * TILE_WIDTH - scrollX, 0, null);
+            }
+            g.setColor(Color.DARK_GRAY);
+            FontMetrics metrics = g.getFontMetrics();
+            g.drawString(Money.toString(maximum), PADDING, PADDING + metrics.getAscent());
+            g.drawString(Money.toString(minimum), PADDING, plotHeight - PADDING - metrics.getDescent());
+        }
+        paintShares(g, true, plotHeight);
+        paintShares(g, false, plotHeight + SHARE_HEIGHT);
+    }
+
+    private BufferedImage getTile(int tile) {
+        BufferedImage image = tiles.get(tile);
+        if (image == null) {
+            image = renderTile(tile);
+            tiles.put(tile, image);
+            if (tiles.size() > MAX_TILES) {
+                Iterator<Integer> eldest = tiles.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+        return image;
+    }
+
+    private BufferedImage renderTile(int tile) {
+        int height = tileHeight;
+        GraphicsConfiguration configuration = getGraphicsConfiguration();
+        BufferedImage image = configuration != null
+                ? configuration.createCompatibleImage(TILE_WIDTH, height)
+                : new BufferedImage(TILE_WIDTH, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setColor(getBackground());
+            g.fillRect(0, 0, TILE_WIDTH, height);
+            g.setColor(AXIS_COLOR);
+            int zero = y(0, height);
+            g.drawLine(0, zero, TILE_WIDTH, zero);
+
+            double left = (double) tile * TILE_WIDTH;
+            int first = Math.max((int) Math.floor(left / pixelsPerPoint) - 1, 0);
+            int last = Math.min((int) Math.ceil((left + TILE_WIDTH) / pixelsPerPoint) + 2, series.length);
+            int[] points = Downsampling.largestTriangleThreeBuckets(series, first, last, 2 * TILE_WIDTH);
+            int[] xs = new int[points.length];
+            int[] ys = new int[points.length];
+            for (int i = 0; i < points.length; i++) {
+                xs[i] = (int) Math.round(points[i] * pixelsPerPoint - left);
+                ys[i] = y(series[points[i]], height);
+            }
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setColor(LINE_COLOR);
+            if (points.length == 1) {
+                g.fillOval(xs[0] - 2, ys[0] - 2, 4, 4);
+            } else {
+                g.drawPolyline(xs, ys, points.length);
+            }
+        } finally {
+            g.dispose();
+        }
+        tilesRendered++;
+        return image;
+    }
+
+    private int y(long value, int height) {
+        double span = height - 1 - 2 * PADDING;
+        return PADDING + (int) Math.round(span - (double) (value - minimum) / (maximum - minimum) * span);
+    }
+
+    private void paintShares(Graphics g, boolean income, int top) {
+        int lines = shares == null ? 0 : income ? shares.getIncomeCount() : shares.getSpendingCount();
+        long total = 0;
+        for (int line = 0; line < lines; line++) {
+            total += Math.max(income ? shares.getIncomeValue(line) : shares.getSpendingValue(line), 0);
+        }
+        int width = getWidth();
+        g.setColor(AXIS_COLOR);
+        g.drawRect(0, top, width - 1, SHARE_HEIGHT - 1);
+        if (total == 0) {
+            return;
+        }
+        FontMetrics metrics = g.getFontMetrics();
+        long cumulative = 0;
+        int x = 0;
+        for (int line = 0; line < lines; line++) {
+            cumulative += Math.max(income ? shares.getIncomeValue(line) : shares.getSpendingValue(line), 0);
+            int end = (int) Math.round((double) cumulative * width / total);
+            if (end > x) {
+                String name = income ? shares.getIncomeName(line) : shares.getSpendingName(line);
+                g.setColor(PALETTE[line % PALETTE.length]);
+                g.fillRect(x, top, end - x, SHARE_HEIGHT);
+                if (metrics.stringWidth(name) + 4 < end - x) {
+                    g.setColor(Color.WHITE);
+                    g.drawString(name, x + 2, top + (SHARE_HEIGHT + metrics.getAscent()) / 2 - 1);
+                }
+            }
+            x = end;
+        }
+    }
+}
@@ -0,0 +1,419 @@
+package site.aberdeen;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Assigns imported transactions to budget categories by keyword, regular expression and amount
+ * range rules. The first rule added that matches wins. Rules are compiled on first use:
+ * <ul>
+ * <li>all keywords into one Aho-Corasick automaton with a full transition table over the
+ * characters the keywords use, so a description is scanned once, one table lookup per character,
+ * however many keywords there are;</li>
+ * <li>all regular expressions into one alternation, so descriptions that match none of them are
+ * rejected in a single pass; only when it matches are the individual expressions that could
+ * still beat the best keyword rule tried;</li>
+ * <li>amount-only rules are checked in order, stopping at the best match so far.</li>
+ * </ul>
+ * Keywords match case-insensitively anywhere in the description. Not thread-safe: matching
+ * reuses its regex matchers.
+ */
+public class CategoryRules implements StatementImporter.Classifier {
+
+    private static final int ALPHABET = 256;
+    private static final Pattern GROUP_REFERENCE = Pattern.compile("\\\\[1-9k]|\\(\\?<[a-zA-Z]");
+
+    private static final class Rule {
+
+        final int category;
+        final String keyword;
+        final Pattern pattern;
+        final long minimum;
+        final long maximum;
+
+        Rule(int category, String keyword, Pattern pattern, long minimum, long maximum) {
+            this.category = category;
+            this.keyword = keyword;
+            this.pattern = pattern;
+            this.minimum = minimum;
+            this.maximum = maximum;
+        }
+
+        boolean accepts(long cents) {
+            return cents >= minimum && cents <= maximum;
+        }
+    }
+
+    private final List<Rule> rules = new ArrayList<>();
+    private StatementImporter.Classifier fallback = (description, cents) -> -1;
+
+    // Compiled form, rebuilt after rules change.
+    private boolean compiled;
+    private int[] charClasses;
+    private int classCount;
+    private int[] transitions;
+    private int[] outputStart;
+    private int[] outputs;
+    private Matcher anyRegex;
+    private int[] regexRules;
+    private Matcher[] regexMatchers;
+    private int[] amountRules;
+
+    public void addKeyword(String keyword, int category) {
+        addKeyword(keyword, category, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Matches descriptions containing {@code keyword} whose amount is within
+     * {@code [minimumCents, maximumCents]}.
+     */
+    public void addKeyword(String keyword, int category, long minimumCents, long maximumCents) {
+        if (keyword.isEmpty()) {
+            throw new IllegalArgumentException("Keyword must not be empty");
+        }
+        add(new Rule(category, lowerCase(keyword), null, minimumCents, maximumCents));
+    }
+
+    public void addRegex(String regex, int category) {
+        addRegex(regex, category, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Matches descriptions in which {@code regex} is found, ignoring case, whose amount is within
+     * {@code [minimumCents, maximumCents]}.
+     *
+     * @throws PatternSyntaxException if {@code regex} is invalid
+     */
+    public void addRegex(String regex, int category, long minimumCents, long maximumCents) {
+        add(new Rule(category, null, Pattern.compile(regex, Pattern.CASE_INSENSITIVE), minimumCents, maximumCents));
+    }
+
+    public void addAmountRange(long minimumCents, long maximumCents, int category) {
+        add(new Rule(category, null, null, minimumCents, maximumCents));
+    }
+
+    /**
+     * Classifies transactions no rule matches; by default they are skipped.
+     */
+    public void setFallback(StatementImporter.Classifier fallback) {
+        this.fallback = fallback;
+    }
+
+    public int size() {
+        return rules.size();
+    }
+
+    private void add(Rule rule) {
+        if (rule.minimum > rule.maximum) {
+            throw new IllegalArgumentException("Empty amount range " + rule.minimum + ".." + rule.maximum);
+        }
+        rules.add(rule);
+        compiled = false;
+    }
+
+    @Override
+    public int classify(CharSequence description, long cents) {
+        if (!compiled) {
+            compile();
+        }
+        int best = matchKeywords(description, cents);
+        best = matchRegexes(description, cents, best);
+        for (int rule : amountRules) {
+            if (rule >= best) {
+                break;
+            }
+            if (rules.get(rule).accepts(cents)) {
+                best = rule;
+                break;
+            }
+        }
+        return best == Integer.MAX_VALUE ? fallback.classify(description, cents) : rules.get(best).category;
+    }
+
+    private int matchKeywords(CharSequence description, long cents) {
+        int best = Integer.MAX_VALUE;
+        if (transitions == null) {
+            return best;
+        }
+        int state = 0;
+        for (int i = 0, length = description.length(); i < length; i++) {
+            char c = description.charAt(i);
+            state = transitions[state * classCount + (c < ALPHABET ? charClasses[c] : 0)];
+            for (int o = outputStart[state], end = outputStart[state + 1]; o < end; o++) {
+                int rule = outputs[o];
+                if (rule >= best) {
+                    break;
+                }
+                if (rules.get(rule).accepts(cents)) {
+                    best = rule;
+                    break;
+                }
+            }
+        }
+        return best;
+    }
+
+    private int matchRegexes(CharSequence description, long cents, int best) {
+        if (regexRules.length == 0 || regexRules[0] >= best
+                || (anyRegex != null && !anyRegex.reset(description).find())) {
+            return best;
+        }
+        for (int r = 0; r < regexRules.length && regexRules[r] < best; r++) {
+            Rule rule = rules.get(regexRules[r]);
+            if (rule.accepts(cents) && regexMatchers[r].reset(description).find()) {
+                return regexRules[r];
+            }
+        }
+        return best;
+    }
+
+    private void compile() {
+        List<Integer> keywordRules = new ArrayList<>();
+        List<Integer> regexes = new ArrayList<>();
+        List<Integer> amounts = new ArrayList<>();
+        for (int i = 0; i < rules.size(); i++) {
+            Rule rule = rules.get(i);
+            if (rule.keyword != null) {
+                keywordRules.add(i);
+            } else if (rule.pattern != null) {
+                regexes.add(i);
+            } else {
+                amounts.add(i);
+            }
+        }
+        compileKeywords(keywordRules);
+        compileRegexes(regexes);
+        amountRules = toArray(amounts);
+        compiled = true;
+    }
+
+    /**
+     * Builds the Aho-Corasick trie, then fills in every missing transition from the failure
+     * links breadth first, leaving a DFA. Characters no keyword uses share class 0.
+     */
+    private void compileKeywords(List<Integer> keywordRules) {
+        if (keywordRules.isEmpty()) {
+            transitions = null;
+            return;
+        }
+        charClasses = new int[ALPHABET];
+        classCount = 1;
+        for (int rule : keywordRules) {
+            String keyword = rules.get(rule).keyword;
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = keyword.charAt(i);
+                if (c < ALPHABET && charClasses[c] == 0) {
+                    charClasses[c] = classCount++;
+                }
+            }
+        }
+        for (char c = 'A'; c <= 'Z'; c++) {
+            charClasses[c] = charClasses[Character.toLowerCase(c)];
+        }
+        for (char c = 0xC0; c <= 0xDE; c++) {
+            if (c != 0xD7) {
+                charClasses[c] = charClasses[Character.toLowerCase(c)];
+            }
+        }
+
+        int maxStates = 1;
+        for (int rule : keywordRules) {
+            maxStates += rules.get(rule).keyword.length();
+        }
+        int[] trie = new int[maxStates * classCount];
+        Arrays.fill(trie, -1);
+        List<List<Integer>> matches = new ArrayList<>();
+        matches.add(new ArrayList<>());
+        int stateCount = 1;
+        for (int rule : keywordRules) {
+            String keyword = rules.get(rule).keyword;
+            int state = 0;
+            boolean reachable = true;
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = keyword.charAt(i);
+                if (c >= ALPHABET) {
+                    // outside Latin-1, so no imported description can contain it
+                    reachable = false;
+                    break;
+                }
+                int slot = state * classCount + charClasses[c];
+                if (trie[slot] < 0) {
+                    trie[slot] = stateCount++;
+                    matches.add(new ArrayList<>());
+                }
+                state = trie[slot];
+            }
+            if (reachable) {
+                matches.get(state).add(rule);
+            }
+        }
+
+        int[] failure = new int[stateCount];
+        int[] queue = new int[stateCount];
+        int head = 0;
+        int tail = 0;
+        for (int symbol = 0; symbol < classCount; symbol++) {
+            int next = trie[symbol];
+            if (next < 0) {
+                trie[symbol] = 0;
+            } else {
+                failure[next] = 0;
+                queue[tail++] = next;
+            }
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            matches.get(state).addAll(matches.get(failure[state]));
+            for (int symbol = 0; symbol < classCount; symbol++) {
+                int slot = state * classCount + symbol;
+                int next = trie[slot];
+                if (next < 0 || symbol == 0) {
+                    trie[slot] = trie[failure[state] * classCount + symbol];
+                } else {
+                    failure[next] = trie[failure[state] * classCount + symbol];
+                    queue[tail++] = next;
+                }
+            }
+        }
+
+        transitions = Arrays.copyOf(trie, stateCount * classCount);
+        outputStart = new int[stateCount + 1];
+        int outputCount = 0;
+        for (int state = 0; state < stateCount; state++) {
+            outputCount += matches.get(state).size();
+        }
+        outputs = new int[outputCount];
+        int position = 0;
+        for (int state = 0; state < stateCount; state++) {
+            outputStart[state] = position;
+            int[] sorted = toArray(matches.get(state));
+            Arrays.sort(sorted);
+            System.arraycopy(sorted, 0, outputs, position, sorted.length);
+            position += sorted.length;
+        }
+        outputStart[stateCount] = position;
+    }
+
+    private void compileRegexes(List<Integer> regexes) {
+        regexRules = toArray(regexes);
+        regexMatchers = new Matcher[regexRules.length];
+        anyRegex = null;
+        boolean combinable = regexRules.length > 1;
+        StringBuilder alternation = new StringBuilder();
+        for (int r = 0; r < regexRules.length; r++) {
+            Pattern pattern = rules.get(regexRules[r]).pattern;
+            regexMatchers[r] = pattern.matcher("");
+            // group numbers and names change inside the alternation
+            combinable &= !GROUP_REFERENCE.matcher(pattern.pattern()).find();
+            if (r > 0) {
+                alternation.append('|');
+            }
+            alternation.append("(?:").append(pattern.pattern()).append(')');
+        }
+        if (combinable) {
+            anyRegex = Pattern.compile(alternation.toString(), Pattern.CASE_INSENSITIVE).matcher("");
+        }
+    }
+
+    /**
+     * Reads rules, one per line, naming categories by their position in {@code categories}:
+     * <pre>
+     * keyword &lt;category&gt; &lt;text...&gt;
+     * regex &lt;category&gt; &lt;pattern...&gt;
+     * amount &lt;category&gt; &lt;minimum&gt; &lt;maximum&gt;
+     * </pre>
+     * A keyword or regex may end with {@code " | "} and a minimum and maximum amount, signed as in
+     * the statement. Blank lines and lines starting with {@code #} are ignored.
+     *
+     * @throws IllegalArgumentException naming the line for an unknown category or bad rule
+     */
+    public static CategoryRules read(BufferedReader in, List<String> categories) throws IOException {
+        CategoryRules rules = new CategoryRules();
+        AmountParser amounts = new AmountParser();
+        String line;
+        int number = 0;
+        while ((line = in.readLine()) != null) {
+            number++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\\s+", 3);
+            if (fields.length < 3) {
+                throw new IllegalArgumentException("line " + number + ": expected <kind> <category> <rule>");
+            }
+            int category = categories.indexOf(fields[1]);
+            if (category < 0) {
+                throw new IllegalArgumentException("line " + number + ": unknown category " + fields[1]);
+            }
+            String text = fields[2];
+            long[] range = {Long.MIN_VALUE, Long.MAX_VALUE};
+            if (fields[0].equals("amount")) {
+                if (!parseRange(text, amounts, range)) {
+                    throw new IllegalArgumentException("line " + number + ": expected <minimum> <maximum>");
+                }
+            } else {
+                int bar = text.lastIndexOf(" | ");
+                if (bar >= 0 && parseRange(text.substring(bar + 3), amounts, range)) {
+                    text = text.substring(0, bar).trim();
+                }
+            }
+            long minimum = range[0];
+            long maximum = range[1];
+            try {
+                switch (fields[0]) {
+                    case "keyword":
+                        rules.addKeyword(text, category, minimum, maximum);
+                        break;
+                    case "regex":
+                        rules.addRegex(text, category, minimum, maximum);
+                        break;
+                    case "amount":
+                        rules.addAmountRange(minimum, maximum, category);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown rule kind " + fields[0]);
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("line " + number + ": " + e.getMessage(), e);
+            }
+        }
+        return rules;
+    }
+
+    private static boolean parseRange(String text, AmountParser amounts, long[] range) {
+        String[] bounds = text.trim().split("\\s+");
+        if (bounds.length != 2 || amounts.parse(bounds[0]) != AmountParser.OK) {
+            return false;
+        }
+        long minimum = amounts.getValue();
+        if (amounts.parse(bounds[1]) != AmountParser.OK) {
+            return false;
+        }
+        range[0] = minimum;
+        range[1] = amounts.getValue();
+        return true;
+    }
+
+    private static String lowerCase(String text) {
+        char[] chars = text.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+}
@@ -0,0 +1,65 @@
+package site.aberdeen;
+
+/**
+ * Picks a few points of a long series that keep its visual shape, for drawing series far longer
+ * than the pixels available.
+ */
+public final class Downsampling {
+
+    private Downsampling() {
+    }
+
+    /**
+     * Largest-Triangle-Three-Buckets (Steinarsson, 2013) over {@code values[from .. to)}, with the
+     * index as the x coordinate. Always keeps the first and last point; of every bucket in
+     * between it keeps the point forming the largest triangle with the point kept before it and
+     * the average of the next bucket, so peaks and dips survive where plain decimation would drop
+     * them. Returns the kept indices in increasing order, all of them if there are at most
+     * {@code threshold} points.
+     */
+    public static int[] largestTriangleThreeBuckets(long[] values, int from, int to, int threshold) {
+        int length = to - from;
+        if (threshold >= length || threshold < 3) {
+            int[] all = new int[Math.max(length, 0)];
+            for (int i = 0; i < all.length; i++) {
+                all[i] = from + i;
+            }
+            return all;
+        }
+        int[] kept = new int[threshold];
+        kept[0] = from;
+        double bucketSize = (double) (length - 2) / (threshold - 2);
+        int previous = from;
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            int nextStart = from + (int) ((bucket + 1) * bucketSize) + 1;
+            int nextEnd = Math.min(from + (int) ((bucket + 2) * bucketSize) + 1, to);
+            double averageX = 0;
+            double averageY = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                averageX += i;
+                averageY += values[i];
+            }
+            averageX /= nextEnd - nextStart;
+            averageY /= nextEnd - nextStart;
+
+            int start = from + (int) (bucket * bucketSize) + 1;
+            int end = nextStart;
+            double previousY = values[previous];
+            double largestArea = -1;
+            int chosen = start;
+            for (int i = start; i < end; i++) {
+                // twice the triangle's area; only the comparison matters
+                double area = Math.abs((previous - averageX) * (values[i] - previousY)
+                        - (previous - i) * (averageY - previousY));
+                if (area > largestArea) {
+                    largestArea = area;
+                    chosen = i;
+                }
+            }
+            kept[bucket + 1] = chosen;
+            previous = chosen;
+        }
+        kept[threshold - 1] = to - 1;
+        return kept;
+    }
+}
@@ -0,0 +1,267 @@
+package site.aberdeen;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Bounded undo/redo history over budget lines. Each change is stored as one {@code (line, delta)}
+ * entry in a ring buffer and entries are grouped into edits by {@link #checkpoint()}; the oldest
+ * edits are dropped once {@code capacity} entries are in use, so memory stays at about 12 bytes
+ * per entry.
+ */
+public class EditHistory {
+
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    // Entries are stored as ~line for the last line of an edit, so group boundaries cost no extra array.
+    private final int[] lines;
+    private final long[] deltas;
+    private long[] baseline;
+
+    private int start;
+    private int size;
+    private int cursor;
+    private int openEntries;
+
+    public EditHistory(int lineCount, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        lines = new int[capacity];
+        deltas = new long[capacity];
+        baseline = new long[lineCount];
+    }
+
+    public int capacity() {
+        return lines.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getLineCount() {
+        return baseline.length;
+    }
+
+    /**
+     * Approximate heap use of the entry ring and baseline, in bytes.
+     */
+    public long getByteSize() {
+        return (long) lines.length * Integer.BYTES + (long) deltas.length * Long.BYTES
+                + (long) baseline.length * Long.BYTES;
+    }
+
+    public boolean canUndo() {
+        return cursor > 0;
+    }
+
+    public boolean canRedo() {
+        return cursor < size;
+    }
+
+    /**
+     * Forgets all edits and takes {@code values} as the committed state. The line count may change,
+     * e.g. after lines were added or removed.
+     */
+    public void reset(long[] values) {
+        if (values.length != baseline.length) {
+            baseline = new long[values.length];
+        }
+        System.arraycopy(values, 0, baseline, 0, baseline.length);
+        start = 0;
+        size = 0;
+        cursor = 0;
+        openEntries = 0;
+    }
+
+    /**
+     * Adds a single line change to the current edit, which stays open until {@link #checkpoint()}.
+     */
+    public void record(int line, long value) {
+        long delta = value - baseline[line];
+        if (delta == 0) {
+            return;
+        }
+        if (openEntries == 0) {
+            size = cursor;
+        }
+        if (size == lines.length) {
+            if (size == openEntries) {
+                clearEntries();
+            } else {
+                dropOldestEdit();
+            }
+        }
+        int slot = slot(size++);
+        lines[slot] = line;
+        deltas[slot] = delta;
+        baseline[line] = value;
+        openEntries++;
+        cursor = size;
+    }
+
+    /**
+     * Closes the current edit so the next {@link #undo} reverts everything recorded since the
+     * previous checkpoint. Returns false if there was nothing to close.
+     */
+    public boolean checkpoint() {
+        if (openEntries == 0) {
+            return false;
+        }
+        int slot = slot(size - 1);
+        lines[slot] = ~lines[slot];
+        openEntries = 0;
+        return true;
+    }
+
+    /**
+     * Records the difference between the last committed values and {@code values} as one edit.
+     * Returns false if nothing changed. Any redo history is discarded when something did.
+     */
+    public boolean commit(long[] values) {
+        checkLength(values);
+        checkpoint();
+        int changed = 0;
+        for (int line = 0; line < baseline.length; line++) {
+            if (values[line] != baseline[line]) {
+                changed++;
+            }
+        }
+        if (changed == 0) {
+            return false;
+        }
+
+        size = cursor;
+        if (changed > lines.length) {
+            System.arraycopy(values, 0, baseline, 0, baseline.length);
+            clearEntries();
+            return true;
+        }
+        while (lines.length - size < changed) {
+            dropOldestEdit();
+        }
+
+        int remaining = changed;
+        for (int line = 0; line < baseline.length; line++) {
+            long delta = values[line] - baseline[line];
+            if (delta != 0) {
+                int slot = slot(size++);
+                lines[slot] = --remaining == 0 ? ~line : line;
+                deltas[slot] = delta;
+                baseline[line] = values[line];
+            }
+        }
+        cursor = size;
+        return true;
+    }
+
+    /**
+     * Reverts the most recent committed edit and copies the resulting values into {@code values}.
+     * Uncommitted changes in {@code values} are overwritten; call {@link #commit} first to keep them.
+     */
+    public boolean undo(long[] values) {
+        checkLength(values);
+        checkpoint();
+        if (!canUndo()) {
+            return false;
+        }
+        int position = cursor - 1;
+        do {
+            int slot = slot(position);
+            baseline[line(slot)] -= deltas[slot];
+            position--;
+        } while (position >= 0 && lines[slot(position)] >= 0);
+        cursor = position + 1;
+        System.arraycopy(baseline, 0, values, 0, baseline.length);
+        return true;
+    }
+
+    public boolean redo(long[] values) {
+        checkLength(values);
+        if (!canRedo()) {
+            return false;
+        }
+        int slot;
+        do {
+            slot = slot(cursor++);
+            baseline[line(slot)] += deltas[slot];
+        } while (lines[slot] >= 0);
+        System.arraycopy(baseline, 0, values, 0, baseline.length);
+        return true;
+    }
+
+    public long[] getCommittedValues() {
+        return Arrays.copyOf(baseline, baseline.length);
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(lines.length);
+        out.writeInt(baseline.length);
+        out.writeInt(size);
+        out.writeInt(cursor);
+        out.writeInt(openEntries);
+        for (long value : baseline) {
+            out.writeLong(value);
+        }
+        for (int position = 0; position < size; position++) {
+            int slot = slot(position);
+            out.writeInt(lines[slot]);
+            out.writeLong(deltas[slot]);
+        }
+    }
+
+    /**
+     * Reads a history written by {@link #writeTo}, advancing the buffer's position past it.
+     */
+    public static EditHistory readFrom(ByteBuffer in) {
+        int capacity = in.getInt();
+        EditHistory history = new EditHistory(in.getInt(), capacity);
+        history.size = in.getInt();
+        history.cursor = in.getInt();
+        history.openEntries = in.getInt();
+        for (int line = 0; line < history.baseline.length; line++) {
+            history.baseline[line] = in.getLong();
+        }
+        for (int position = 0; position < history.size; position++) {
+            history.lines[position] = in.getInt();
+            history.deltas[position] = in.getLong();
+        }
+        return history;
+    }
+
+    private void clearEntries() {
+        start = 0;
+        size = 0;
+        cursor = 0;
+        openEntries = 0;
+    }
+
+    private void dropOldestEdit() {
+        int slot;
+        do {
+            slot = start;
+            start = slot(1);
+            size--;
+            cursor--;
+        } while (lines[slot] >= 0);
+    }
+
+    private int slot(int position) {
+        int slot = start + position;
+        return slot >= lines.length ? slot - lines.length : slot;
+    }
+
+    private int line(int slot) {
+        int line = lines[slot];
+        return line < 0 ? ~line : line;
+    }
+
+    private void checkLength(long[] values) {
+        if (values.length != baseline.length) {
+            throw new IllegalArgumentException("expected " + baseline.length + " values, got " + values.length);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package site.aberdeen;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+@Name("site.aberdeen.EdtDispatch")
+@Label("Slow EDT Dispatch")
+@Category("Budget Swing")
+@Description("An AWT event that kept the Event Dispatch Thread busy for longer than one frame")
+@Threshold("16 ms")
+public class EdtDispatchEvent extends Event {
+
+    @Label("Event Class")
+    String eventClass;
+}
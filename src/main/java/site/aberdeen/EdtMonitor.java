@@ -0,0 +1,39 @@
+package site.aberdeen;
+
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+
+/**
+ * Times every event the Event Dispatch Thread handles, feeding the {@code edt.dispatch} histogram
+ * and emitting an {@link EdtDispatchEvent} for dispatches slower than one frame.
+ */
+public class EdtMonitor extends EventQueue {
+
+    private final LatencyHistogram dispatchTimes;
+
+    public EdtMonitor(MetricsRegistry metrics) {
+        dispatchTimes = metrics.histogram(MetricsRegistry.EDT_DISPATCH);
+    }
+
+    public static void install(MetricsRegistry metrics) {
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(new EdtMonitor(metrics));
+    }
+
+    @Override
+    protected void dispatchEvent(AWTEvent event) {
+        EdtDispatchEvent jfrEvent = new EdtDispatchEvent();
+        jfrEvent.begin();
+        long start = System.nanoTime();
+        try {
+            super.dispatchEvent(event);
+        } finally {
+            dispatchTimes.record(System.nanoTime() - start);
+            jfrEvent.end();
+            if (jfrEvent.shouldCommit()) {
+                jfrEvent.eventClass = event.getClass().getName();
+                jfrEvent.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package site.aberdeen;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Dated exchange rate snapshots, loaded from local CSV files, as one dense row-major matrix: one
+ * row per date, one column per currency, each cell the value of one unit of that currency in a
+ * common base currency. A rate missing from a row carries over from the row before it.
+ * <p>
+ * Converting needs the ratio of two columns of one row; the whole row divided by the reporting
+ * currency's column is computed once per (reporting currency, date) and cached, so converting
+ * any number of amounts costs one multiply each. Immutable apart from that cache, which is
+ * locked, so snapshots converting on background threads can share one instance; thread-safe.
+ */
+public class ExchangeRates {
+
+    private static final int MAX_CACHED_FACTORS = 64;
+
+    private final String[] currencies;
+    private final Map<String, Integer> indexes = new HashMap<>();
+    private final int[] days;
+    private final double[] rates;
+    // Access-ordered, so even a lookup changes it: guarded by itself.
+    private final LinkedHashMap<Long, double[]> factors = new LinkedHashMap<Long, double[]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, double[]> eldest) {
+            return size() > MAX_CACHED_FACTORS;
+        }
+    };
+
+    /**
+     * {@code rates} holds {@code days.length} rows of {@code currencies.length} values each, in
+     * increasing day order; NaN marks a currency not quoted yet.
+     */
+    public ExchangeRates(String[] currencies, int[] days, double[] rates) {
+        if (rates.length != currencies.length * days.length) {
+            throw new IllegalArgumentException(rates.length + " rates for " + currencies.length
+                    + " currencies and " + days.length + " dates");
+        }
+        for (int row = 1; row < days.length; row++) {
+            if (days[row] <= days[row - 1]) {
+                throw new IllegalArgumentException("dates out of order at row " + row);
+            }
+        }
+        this.currencies = currencies.clone();
+        this.days = days.clone();
+        this.rates = rates.clone();
+        for (int column = 0; column < currencies.length; column++) {
+            indexes.put(currencies[column], column);
+        }
+    }
+
+    public int getCurrencyCount() {
+        return currencies.length;
+    }
+
+    public String getCurrency(int index) {
+        return currencies[index];
+    }
+
+    public String[] getCurrencies() {
+        return currencies.clone();
+    }
+
+    /**
+     * Column of {@code currency}, or -1 if no file quotes it.
+     */
+    public int indexOf(String currency) {
+        Integer index = currency == null ? null : indexes.get(currency);
+        return index == null ? -1 : index;
+    }
+
+    public int getDateCount() {
+        return days.length;
+    }
+
+    public int getDay(int row) {
+        return days[row];
+    }
+
+    /**
+     * Value of one unit of each currency in {@code reportingCurrency} on {@code day}, by column,
+     * using the latest snapshot on or before that day, or the first one for earlier days. NaN
+     * where either currency has no rate yet. The array is shared; do not modify it.
+     */
+    public double[] getFactors(String reportingCurrency, int day) {
+        int reporting = indexOf(reportingCurrency);
+        if (reporting < 0) {
+            throw new IllegalArgumentException("No rates for " + reportingCurrency);
+        }
+        int row = rowOf(day);
+        long key = ((long) reporting << 32) | row;
+        double[] cached;
+        synchronized (factors) {
+            cached = factors.get(key);
+        }
+        if (cached == null) {
+            // computed unlocked; a thread racing for the same key computes an identical row
+            cached = new double[currencies.length];
+            int offset = row * currencies.length;
+            double divisor = rates[offset + reporting];
+            for (int column = 0; column < cached.length; column++) {
+                cached[column] = rates[offset + column] / divisor;
+            }
+            cached[reporting] = 1;
+            synchronized (factors) {
+                double[] raced = factors.putIfAbsent(key, cached);
+                if (raced != null) {
+                    cached = raced;
+                }
+            }
+        }
+        return cached;
+    }
+
+    /**
+     * Converts {@code cents} of {@code currency} into {@code reportingCurrency}, rounding to the
+     * nearest cent.
+     *
+     * @throws IllegalArgumentException if either currency has no rate on {@code day}
+     */
+    public long convert(long cents, String currency, String reportingCurrency, int day) {
+        int column = indexOf(currency);
+        double factor = column < 0 ? Double.NaN : getFactors(reportingCurrency, day)[column];
+        if (Double.isNaN(factor)) {
+            throw new IllegalArgumentException("No " + currency + " to " + reportingCurrency + " rate");
+        }
+        return Math.round(cents * factor);
+    }
+
+    private int rowOf(int day) {
+        if (days.length == 0) {
+            throw new IllegalStateException("No exchange rates loaded");
+        }
+        int row = Arrays.binarySearch(days, day);
+        return row >= 0 ? row : Math.max(-row - 2, 0);
+    }
+
+    /**
+     * Reads every {@code *.csv} file in {@code directory}, e.g. one per year, all quoting
+     * against the same base currency.
+     */
+    public static ExchangeRates load(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.csv")) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        files.sort(null);
+        Map<String, Integer> columns = new LinkedHashMap<>();
+        TreeMap<Integer, Map<Integer, Double>> rows = new TreeMap<>();
+        for (Path file : files) {
+            try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                read(in, file.getFileName().toString(), columns, rows);
+            }
+        }
+        return build(columns, rows);
+    }
+
+    /**
+     * Reads rates in the form
+     * <pre>
+     * date,USD,EUR,GBP
+     * 2024-01-02,1.0,1.09,1.27
+     * </pre>
+     * with dates as {@link Ledger#parseDay} accepts them and a three-letter code heading each
+     * currency column. Empty cells keep the previous date's rate; lines starting with {@code #}
+     * are ignored.
+     */
+    public static ExchangeRates read(BufferedReader in) throws IOException {
+        Map<String, Integer> columns = new LinkedHashMap<>();
+        TreeMap<Integer, Map<Integer, Double>> rows = new TreeMap<>();
+        read(in, "rates", columns, rows);
+        return build(columns, rows);
+    }
+
+    private static void read(BufferedReader in, String source, Map<String, Integer> columns,
+                             TreeMap<Integer, Map<Integer, Double>> rows) throws IOException {
+        int[] fileColumns = null;
+        String line;
+        int number = 0;
+        while ((line = in.readLine()) != null) {
+            number++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] cells = line.split(",", -1);
+            if (fileColumns == null) {
+                fileColumns = new int[cells.length];
+                for (int cell = 1; cell < cells.length; cell++) {
+                    String currency;
+                    try {
+                        currency = LineItems.normalizeCurrency(cells[cell]);
+                    } catch (IllegalArgumentException e) {
+                        currency = null;
+                    }
+                    if (currency == null) {
+                        throw new IOException(source + ": line " + number + ": invalid currency code " + cells[cell].trim());
+                    }
+                    Integer column = columns.get(currency);
+                    if (column == null) {
+                        column = columns.size();
+                        columns.put(currency, column);
+                    }
+                    fileColumns[cell] = column;
+                }
+                continue;
+            }
+            int day = Ledger.parseDay(cells[0].trim());
+            if (day == Ledger.NO_DAY || cells.length > fileColumns.length) {
+                throw new IOException(source + ": line " + number + ": expected a date and "
+                        + (fileColumns.length - 1) + " rates");
+            }
+            Map<Integer, Double> row = rows.computeIfAbsent(day, d -> new HashMap<>());
+            for (int cell = 1; cell < cells.length; cell++) {
+                String text = cells[cell].trim();
+                if (text.isEmpty()) {
+                    continue;
+                }
+                double rate;
+                try {
+                    rate = Double.parseDouble(text);
+                } catch (NumberFormatException e) {
+                    rate = -1;
+                }
+                if (!(rate > 0) || Double.isInfinite(rate)) {
+                    throw new IOException(source + ": line " + number + ": invalid rate " + text);
+                }
+                row.put(fileColumns[cell], rate);
+            }
+        }
+    }
+
+    private static ExchangeRates build(Map<String, Integer> columns, TreeMap<Integer, Map<Integer, Double>> rows) {
+        String[] currencies = columns.keySet().toArray(new String[0]);
+        int[] days = new int[rows.size()];
+        double[] rates = new double[days.length * currencies.length];
+        Arrays.fill(rates, Double.NaN);
+        int row = 0;
+        for (Map.Entry<Integer, Map<Integer, Double>> entry : rows.entrySet()) {
+            days[row] = entry.getKey();
+            int offset = row * currencies.length;
+            if (row > 0) {
+                System.arraycopy(rates, offset - currencies.length, rates, offset, currencies.length);
+            }
+            for (Map.Entry<Integer, Double> rate : entry.getValue().entrySet()) {
+                rates[offset + rate.getKey()] = rate.getValue();
+            }
+            row++;
+        }
+        return new ExchangeRates(currencies, days, rates);
+    }
+}
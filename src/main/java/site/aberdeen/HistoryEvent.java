@@ -0,0 +1,23 @@
+package site.aberdeen;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("site.aberdeen.History")
+@Label("Budget History Operation")
+@Category("Budget Swing")
+public class HistoryEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Depth")
+    int depth;
+
+    @Label("Size")
+    @DataAmount
+    long bytes;
+}
@@ -0,0 +1,26 @@
+package site.aberdeen;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("site.aberdeen.Import")
+@Label("Statement Import")
+@Category("Budget Swing")
+public class ImportEvent extends Event {
+
+    @Label("File")
+    String file;
+
+    @Label("Size")
+    @DataAmount
+    long bytes;
+
+    @Label("Rows")
+    long rows;
+
+    @Label("Rejected Rows")
+    long rejected;
+}
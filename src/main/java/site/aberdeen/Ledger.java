@@ -0,0 +1,333 @@
+package site.aberdeen;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Dated income and spending transactions kept in columnar primitive arrays sorted by day, with
+ * running income and spending sums alongside. Totals over any day range, per-period averages and
+ * rolling windows are two binary searches and a subtraction, so they cost O(log n) however many
+ * years of history are loaded.
+ * <p>
+ * Days are epoch days ({@link LocalDate#toEpochDay()}) and ranges are half-open,
+ * {@code [fromDay, toDay)}. Transactions may be added in any order; the index is rebuilt on the
+ * next query only if one arrives out of order. Not thread-safe, except that once
+ * {@link #prepareForReading()} has run, any number of threads may query a ledger nobody adds to.
+ */
+public class Ledger {
+
+    /**
+     * Returned by {@link #parseDay} for text that is not a date.
+     */
+    public static final int NO_DAY = Integer.MIN_VALUE;
+
+    private static final int DAYS_PER_YEAR = 7 * 52;
+    private static final byte INCOME = 0;
+    private static final byte SPENDING = 1;
+
+    private int size;
+    private int[] days;
+    private long[] amounts;
+    private byte[] kinds;
+
+    private long[] incomeSums;
+    private long[] spendingSums;
+    private int indexedCount;
+    private boolean sorted = true;
+
+    public Ledger() {
+        this(16);
+    }
+
+    public Ledger(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 1);
+        days = new int[capacity];
+        amounts = new long[capacity];
+        kinds = new byte[capacity];
+        incomeSums = new long[capacity + 1];
+        spendingSums = new long[capacity + 1];
+    }
+
+    public void addIncome(int day, long cents) {
+        add(day, cents, INCOME);
+    }
+
+    /**
+     * Records money going out; {@code cents} is the amount spent, so refunds are negative.
+     */
+    public void addSpending(int day, long cents) {
+        add(day, cents, SPENDING);
+    }
+
+    public void addIncome(LocalDate date, long cents) {
+        addIncome((int) date.toEpochDay(), cents);
+    }
+
+    public void addSpending(LocalDate date, long cents) {
+        addSpending((int) date.toEpochDay(), cents);
+    }
+
+    private void add(int day, long cents, byte kind) {
+        if (size == days.length) {
+            int capacity = Math.max(size + (size >> 1), size + 1);
+            days = Arrays.copyOf(days, capacity);
+            amounts = Arrays.copyOf(amounts, capacity);
+            kinds = Arrays.copyOf(kinds, capacity);
+        }
+        if (size > 0 && day < days[size - 1]) {
+            sorted = false;
+        }
+        days[size] = day;
+        amounts[size] = cents;
+        kinds[size] = kind;
+        size++;
+    }
+
+    public void clear() {
+        size = 0;
+        indexedCount = 0;
+        sorted = true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Sorts and indexes now instead of on the next query, which would otherwise write to the
+     * ledger. Call before handing a finished ledger to other threads.
+     */
+    public void prepareForReading() {
+        index();
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Day of the {@code index}th transaction in date order.
+     */
+    public int getDay(int index) {
+        index();
+        return days[index];
+    }
+
+    public long getAmount(int index) {
+        index();
+        return amounts[index];
+    }
+
+    public boolean isIncome(int index) {
+        index();
+        return kinds[index] == INCOME;
+    }
+
+    public int getFirstDay() {
+        if (size == 0) {
+            throw new IllegalStateException("Ledger is empty");
+        }
+        index();
+        return days[0];
+    }
+
+    public int getLastDay() {
+        if (size == 0) {
+            throw new IllegalStateException("Ledger is empty");
+        }
+        index();
+        return days[size - 1];
+    }
+
+    /**
+     * Income minus spending of each day from {@link #getFirstDay()} to {@link #getLastDay()}
+     * inclusive, days without transactions included as 0.
+     */
+    public long[] getDailyCashFlow() {
+        int first = getFirstDay();
+        long[] cashFlow = new long[getLastDay() - first + 1];
+        for (int i = 0; i < size; i++) {
+            cashFlow[days[i] - first] += kinds[i] == INCOME ? amounts[i] : -amounts[i];
+        }
+        return cashFlow;
+    }
+
+    public long getIncome(int fromDay, int toDay) {
+        index();
+        return incomeSums[lowerBound(toDay)] - incomeSums[lowerBound(fromDay)];
+    }
+
+    public long getSpending(int fromDay, int toDay) {
+        index();
+        return spendingSums[lowerBound(toDay)] - spendingSums[lowerBound(fromDay)];
+    }
+
+    /**
+     * Average income per {@code period} over the range, treating a year as 52 weeks like
+     * {@link TimePeriod} does.
+     */
+    public long getAverageIncome(TimePeriod period, int fromDay, int toDay) {
+        return average(getIncome(fromDay, toDay), period, fromDay, toDay);
+    }
+
+    public long getAverageSpending(TimePeriod period, int fromDay, int toDay) {
+        return average(getSpending(fromDay, toDay), period, fromDay, toDay);
+    }
+
+    /**
+     * Income over the {@code windowDays} days ending with {@code lastDay}, inclusive.
+     */
+    public long getRollingIncome(int lastDay, int windowDays) {
+        return getIncome(lastDay - windowDays + 1, lastDay + 1);
+    }
+
+    public long getRollingSpending(int lastDay, int windowDays) {
+        return getSpending(lastDay - windowDays + 1, lastDay + 1);
+    }
+
+    private static long average(long total, TimePeriod period, int fromDay, int toDay) {
+        long days = (long) toDay - fromDay;
+        if (days <= 0) {
+            return 0;
+        }
+        return Money.divideRounded(total * DAYS_PER_YEAR, days * period.getPeriodsPerYear());
+    }
+
+    /**
+     * Index of the first transaction on or after {@code day}.
+     */
+    private int lowerBound(int day) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (days[mid] < day) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void index() {
+        if (!sorted) {
+            sort();
+            indexedCount = 0;
+            sorted = true;
+        }
+        if (indexedCount == size) {
+            return;
+        }
+        if (incomeSums.length < size + 1) {
+            incomeSums = Arrays.copyOf(incomeSums, days.length + 1);
+            spendingSums = Arrays.copyOf(spendingSums, days.length + 1);
+        }
+        long income = incomeSums[indexedCount];
+        long spending = spendingSums[indexedCount];
+        for (int i = indexedCount; i < size; i++) {
+            if (kinds[i] == INCOME) {
+                income += amounts[i];
+            } else {
+                spending += amounts[i];
+            }
+            incomeSums[i + 1] = income;
+            spendingSums[i + 1] = spending;
+        }
+        indexedCount = size;
+    }
+
+    /**
+     * Stable sort by day: each key carries the day in its high half and the original position in
+     * its low half, so one primitive sort yields the permutation.
+     */
+    private void sort() {
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = ((long) days[i] << 32) | i;
+        }
+        Arrays.sort(keys);
+        int[] sortedDays = new int[days.length];
+        long[] sortedAmounts = new long[amounts.length];
+        byte[] sortedKinds = new byte[kinds.length];
+        for (int i = 0; i < size; i++) {
+            int from = (int) keys[i];
+            sortedDays[i] = days[from];
+            sortedAmounts[i] = amounts[from];
+            sortedKinds[i] = kinds[from];
+        }
+        days = sortedDays;
+        amounts = sortedAmounts;
+        kinds = sortedKinds;
+    }
+
+    /**
+     * Reads the date at the start of {@code text} as {@code yyyy-mm-dd}, {@code yyyy/mm/dd} or
+     * {@code yyyymmdd} (OFX timestamps may continue with a time), returning the epoch day or
+     * {@link #NO_DAY}.
+     */
+    public static int parseDay(CharSequence text) {
+        int year = digits(text, 0, 4);
+        int at = skipSeparator(text, 4);
+        int month = digits(text, at, 2);
+        at = skipSeparator(text, at + 2);
+        int day = digits(text, at, 2);
+        if (year < 0 || month < 0 || day < 0) {
+            return NO_DAY;
+        }
+        return epochDay(year, month, day);
+    }
+
+    private static int digits(CharSequence text, int from, int count) {
+        if (text.length() < from + count) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static int skipSeparator(CharSequence text, int at) {
+        if (at < text.length() && (text.charAt(at) == '-' || text.charAt(at) == '/')) {
+            return at + 1;
+        }
+        return at;
+    }
+
+    /**
+     * Epoch day of a proleptic Gregorian date, or {@link #NO_DAY} if the month or day is out of
+     * range. Computed arithmetically so that parsing a large import allocates nothing.
+     */
+    public static int epochDay(int year, int month, int day) {
+        if (month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+            return NO_DAY;
+        }
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+                return leap ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package site.aberdeen;
+
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Exposes a {@link LineItems} section to a {@code JTable}. The table asks for cells on demand, so
+ * only rows in the visible viewport are ever formatted or rendered.
+ */
+public class LineItemTableModel extends AbstractTableModel implements LineItems.Listener {
+
+    public static final int NAME_COLUMN = 0;
+    public static final int AMOUNT_COLUMN = 1;
+    public static final int CURRENCY_COLUMN = 2;
+
+    private static final String[] COLUMN_NAMES = {"Category", "Amount", "Currency"};
+
+    private final LineItems items;
+    private final char[] formatBuffer = new char[Money.MAX_FORMATTED_LENGTH];
+    private final AmountParser amountParser = new AmountParser();
+
+    public LineItemTableModel(LineItems items) {
+        this.items = items;
+        items.addListener(this);
+    }
+
+    public LineItems getItems() {
+        return items;
+    }
+
+    @Override
+    public int getRowCount() {
+        return items.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return String.class;
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return true;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        if (column == NAME_COLUMN) {
+            return items.getName(row);
+        }
+        if (column == CURRENCY_COLUMN) {
+            String currency = items.getCurrency(row);
+            return currency == null ? "" : currency;
+        }
+        int length = Money.format(items.get(row), formatBuffer, 0);
+        return new String(formatBuffer, 0, length);
+    }
+
+    /**
+     * Commits an edited cell. Amount text that does not parse counts as zero, as a blank cell does;
+     * a currency that is not a three-letter code leaves the line's currency unchanged.
+     */
+    @Override
+    public void setValueAt(Object value, int row, int column) {
+        String text = value == null ? "" : value.toString();
+        if (column == NAME_COLUMN) {
+            items.setName(row, text);
+        } else if (column == CURRENCY_COLUMN) {
+            try {
+                items.setCurrency(row, text);
+            } catch (IllegalArgumentException e) {
+                return;
+            }
+        } else {
+            items.set(row, amountParser.valueOr(text, 0));
+        }
+        fireTableCellUpdated(row, column);
+    }
+
+    @Override
+    public void linesInserted(LineItems source, int first, int last) {
+        fireTableRowsInserted(first, last);
+    }
+
+    @Override
+    public void linesRemoved(LineItems source, int first, int last) {
+        fireTableRowsDeleted(first, last);
+    }
+
+    @Override
+    public void linesUpdated(LineItems source, int first, int last) {
+        fireTableRowsUpdated(first, last);
+    }
+}
@@ -0,0 +1,249 @@
+package site.aberdeen;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * One growable section of a budget (income or spending): parallel arrays of category names,
+ * cent amounts and currency codes plus a running total. A line without a currency is in whatever
+ * currency the budget is reported in; the total adds amounts as they are, see
+ * {@link BudgetSnapshot#getTotalIncome(ExchangeRates, String, int)} for converted totals.
+ */
+public class LineItems {
+
+    public interface Listener {
+        void linesInserted(LineItems items, int first, int last);
+
+        void linesRemoved(LineItems items, int first, int last);
+
+        void linesUpdated(LineItems items, int first, int last);
+    }
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private String[] names;
+    private long[] values;
+    private String[] currencies;
+    private int size;
+    private long total;
+
+    private final List<Listener> listeners = new ArrayList<>();
+
+    public LineItems() {
+        names = new String[INITIAL_CAPACITY];
+        values = new long[INITIAL_CAPACITY];
+        currencies = new String[INITIAL_CAPACITY];
+    }
+
+    public LineItems(String... names) {
+        this();
+        for (String name : names) {
+            add(name, 0);
+        }
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public String getName(int line) {
+        checkIndex(line);
+        return names[line];
+    }
+
+    public long get(int line) {
+        checkIndex(line);
+        return values[line];
+    }
+
+    /**
+     * ISO 4217 code of the line's currency, or null if it has none.
+     */
+    public String getCurrency(int line) {
+        checkIndex(line);
+        return currencies[line];
+    }
+
+    /**
+     * Sets the line's currency; a blank or null code clears it. Codes are stored in upper case.
+     *
+     * @throws IllegalArgumentException if {@code currency} is not three letters
+     */
+    public void setCurrency(int line, String currency) {
+        checkIndex(line);
+        currency = normalizeCurrency(currency);
+        if (!Objects.equals(currency, currencies[line])) {
+            currencies[line] = currency;
+            fireUpdated(line, line);
+        }
+    }
+
+    static String normalizeCurrency(String currency) {
+        if (currency == null || currency.trim().isEmpty()) {
+            return null;
+        }
+        String code = currency.trim().toUpperCase(Locale.ROOT);
+        if (code.length() != 3 || !isLetter(code.charAt(0)) || !isLetter(code.charAt(1)) || !isLetter(code.charAt(2))) {
+            throw new IllegalArgumentException("Not a currency code: " + currency);
+        }
+        return code;
+    }
+
+    private static boolean isLetter(char c) {
+        return c >= 'A' && c <= 'Z';
+    }
+
+    public void setName(int line, String name) {
+        checkIndex(line);
+        if (!name.equals(names[line])) {
+            names[line] = name;
+            fireUpdated(line, line);
+        }
+    }
+
+    public void set(int line, long cents) {
+        checkIndex(line);
+        long previous = values[line];
+        if (previous != cents) {
+            values[line] = cents;
+            total += cents - previous;
+            fireUpdated(line, line);
+        }
+    }
+
+    public int add(String name, long cents) {
+        insert(size, name, cents);
+        return size - 1;
+    }
+
+    public void insert(int line, String name, long cents) {
+        if (line < 0 || line > size) {
+            throw new IndexOutOfBoundsException("line " + line + ", size " + size);
+        }
+        if (size == values.length) {
+            int capacity = values.length * 2;
+            names = Arrays.copyOf(names, capacity);
+            values = Arrays.copyOf(values, capacity);
+            currencies = Arrays.copyOf(currencies, capacity);
+        }
+        System.arraycopy(names, line, names, line + 1, size - line);
+        System.arraycopy(values, line, values, line + 1, size - line);
+        System.arraycopy(currencies, line, currencies, line + 1, size - line);
+        names[line] = name;
+        values[line] = cents;
+        currencies[line] = null;
+        size++;
+        total += cents;
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).linesInserted(this, line, line);
+        }
+    }
+
+    public void remove(int first, int last) {
+        if (first < 0 || last >= size || first > last) {
+            throw new IndexOutOfBoundsException("lines " + first + ".." + last + ", size " + size);
+        }
+        total -= BudgetEngine.total(values, first, last + 1);
+        int tail = size - last - 1;
+        System.arraycopy(names, last + 1, names, first, tail);
+        System.arraycopy(values, last + 1, values, first, tail);
+        System.arraycopy(currencies, last + 1, currencies, first, tail);
+        int newSize = size - (last - first + 1);
+        Arrays.fill(names, newSize, size, null);
+        Arrays.fill(currencies, newSize, size, null);
+        size = newSize;
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).linesRemoved(this, first, last);
+        }
+    }
+
+    /**
+     * Replaces every line, notifying listeners with one removal and one insertion.
+     */
+    public void replaceAll(String[] newNames, long[] newValues) {
+        replaceAll(newNames, newValues, null);
+    }
+
+    /**
+     * Same as {@link #replaceAll(String[], long[])}, with the lines' currencies, or none if
+     * {@code newCurrencies} is null.
+     */
+    public void replaceAll(String[] newNames, long[] newValues, String[] newCurrencies) {
+        if (newNames.length != newValues.length
+                || (newCurrencies != null && newCurrencies.length != newValues.length)) {
+            throw new IllegalArgumentException(newNames.length + " names for " + newValues.length + " values");
+        }
+        int oldSize = size;
+        if (oldSize > 0) {
+            Arrays.fill(names, 0, oldSize, null);
+            Arrays.fill(currencies, 0, oldSize, null);
+            size = 0;
+            total = 0;
+            for (int i = 0; i < listeners.size(); i++) {
+                listeners.get(i).linesRemoved(this, 0, oldSize - 1);
+            }
+        }
+        int capacity = Math.max(INITIAL_CAPACITY, newValues.length);
+        if (capacity > values.length) {
+            names = new String[capacity];
+            values = new long[capacity];
+            currencies = new String[capacity];
+        }
+        System.arraycopy(newNames, 0, names, 0, newNames.length);
+        System.arraycopy(newValues, 0, values, 0, newValues.length);
+        if (newCurrencies != null) {
+            for (int line = 0; line < newCurrencies.length; line++) {
+                currencies[line] = normalizeCurrency(newCurrencies[line]);
+            }
+        }
+        size = newValues.length;
+        total = BudgetEngine.total(values, 0, size);
+        if (size > 0) {
+            for (int i = 0; i < listeners.size(); i++) {
+                listeners.get(i).linesInserted(this, 0, size - 1);
+            }
+        }
+    }
+
+    /**
+     * Overwrites all amounts from {@code source[offset .. offset + size()]} and notifies once.
+     */
+    public void setAll(long[] source, int offset) {
+        System.arraycopy(source, offset, values, 0, size);
+        total = BudgetEngine.total(values, 0, size);
+        if (size > 0) {
+            fireUpdated(0, size - 1);
+        }
+    }
+
+    public void copyTo(long[] destination, int offset) {
+        System.arraycopy(values, 0, destination, offset, size);
+    }
+
+    private void fireUpdated(int first, int last) {
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).linesUpdated(this, first, last);
+        }
+    }
+
+    private void checkIndex(int line) {
+        if (line < 0 || line >= size) {
+            throw new IndexOutOfBoundsException("line " + line + ", size " + size);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package site.aberdeen;
+
+import java.util.Arrays;
+
+/**
+ * Immutable vector of longs stored as a tree of 32-element chunks. {@link #with} copies only the
+ * chunks on the path to the changed element, O(log32 n), and shares the rest with the original,
+ * so many versions of a large vector cost little more than one.
+ */
+public final class LongVector {
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private static final LongVector EMPTY = new LongVector(0, 0, new long[0]);
+
+    private final int size;
+    // Bits to shift an index by at the root; 0 when the root is a single chunk.
+    private final int shift;
+    // long[] chunk when shift is 0, otherwise Object[] of subtrees.
+    private final Object root;
+
+    private LongVector(int size, int shift, Object root) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+    }
+
+    public static LongVector of(long[] values) {
+        return of(values, 0, values.length);
+    }
+
+    public static LongVector of(long[] values, int offset, int length) {
+        if (length == 0) {
+            return EMPTY;
+        }
+        int count = (length + MASK) >>> BITS;
+        Object[] level = new Object[count];
+        for (int i = 0; i < count; i++) {
+            int from = i << BITS;
+            long[] chunk = new long[Math.min(WIDTH, length - from)];
+            System.arraycopy(values, offset + from, chunk, 0, chunk.length);
+            level[i] = chunk;
+        }
+        int shift = 0;
+        while (level.length > 1) {
+            Object[] parents = new Object[(level.length + MASK) >>> BITS];
+            for (int i = 0; i < parents.length; i++) {
+                Object[] node = new Object[Math.min(WIDTH, level.length - (i << BITS))];
+                System.arraycopy(level, i << BITS, node, 0, node.length);
+                parents[i] = node;
+            }
+            level = parents;
+            shift += BITS;
+        }
+        return new LongVector(length, shift, level[0]);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long get(int index) {
+        checkIndex(index);
+        Object node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = ((Object[]) node)[(index >>> level) & MASK];
+        }
+        return ((long[]) node)[index & MASK];
+    }
+
+    /**
+     * Returns a vector with {@code index} set to {@code value}, or this vector if it already holds
+     * that value.
+     */
+    public LongVector with(int index, long value) {
+        if (get(index) == value) {
+            return this;
+        }
+        return new LongVector(size, shift, with(root, shift, index, value));
+    }
+
+    private static Object with(Object node, int level, int index, long value) {
+        if (level == 0) {
+            long[] chunk = ((long[]) node).clone();
+            chunk[index & MASK] = value;
+            return chunk;
+        }
+        Object[] children = ((Object[]) node).clone();
+        int child = (index >>> level) & MASK;
+        children[child] = with(children[child], level - BITS, index, value);
+        return children;
+    }
+
+    public long sum() {
+        return sum(root, shift);
+    }
+
+    private static long sum(Object node, int level) {
+        if (level == 0) {
+            long[] chunk = (long[]) node;
+            return Summation.sum(chunk, 0, chunk.length);
+        }
+        long total = 0;
+        for (Object child : (Object[]) node) {
+            total += sum(child, level - BITS);
+        }
+        return total;
+    }
+
+    public void copyTo(long[] destination, int offset) {
+        copyTo(root, shift, destination, offset);
+    }
+
+    private static int copyTo(Object node, int level, long[] destination, int offset) {
+        if (level == 0) {
+            long[] chunk = (long[]) node;
+            System.arraycopy(chunk, 0, destination, offset, chunk.length);
+            return offset + chunk.length;
+        }
+        for (Object child : (Object[]) node) {
+            offset = copyTo(child, level - BITS, destination, offset);
+        }
+        return offset;
+    }
+
+    public long[] toArray() {
+        long[] values = new long[size];
+        copyTo(values, 0);
+        return values;
+    }
+
+    /**
+     * Element-wise equality. Chunks shared between the two vectors are skipped, so comparing two
+     * versions of the same vector costs only the chunks that differ.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof LongVector)) return false;
+        LongVector that = (LongVector) o;
+        return size == that.size && equal(root, that.root, shift);
+    }
+
+    private static boolean equal(Object a, Object b, int level) {
+        if (a == b) {
+            return true;
+        }
+        if (level == 0) {
+            return Arrays.equals((long[]) a, (long[]) b);
+        }
+        Object[] left = (Object[]) a;
+        Object[] right = (Object[]) b;
+        for (int i = 0; i < left.length; i++) {
+            if (!equal(left[i], right[i], level - BITS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Same value as {@link Arrays#hashCode(long[])} over the elements.
+     */
+    @Override
+    public int hashCode() {
+        return hash(root, shift, 1);
+    }
+
+    private static int hash(Object node, int level, int result) {
+        if (level == 0) {
+            for (long value : (long[]) node) {
+                result = 31 * result + (int) (value ^ (value >>> 32));
+            }
+            return result;
+        }
+        for (Object child : (Object[]) node) {
+            result = hash(child, level - BITS, result);
+        }
+        return result;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package site.aberdeen;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process counters, gauges and latency histograms, looked up by name and safe to update from
+ * any thread. {@link #global()} is the registry the application reports into; {@link #dump} writes
+ * a plain-text snapshot that can be attached to a performance report.
+ */
+public class MetricsRegistry {
+
+    public static final String RECALCULATION_LATENCY = "recalculation.latency";
+    public static final String CALCULATE_ALL = "calculateAll";
+    public static final String SAVE_STATE = "history.saveState";
+    public static final String UNDO = "history.undo";
+    public static final String REDO = "history.redo";
+    public static final String HISTORY_DEPTH = "history.depth";
+    public static final String HISTORY_BYTES = "history.bytes";
+    public static final String PARSE_FAILURES = "parse.failures";
+    public static final String EDT_DISPATCH = "edt.dispatch";
+    public static final String IMPORT_DURATION = "import.duration";
+    public static final String IMPORT_BYTES = "import.bytes";
+    public static final String IMPORT_ROWS = "import.rows";
+
+    private static final MetricsRegistry GLOBAL = new MetricsRegistry();
+
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentSkipListMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+    private final Map<String, AtomicLong> gauges = new ConcurrentSkipListMap<>();
+
+    public static MetricsRegistry global() {
+        return GLOBAL;
+    }
+
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, LatencyHistogram::new);
+    }
+
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    public AtomicLong gauge(String name) {
+        return gauges.computeIfAbsent(name, key -> new AtomicLong());
+    }
+
+    public void dump(Path path) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        try (Writer out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            dump(out);
+        }
+    }
+
+    /**
+     * Writes one line per metric. Histogram values are in nanoseconds.
+     */
+    public void dump(Writer writer) throws IOException {
+        BufferedWriter out = writer instanceof BufferedWriter ? (BufferedWriter) writer : new BufferedWriter(writer);
+        out.write("# budget-swing metrics " + Instant.now());
+        out.newLine();
+        for (Map.Entry<String, LongAdder> counter : counters.entrySet()) {
+            out.write("counter " + counter.getKey() + " " + counter.getValue().sum());
+            out.newLine();
+        }
+        for (Map.Entry<String, AtomicLong> gauge : gauges.entrySet()) {
+            out.write("gauge " + gauge.getKey() + " " + gauge.getValue().get());
+            out.newLine();
+        }
+        for (LatencyHistogram histogram : histograms.values()) {
+            out.write("histogram " + histogram.getName()
+                    + " count=" + histogram.getCount()
+                    + " mean=" + Math.round(histogram.getMean())
+                    + " p50=" + histogram.getQuantile(0.50)
+                    + " p90=" + histogram.getQuantile(0.90)
+                    + " p99=" + histogram.getQuantile(0.99)
+                    + " p999=" + histogram.getQuantile(0.999)
+                    + " max=" + histogram.getMaximum());
+            out.newLine();
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,145 @@
+package site.aberdeen;
+
+/**
+ * Amounts are carried as {@code long} cents. Parsing and formatting work on caller-supplied
+ * buffers so the recalculation path never goes through {@link String#format}.
+ */
+public final class Money {
+
+    public static final long INVALID = Long.MIN_VALUE;
+    public static final int MAX_FORMATTED_LENGTH = 24;
+
+    private static final int CENTS_PER_UNIT = 100;
+
+    private Money() {
+    }
+
+    public static long ofUnits(long units) {
+        return Math.multiplyExact(units, CENTS_PER_UNIT);
+    }
+
+    public static double toDouble(long cents) {
+        return cents / (double) CENTS_PER_UNIT;
+    }
+
+    public static long fromDouble(double value) {
+        return Math.round(value * CENTS_PER_UNIT);
+    }
+
+    /**
+     * Divides and rounds half away from zero, matching the {@code %.2f} output this replaces.
+     */
+    public static long divideRounded(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (remainder != 0 && Math.abs(remainder) >= Math.abs(divisor) - Math.abs(remainder)) {
+            quotient += ((dividend ^ divisor) < 0) ? -1 : 1;
+        }
+        return quotient;
+    }
+
+    /**
+     * Parses {@code [+-]digits[.digits]}. Digits past the second decimal place are rounded half up.
+     * Returns {@link #INVALID} for blank, malformed or overflowing input.
+     */
+    public static long parse(CharSequence text) {
+        return parse(text, 0, text.length());
+    }
+
+    public static long parse(CharSequence text, int from, int to) {
+        while (from < to && text.charAt(from) <= ' ') {
+            from++;
+        }
+        while (to > from && text.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        if (from == to) {
+            return INVALID;
+        }
+
+        boolean negative = false;
+        char first = text.charAt(from);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            from++;
+        }
+
+        long units = 0;
+        int digits = 0;
+        int i = from;
+        for (; i < to; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            if (units > (Long.MAX_VALUE / CENTS_PER_UNIT - 9) / 10) {
+                return INVALID;
+            }
+            units = units * 10 + (c - '0');
+            digits++;
+        }
+
+        long fraction = 0;
+        if (i < to && text.charAt(i) == '.') {
+            i++;
+            int place = 0;
+            for (; i < to; i++) {
+                char c = text.charAt(i);
+                if (c < '0' || c > '9') {
+                    return INVALID;
+                }
+                if (place < 2) {
+                    fraction = fraction * 10 + (c - '0');
+                } else if (place == 2 && c >= '5') {
+                    fraction++;
+                }
+                place++;
+                digits++;
+            }
+            if (place == 1) {
+                fraction *= 10;
+            }
+        }
+        if (i != to || digits == 0) {
+            return INVALID;
+        }
+
+        long cents = units * CENTS_PER_UNIT + fraction;
+        return negative ? -cents : cents;
+    }
+
+    /**
+     * Writes {@code cents} as {@code [-]units.cc} into {@code dst} starting at {@code offset}
+     * and returns the number of chars written. {@code dst} needs {@link #MAX_FORMATTED_LENGTH}
+     * chars of room past {@code offset}.
+     */
+    public static int format(long cents, char[] dst, int offset) {
+        boolean negative = cents < 0;
+        // Work in negative space so Long.MIN_VALUE does not overflow.
+        long remaining = negative ? cents : -cents;
+
+        int end = offset + MAX_FORMATTED_LENGTH;
+        int pos = end;
+        for (int place = 0; place < 2; place++) {
+            dst[--pos] = (char) ('0' - (remaining % 10));
+            remaining /= 10;
+        }
+        dst[--pos] = '.';
+        do {
+            dst[--pos] = (char) ('0' - (remaining % 10));
+            remaining /= 10;
+        } while (remaining != 0);
+        if (negative) {
+            dst[--pos] = '-';
+        }
+
+        int length = end - pos;
+        System.arraycopy(dst, pos, dst, offset, length);
+        return length;
+    }
+
+    public static String toString(long cents) {
+        char[] buffer = new char[MAX_FORMATTED_LENGTH];
+        return new String(buffer, 0, format(cents, buffer, 0));
+    }
+}
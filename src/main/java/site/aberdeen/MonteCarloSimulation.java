@@ -0,0 +1,256 @@
+package site.aberdeen;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Simulates the overall cash flow of a budget whose line amounts are random. Each line has a
+ * distribution (fixed, uniform or normal, in cents per its section's period); every path draws
+ * all lines once and turns the sums into a cash flow exactly as {@link BudgetEngine#cashFlow}
+ * does.
+ * <p>
+ * Paths are generated in fixed-size chunks, each with its own {@link SplittableRandom} split from
+ * the seed in chunk order, and results are accumulated as integer counts. The outcome therefore
+ * depends only on the seed and path count, not on how the pool schedules the chunks. Workers
+ * fill a fixed histogram rather than storing paths, so memory does not grow with the path count
+ * and nothing is allocated per path.
+ */
+public class MonteCarloSimulation {
+
+    public static final byte FIXED = 0;
+    public static final byte UNIFORM = 1;
+    public static final byte NORMAL = 2;
+
+    static final int CHUNK_SIZE = 1 << 16;
+    static final int BIN_COUNT = 1 << 14;
+
+    private static final int PILOT_PATHS = 4096;
+    private static final long PILOT_SALT = 0x5DEECE66DL;
+    private static final double TWO_PI = 2 * Math.PI;
+
+    private final int incomeCount;
+    private final byte[] kinds;
+    private final double[] first;
+    private final double[] second;
+
+    private TimePeriod incomePeriod = TimePeriod.WEEKLY;
+    private TimePeriod spendingPeriod = TimePeriod.WEEKLY;
+    private TimePeriod overallPeriod = TimePeriod.WEEKLY;
+
+    public MonteCarloSimulation(int incomeCount, int spendingCount) {
+        this.incomeCount = incomeCount;
+        int lineCount = incomeCount + spendingCount;
+        kinds = new byte[lineCount];
+        first = new double[lineCount];
+        second = new double[lineCount];
+    }
+
+    /**
+     * Starts every line as a fixed amount equal to the model's current value, with the model's periods.
+     */
+    public static MonteCarloSimulation forModel(BudgetModel model) {
+        MonteCarloSimulation simulation = new MonteCarloSimulation(model.getIncomeItems().size(),
+                model.getSpendingItems().size());
+        long[] values = model.getValues();
+        for (int line = 0; line < values.length; line++) {
+            simulation.setFixed(line, values[line]);
+        }
+        simulation.setPeriods(model.getIncomePeriod(), model.getSpendingPeriod(), model.getOverallPeriod());
+        return simulation;
+    }
+
+    public int getLineCount() {
+        return kinds.length;
+    }
+
+    public void setPeriods(TimePeriod incomePeriod, TimePeriod spendingPeriod, TimePeriod overallPeriod) {
+        this.incomePeriod = incomePeriod;
+        this.spendingPeriod = spendingPeriod;
+        this.overallPeriod = overallPeriod;
+    }
+
+    /**
+     * Lines are numbered income first, then spending, as in {@link BudgetModel#getValues()}.
+     */
+    public void setFixed(int line, long cents) {
+        set(line, FIXED, cents, 0);
+    }
+
+    public void setUniform(int line, long minimumCents, long maximumCents) {
+        if (maximumCents < minimumCents) {
+            throw new IllegalArgumentException("maximum " + maximumCents + " below minimum " + minimumCents);
+        }
+        set(line, UNIFORM, minimumCents, maximumCents - minimumCents);
+    }
+
+    public void setNormal(int line, long meanCents, double standardDeviationCents) {
+        if (standardDeviationCents < 0) {
+            throw new IllegalArgumentException("standard deviation " + standardDeviationCents);
+        }
+        set(line, NORMAL, meanCents, standardDeviationCents);
+    }
+
+    public SimulationResult run(long pathCount, long seed) {
+        return run(pathCount, seed, ForkJoinPool.commonPool());
+    }
+
+    public SimulationResult run(long pathCount, long seed, ForkJoinPool pool) {
+        if (pathCount <= 0) {
+            throw new IllegalArgumentException("pathCount " + pathCount);
+        }
+        long[] range = pilotRange(seed);
+        int chunkCount = (int) ((pathCount + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] streams = new SplittableRandom[chunkCount];
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            streams[chunk] = root.split();
+        }
+        int chunksPerTask = Math.max(1, chunkCount / (pool.getParallelism() * 4));
+        Accumulator total = pool.invoke(new SimulationTask(streams, pathCount, 0, chunkCount, chunksPerTask,
+                range[0], range[1]));
+        return new SimulationResult(pathCount, total.sum, total.negative, total.minimum, total.maximum,
+                range[0], range[1], total.bins, total.below, total.above);
+    }
+
+    private void set(int line, byte kind, double a, double b) {
+        kinds[line] = kind;
+        first[line] = a;
+        second[line] = b;
+    }
+
+    private long samplePath(SplittableRandom random) {
+        double income = 0;
+        double spending = 0;
+        double incomeError = 0;
+        double spendingError = 0;
+        for (int line = 0; line < kinds.length; line++) {
+            double value;
+            switch (kinds[line]) {
+                case UNIFORM:
+                    value = first[line] + second[line] * random.nextDouble();
+                    break;
+                case NORMAL:
+                    double radius = Math.sqrt(-2 * Math.log(1.0 - random.nextDouble()));
+                    value = first[line] + second[line] * radius * Math.cos(TWO_PI * random.nextDouble());
+                    break;
+                default:
+                    value = first[line];
+            }
+            if (line < incomeCount) {
+                double t = income + value;
+                incomeError += Summation.roundingError(income, value, t);
+                income = t;
+            } else {
+                double t = spending + value;
+                spendingError += Summation.roundingError(spending, value, t);
+                spending = t;
+            }
+        }
+        return BudgetEngine.cashFlow(Math.round(income + incomeError), incomePeriod,
+                Math.round(spending + spendingError), spendingPeriod, overallPeriod);
+    }
+
+    /**
+     * Picks the histogram range from a short independent run, widened by half its span on each
+     * side. Paths outside it are still counted exactly, just not binned.
+     */
+    private long[] pilotRange(long seed) {
+        SplittableRandom pilot = new SplittableRandom(seed ^ PILOT_SALT);
+        long minimum = Long.MAX_VALUE;
+        long maximum = Long.MIN_VALUE;
+        for (int path = 0; path < PILOT_PATHS; path++) {
+            long cashFlow = samplePath(pilot);
+            minimum = Math.min(minimum, cashFlow);
+            maximum = Math.max(maximum, cashFlow);
+        }
+        long margin = Math.max(BIN_COUNT, (maximum - minimum) / 2);
+        return new long[]{minimum - margin, maximum + margin};
+    }
+
+    private static final class Accumulator {
+
+        final long[] bins = new long[BIN_COUNT];
+        long below;
+        long above;
+        long negative;
+        long sum;
+        long minimum = Long.MAX_VALUE;
+        long maximum = Long.MIN_VALUE;
+
+        void add(Accumulator other) {
+            for (int bin = 0; bin < BIN_COUNT; bin++) {
+                bins[bin] += other.bins[bin];
+            }
+            below += other.below;
+            above += other.above;
+            negative += other.negative;
+            sum += other.sum;
+            minimum = Math.min(minimum, other.minimum);
+            maximum = Math.max(maximum, other.maximum);
+        }
+    }
+
+    private final class SimulationTask extends RecursiveTask<Accumulator> {
+
+        private final SplittableRandom[] streams;
+        private final long pathCount;
+        private final int from;
+        private final int to;
+        private final int chunksPerTask;
+        private final long low;
+        private final long high;
+
+        SimulationTask(SplittableRandom[] streams, long pathCount, int from, int to, int chunksPerTask,
+                       long low, long high) {
+            this.streams = streams;
+            this.pathCount = pathCount;
+            this.from = from;
+            this.to = to;
+            this.chunksPerTask = chunksPerTask;
+            this.low = low;
+            this.high = high;
+        }
+
+        @Override
+        protected Accumulator compute() {
+            if (to - from > chunksPerTask) {
+                int middle = (from + to) >>> 1;
+                SimulationTask right = new SimulationTask(streams, pathCount, middle, to, chunksPerTask, low, high);
+                right.fork();
+                Accumulator result = new SimulationTask(streams, pathCount, from, middle, chunksPerTask, low, high)
+                        .compute();
+                result.add(right.join());
+                return result;
+            }
+
+            Accumulator result = new Accumulator();
+            double scale = BIN_COUNT / (double) (high - low);
+            for (int chunk = from; chunk < to; chunk++) {
+                SplittableRandom random = streams[chunk];
+                long paths = Math.min(CHUNK_SIZE, pathCount - (long) chunk * CHUNK_SIZE);
+                for (long path = 0; path < paths; path++) {
+                    long cashFlow = samplePath(random);
+                    result.sum += cashFlow;
+                    if (cashFlow < 0) {
+                        result.negative++;
+                    }
+                    if (cashFlow < result.minimum) {
+                        result.minimum = cashFlow;
+                    }
+                    if (cashFlow > result.maximum) {
+                        result.maximum = cashFlow;
+                    }
+                    if (cashFlow < low) {
+                        result.below++;
+                    } else if (cashFlow >= high) {
+                        result.above++;
+                    } else {
+                        result.bins[Math.min(BIN_COUNT - 1, (int) ((cashFlow - low) * scale))]++;
+                    }
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package site.aberdeen;
+
+/**
+ * Week-by-week balances in cents for a set of scenarios, stored as one flat array with each
+ * scenario's series contiguous.
+ */
+public class Projection {
+
+    private final int scenarioCount;
+    private final int weekCount;
+    private final long[] balances;
+
+    Projection(int scenarioCount, int weekCount) {
+        this.scenarioCount = scenarioCount;
+        this.weekCount = weekCount;
+        this.balances = new long[Math.multiplyExact(scenarioCount, weekCount)];
+    }
+
+    public int getScenarioCount() {
+        return scenarioCount;
+    }
+
+    public int getWeekCount() {
+        return weekCount;
+    }
+
+    /**
+     * Balance at the end of {@code week} (0-based) in {@code scenario}.
+     */
+    public long getBalance(int scenario, int week) {
+        return balances[offset(scenario) + week];
+    }
+
+    public long getFinalBalance(int scenario) {
+        return balances[offset(scenario) + weekCount - 1];
+    }
+
+    /**
+     * Returns the first week whose closing balance is negative, or -1 if it never is.
+     */
+    public int firstNegativeWeek(int scenario) {
+        int offset = offset(scenario);
+        for (int week = 0; week < weekCount; week++) {
+            if (balances[offset + week] < 0) {
+                return week;
+            }
+        }
+        return -1;
+    }
+
+    public void copySeries(int scenario, long[] destination, int destinationOffset) {
+        System.arraycopy(balances, offset(scenario), destination, destinationOffset, weekCount);
+    }
+
+    long[] balances() {
+        return balances;
+    }
+
+    private int offset(int scenario) {
+        if (scenario < 0 || scenario >= scenarioCount) {
+            throw new IndexOutOfBoundsException("scenario " + scenario + ", count " + scenarioCount);
+        }
+        return scenario * weekCount;
+    }
+}
@@ -0,0 +1,104 @@
+package site.aberdeen;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Projects a budget's running balance week by week under many {@link Scenario}s at once. Income
+ * and spending start at the budget's weekly rate and compound weekly at the scenario's growth and
+ * inflation rates; interest compounds weekly on the balance. Scenarios are split across a
+ * fork/join pool and each one writes its series straight into the shared {@link Projection}
+ * array, so a sweep allocates nothing per week or per scenario.
+ */
+public final class ProjectionEngine {
+
+    public static final int WEEKS_PER_YEAR = 52;
+
+    private static final int SCENARIOS_PER_TASK = 4;
+
+    private ProjectionEngine() {
+    }
+
+    public static Projection project(BudgetModel model, Scenario[] scenarios, int years) {
+        return project(model.getIncomePeriod().annualize(model.getTotalIncome()),
+                model.getSpendingPeriod().annualize(model.getTotalSpending()),
+                scenarios, years * WEEKS_PER_YEAR, ForkJoinPool.commonPool());
+    }
+
+    public static Projection project(long annualIncome, long annualSpending, Scenario[] scenarios,
+                                     int weeks, ForkJoinPool pool) {
+        if (weeks <= 0) {
+            throw new IllegalArgumentException("weeks " + weeks);
+        }
+        Projection projection = new Projection(scenarios.length, weeks);
+        pool.invoke(new SweepTask(annualIncome, annualSpending, scenarios, projection.balances(),
+                weeks, 0, scenarios.length));
+        return projection;
+    }
+
+    /**
+     * Writes one scenario's closing balances for weeks {@code 0 .. weeks - 1} into
+     * {@code balances[offset ..]}.
+     */
+    public static void project(long annualIncome, long annualSpending, Scenario scenario,
+                               long[] balances, int offset, int weeks) {
+        double income = (double) annualIncome / WEEKS_PER_YEAR;
+        double spending = (double) annualSpending / WEEKS_PER_YEAR;
+        double incomeFactor = weeklyFactor(scenario.getIncomeGrowth());
+        double spendingFactor = weeklyFactor(scenario.getInflation());
+        double interestFactor = weeklyFactor(scenario.getInterestRate());
+        int[] eventWeeks = scenario.eventWeeks();
+        long[] eventAmounts = scenario.eventAmounts();
+        int event = 0;
+
+        double balance = scenario.getStartingBalance();
+        for (int week = 0; week < weeks; week++) {
+            balance = balance * interestFactor + income - spending;
+            while (event < eventWeeks.length && eventWeeks[event] == week) {
+                balance += eventAmounts[event++];
+            }
+            balances[offset + week] = Math.round(balance);
+            income *= incomeFactor;
+            spending *= spendingFactor;
+        }
+    }
+
+    private static double weeklyFactor(double annualRate) {
+        return annualRate == 0 ? 1 : Math.pow(1 + annualRate, 1.0 / WEEKS_PER_YEAR);
+    }
+
+    private static final class SweepTask extends RecursiveAction {
+
+        private final long annualIncome;
+        private final long annualSpending;
+        private final Scenario[] scenarios;
+        private final long[] balances;
+        private final int weeks;
+        private final int from;
+        private final int to;
+
+        SweepTask(long annualIncome, long annualSpending, Scenario[] scenarios, long[] balances,
+                  int weeks, int from, int to) {
+            this.annualIncome = annualIncome;
+            this.annualSpending = annualSpending;
+            this.scenarios = scenarios;
+            this.balances = balances;
+            this.weeks = weeks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SCENARIOS_PER_TASK) {
+                for (int s = from; s < to; s++) {
+                    project(annualIncome, annualSpending, scenarios[s], balances, s * weeks, weeks);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new SweepTask(annualIncome, annualSpending, scenarios, balances, weeks, from, middle),
+                    new SweepTask(annualIncome, annualSpending, scenarios, balances, weeks, middle, to));
+        }
+    }
+}
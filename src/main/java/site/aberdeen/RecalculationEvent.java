@@ -0,0 +1,23 @@
+package site.aberdeen;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+@Name("site.aberdeen.Recalculation")
+@Label("Budget Recalculation")
+@Category("Budget Swing")
+@Description("Totals recalculated and shown, either directly or after a background computation")
+public class RecalculationEvent extends Event {
+
+    @Label("Background")
+    boolean background;
+
+    @Label("Latency")
+    @Description("Time from the request to the result being shown")
+    @Timespan(Timespan.NANOSECONDS)
+    long latency;
+}
@@ -0,0 +1,169 @@
+package site.aberdeen;
+
+import javax.swing.SwingUtilities;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs a computation off the Event Dispatch Thread and hands its result back to the EDT. Requests
+ * made in a burst coalesce: each new request cancels the computation still queued or running for
+ * the previous one, and only the result for the latest input is published, in a single
+ * {@code invokeLater}.
+ * <p>
+ * {@link #request} and {@link #cancel} must be called on the EDT. Long computations should check
+ * {@link Thread#isInterrupted()} so a cancelled run stops early.
+ * <p>
+ * The time from each request to its publication is recorded in the global
+ * {@link MetricsRegistry#RECALCULATION_LATENCY} histogram and as a {@link RecalculationEvent}.
+ */
+public class Recalculator<I, R> {
+
+    private final ExecutorService executor;
+    private final Function<I, R> computation;
+    private final Consumer<R> publisher;
+    private final AtomicLong generation = new AtomicLong();
+    private final LatencyHistogram latency = MetricsRegistry.global().histogram(MetricsRegistry.RECALCULATION_LATENCY);
+
+    // Held while a result is published, so that a cancel made off the EDT (as tests do) waits for
+    // it rather than racing the publisher; never taken inside the monitor.
+    private final Object publishing = new Object();
+
+    private long published;
+    private Future<?> running;
+
+    public Recalculator(Function<I, R> computation, Consumer<R> publisher) {
+        this(newExecutor(), computation, publisher);
+    }
+
+    public Recalculator(ExecutorService executor, Function<I, R> computation, Consumer<R> publisher) {
+        this.executor = executor;
+        this.computation = computation;
+        this.publisher = publisher;
+    }
+
+    /**
+     * Returns a virtual-thread-per-task executor when the runtime has one, otherwise a single
+     * daemon thread.
+     */
+    public static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "budget-recalculation");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Computes {@code input} in the background, superseding any earlier request.
+     */
+    public synchronized void request(I input) {
+        long id = generation.incrementAndGet();
+        long requested = System.nanoTime();
+        if (running != null) {
+            running.cancel(true);
+        }
+        running = executor.submit(() -> {
+            if (id != generation.get()) {
+                return;
+            }
+            R result = computation.apply(input);
+            if (id != generation.get() || Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            SwingUtilities.invokeLater(() -> publish(id, requested, result));
+        });
+    }
+
+    /**
+     * Drops any pending request, e.g. because the caller has just published a result itself.
+     */
+    public void cancel() {
+        synchronized (publishing) {
+            synchronized (this) {
+                long id = generation.incrementAndGet();
+                if (running != null) {
+                    running.cancel(true);
+                    running = null;
+                }
+                published = id;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Whether the latest request has been published, i.e. the result on screen is current.
+     */
+    public synchronized boolean isPublished() {
+        return published == generation.get();
+    }
+
+    /**
+     * Id of the latest {@link #request} or {@link #cancel}; ids increase by one with each.
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Id of the request whose result was published last, or of the latest {@link #cancel} if that
+     * came after it. Requests between two published ids were coalesced and never published.
+     */
+    public synchronized long getPublishedGeneration() {
+        return published;
+    }
+
+    /**
+     * Blocks until the latest request has been published or {@code timeoutMillis} passes. Must not
+     * be called on the EDT.
+     */
+    public synchronized boolean awaitPublished(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (published != generation.get()) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(remaining);
+        }
+        return true;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public boolean isShutdown() {
+        return executor.isShutdown();
+    }
+
+    // The publisher runs outside the monitor, so awaitPublished and request never wait on Swing.
+    private void publish(long id, long requested, R result) {
+        synchronized (publishing) {
+            if (id != generation.get()) {
+                return;
+            }
+            publisher.accept(result);
+            synchronized (this) {
+                published = id;
+                notifyAll();
+            }
+        }
+        long nanos = System.nanoTime() - requested;
+        latency.record(nanos);
+        RecalculationEvent event = new RecalculationEvent();
+        if (event.shouldCommit()) {
+            event.background = true;
+            event.latency = nanos;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,724 @@
+package site.aberdeen;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Writes a budget report as CSV, HTML or PDF: totals and every line per {@link TimePeriod}, then
+ * the ledger's transactions and the version history if given. Rows are produced one at a time
+ * and encoded straight into a single {@value #BUFFER_SIZE}-byte buffer that is drained to the
+ * channel whenever it fills, so memory stays the same however long the report gets; a PDF also
+ * keeps one offset per object for its cross-reference table.
+ * <p>
+ * Meant to run off the Event Dispatch Thread: the snapshot is immutable, and the ledger and
+ * version history must not change while exporting, see {@link UndoTree#copy()}.
+ */
+public class ReportExporter {
+
+    public enum Format {
+        CSV, HTML, PDF;
+
+        /**
+         * The format named by a file name's extension, or null if none matches.
+         */
+        public static Format forFileName(String fileName) {
+            int dot = fileName.lastIndexOf('.');
+            String extension = dot < 0 ? "" : fileName.substring(dot + 1).toUpperCase(Locale.ROOT);
+            if (extension.equals("HTM")) {
+                return HTML;
+            }
+            for (Format format : values()) {
+                if (format.name().equals(extension)) {
+                    return format;
+                }
+            }
+            return null;
+        }
+    }
+
+    public interface ProgressListener {
+        void progress(long rowsWritten, long totalRows);
+    }
+
+    static final int BUFFER_SIZE = 1 << 16;
+
+    private static final int PROGRESS_INTERVAL = 1 << 12;
+    private static final TimePeriod[] PERIODS = TimePeriod.values();
+    private static final String[] PERIOD_COLUMNS = {"Weekly", "Monthly", "Yearly"};
+
+    private final BudgetSnapshot snapshot;
+    private ExchangeRates exchangeRates;
+    private String reportingCurrency;
+    private int rateDay;
+    private boolean totalsSet;
+    private long totalIncome;
+    private long totalSpending;
+    private Ledger ledger;
+    private UndoTree versions;
+    private ProgressListener progressListener;
+    private volatile boolean cancelled;
+
+    private final char[] formatBuffer = new char[Money.MAX_FORMATTED_LENGTH];
+    private long rowCount;
+    private long totalRows;
+
+    public ReportExporter(BudgetSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Converts the summary and history totals into {@code reportingCurrency} at the {@code rates}
+     * in effect on {@code day}, as {@link BudgetModel#setReportingCurrency} does. A null currency
+     * adds amounts as they are.
+     */
+    public void setReportingCurrency(ExchangeRates rates, String reportingCurrency, int day) {
+        this.exchangeRates = rates;
+        this.reportingCurrency = reportingCurrency;
+        this.rateDay = day;
+    }
+
+    /**
+     * Reports these totals in the summary instead of the lines' own, e.g. the ledger averages
+     * {@link BudgetBase} shows, in the snapshot's income and spending periods.
+     */
+    public void setTotals(long totalIncome, long totalSpending) {
+        this.totalIncome = totalIncome;
+        this.totalSpending = totalSpending;
+        totalsSet = true;
+    }
+
+    /**
+     * Adds one row per transaction of {@code ledger}, or none if null.
+     */
+    public void setLedger(Ledger ledger) {
+        this.ledger = ledger;
+    }
+
+    /**
+     * Adds one row per version of {@code versions} with its totals, or none if null.
+     */
+    public void setVersions(UndoTree versions) {
+        this.versions = versions;
+    }
+
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Rows written by the last export, headers excluded.
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public void export(Path path, Format format) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            export(channel, format);
+        }
+    }
+
+    /**
+     * Writes the report to {@code channel}, which is left open.
+     *
+     * @throws CancellationException if {@link #cancel()} was called or the thread interrupted
+     * @throws IllegalArgumentException if a line is in a currency the rates do not quote
+     */
+    public void export(WritableByteChannel channel, Format format) throws IOException {
+        cancelled = false;
+        rowCount = 0;
+        totalRows = 6 + snapshot.getIncomeCount() + snapshot.getSpendingCount()
+                + (ledger == null ? 0 : ledger.size()) + (versions == null ? 0 : versions.size());
+        ChannelOutput out = new ChannelOutput(channel, format == Format.PDF);
+        ReportWriter writer;
+        switch (format) {
+            case CSV:
+                writer = new CsvWriter(out);
+                break;
+            case HTML:
+                writer = new HtmlWriter(out);
+                break;
+            default:
+                writer = new PdfWriter(out);
+        }
+        writer.begin();
+        writeSummary(writer);
+        writeLines(writer);
+        if (ledger != null) {
+            writeTransactions(writer);
+        }
+        if (versions != null) {
+            writeHistory(writer);
+        }
+        writer.end();
+        out.flush();
+        if (progressListener != null) {
+            progressListener.progress(rowCount, totalRows);
+        }
+    }
+
+    private void writeSummary(ReportWriter writer) throws IOException {
+        writer.beginSection("Summary", "", PERIOD_COLUMNS[0], PERIOD_COLUMNS[1], PERIOD_COLUMNS[2]);
+        long income = totalsSet ? totalIncome : totalIncome(snapshot);
+        long spending = totalsSet ? totalSpending : totalSpending(snapshot);
+        periodRow(writer, "Income", income, snapshot.getIncomePeriod());
+        periodRow(writer, "Spending", spending, snapshot.getSpendingPeriod());
+        startRow(writer);
+        writer.cell("Cash flow", false);
+        for (TimePeriod period : PERIODS) {
+            amount(writer, BudgetEngine.cashFlow(income, snapshot.getIncomePeriod(),
+                    spending, snapshot.getSpendingPeriod(), period));
+        }
+        writer.endRow();
+        writer.endSection();
+    }
+
+    private void periodRow(ReportWriter writer, String label, long cents, TimePeriod period) throws IOException {
+        startRow(writer);
+        writer.cell(label, false);
+        for (TimePeriod target : PERIODS) {
+            amount(writer, period.convert(cents, target));
+        }
+        writer.endRow();
+    }
+
+    private void writeLines(ReportWriter writer) throws IOException {
+        writer.beginSection("Lines", "Section", "Category", "Currency",
+                PERIOD_COLUMNS[0], PERIOD_COLUMNS[1], PERIOD_COLUMNS[2]);
+        for (int line = 0; line < snapshot.getIncomeCount(); line++) {
+            lineRow(writer, "Income", snapshot.getIncomeName(line), snapshot.getIncomeCurrency(line),
+                    snapshot.getIncomeValue(line), snapshot.getIncomePeriod());
+        }
+        for (int line = 0; line < snapshot.getSpendingCount(); line++) {
+            lineRow(writer, "Spending", snapshot.getSpendingName(line), snapshot.getSpendingCurrency(line),
+                    snapshot.getSpendingValue(line), snapshot.getSpendingPeriod());
+        }
+        writer.endSection();
+    }
+
+    private void lineRow(ReportWriter writer, String section, String name, String currency, long cents,
+                         TimePeriod period) throws IOException {
+        startRow(writer);
+        writer.cell(section, false);
+        writer.cell(name, false);
+        writer.cell(currency == null ? "" : currency, false);
+        for (TimePeriod target : PERIODS) {
+            amount(writer, period.convert(cents, target));
+        }
+        writer.endRow();
+    }
+
+    private void writeTransactions(ReportWriter writer) throws IOException {
+        writer.beginSection("Transactions", "Date", "Kind", "Amount");
+        for (int i = 0, size = ledger.size(); i < size; i++) {
+            startRow(writer);
+            writer.cell(LocalDate.ofEpochDay(ledger.getDay(i)).toString(), false);
+            writer.cell(ledger.isIncome(i) ? "Income" : "Spending", false);
+            amount(writer, ledger.getAmount(i));
+            writer.endRow();
+        }
+        writer.endSection();
+    }
+
+    private void writeHistory(ReportWriter writer) throws IOException {
+        writer.beginSection("History", "Version", "Parent", "Depth", "Income", "Spending", "Cash flow");
+        for (int version = versions.getFirstVersion(), end = version + versions.size(); version < end; version++) {
+            BudgetSnapshot snapshot = versions.getSnapshot(version);
+            int parent = versions.getParent(version);
+            startRow(writer);
+            writer.cell(Integer.toString(version), true);
+            writer.cell(parent == UndoTree.NONE ? "" : Integer.toString(parent), true);
+            writer.cell(Integer.toString(versions.getDepth(version)), true);
+            long income = totalIncome(snapshot);
+            long spending = totalSpending(snapshot);
+            amount(writer, income);
+            amount(writer, spending);
+            amount(writer, BudgetEngine.cashFlow(income, snapshot.getIncomePeriod(),
+                    spending, snapshot.getSpendingPeriod(), snapshot.getOverallPeriod()));
+            writer.endRow();
+        }
+        writer.endSection();
+    }
+
+    private long totalIncome(BudgetSnapshot snapshot) {
+        return reportingCurrency == null ? snapshot.getTotalIncome()
+                : snapshot.getTotalIncome(exchangeRates, reportingCurrency, rateDay);
+    }
+
+    private long totalSpending(BudgetSnapshot snapshot) {
+        return reportingCurrency == null ? snapshot.getTotalSpending()
+                : snapshot.getTotalSpending(exchangeRates, reportingCurrency, rateDay);
+    }
+
+    private void startRow(ReportWriter writer) throws IOException {
+        if (cancelled || Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Export cancelled");
+        }
+        rowCount++;
+        if (progressListener != null && rowCount % PROGRESS_INTERVAL == 0) {
+            progressListener.progress(rowCount, totalRows);
+        }
+        writer.beginRow();
+    }
+
+    private void amount(ReportWriter writer, long cents) throws IOException {
+        writer.cell(CharBuffer.wrap(formatBuffer, 0, Money.format(cents, formatBuffer, 0)), true);
+    }
+
+    /**
+     * Encodes characters into a fixed buffer, writing it to the channel whenever it fills.
+     */
+    static final class ChannelOutput {
+
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private final boolean latin1;
+        private long written;
+        private char highSurrogate;
+
+        ChannelOutput(WritableByteChannel channel, boolean latin1) {
+            this.channel = channel;
+            this.latin1 = latin1;
+        }
+
+        /**
+         * Bytes written so far, including those still buffered.
+         */
+        long position() {
+            return written + buffer.position();
+        }
+
+        void write(CharSequence text) throws IOException {
+            for (int i = 0, length = text.length(); i < length; i++) {
+                write(text.charAt(i));
+            }
+        }
+
+        void write(long number) throws IOException {
+            write(Long.toString(number));
+        }
+
+        /**
+         * Writes {@code c} in ISO-8859-1, with '?' for characters outside it, or in UTF-8.
+         */
+        void write(char c) throws IOException {
+            if (buffer.remaining() < 4) {
+                drain();
+            }
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (latin1) {
+                buffer.put(c <= 0xFF ? (byte) c : (byte) '?');
+            } else if (Character.isHighSurrogate(c)) {
+                highSurrogate = c;
+            } else if (Character.isLowSurrogate(c) && highSurrogate != 0) {
+                int codePoint = Character.toCodePoint(highSurrogate, c);
+                highSurrogate = 0;
+                buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+
+        void flush() throws IOException {
+            drain();
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    private abstract static class ReportWriter {
+
+        final ChannelOutput out;
+
+        ReportWriter(ChannelOutput out) {
+            this.out = out;
+        }
+
+        void begin() throws IOException {
+        }
+
+        abstract void beginSection(String title, String... columns) throws IOException;
+
+        abstract void beginRow() throws IOException;
+
+        abstract void cell(CharSequence text, boolean numeric) throws IOException;
+
+        abstract void endRow() throws IOException;
+
+        void endSection() throws IOException {
+        }
+
+        void end() throws IOException {
+        }
+    }
+
+    /**
+     * RFC 4180 rows, each section preceded by a row holding its title and separated by a blank line.
+     */
+    private static final class CsvWriter extends ReportWriter {
+
+        private boolean firstSection = true;
+        private boolean firstCell;
+
+        CsvWriter(ChannelOutput out) {
+            super(out);
+        }
+
+        @Override
+        void beginSection(String title, String... columns) throws IOException {
+            if (!firstSection) {
+                out.write("\r\n");
+            }
+            firstSection = false;
+            beginRow();
+            cell(title, false);
+            endRow();
+            beginRow();
+            for (String column : columns) {
+                cell(column, false);
+            }
+            endRow();
+        }
+
+        @Override
+        void beginRow() {
+            firstCell = true;
+        }
+
+        @Override
+        void cell(CharSequence text, boolean numeric) throws IOException {
+            if (!firstCell) {
+                out.write(',');
+            }
+            firstCell = false;
+            boolean quote = false;
+            for (int i = 0; i < text.length() && !quote; i++) {
+                char c = text.charAt(i);
+                quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+            }
+            if (!quote) {
+                out.write(text);
+                return;
+            }
+            out.write('"');
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '"') {
+                    out.write('"');
+                }
+                out.write(c);
+            }
+            out.write('"');
+        }
+
+        @Override
+        void endRow() throws IOException {
+            out.write("\r\n");
+        }
+    }
+
+    private static final class HtmlWriter extends ReportWriter {
+
+        HtmlWriter(ChannelOutput out) {
+            super(out);
+        }
+
+        @Override
+        void begin() throws IOException {
+            out.write("<!DOCTYPE html>\n<html><head><meta charset=\"utf-8\"><title>Budget report</title>\n"
+                    + "<style>body{font-family:sans-serif}table{border-collapse:collapse;margin-bottom:2em}"
+                    + "th,td{border:1px solid #ccc;padding:2px 8px}td.n{text-align:right}</style>\n"
+                    + "</head><body>\n");
+        }
+
+        @Override
+        void beginSection(String title, String... columns) throws IOException {
+            out.write("<h2>");
+            escaped(title);
+            out.write("</h2>\n<table><thead><tr>");
+            for (String column : columns) {
+                out.write("<th>");
+                escaped(column);
+                out.write("</th>");
+            }
+            out.write("</tr></thead><tbody>\n");
+        }
+
+        @Override
+        void beginRow() throws IOException {
+            out.write("<tr>");
+        }
+
+        @Override
+        void cell(CharSequence text, boolean numeric) throws IOException {
+            out.write(numeric ? "<td class=\"n\">" : "<td>");
+            escaped(text);
+            out.write("</td>");
+        }
+
+        @Override
+        void endRow() throws IOException {
+            out.write("</tr>\n");
+        }
+
+        @Override
+        void endSection() throws IOException {
+            out.write("</tbody></table>\n");
+        }
+
+        @Override
+        void end() throws IOException {
+            out.write("</body></html>\n");
+        }
+
+        private void escaped(CharSequence text) throws IOException {
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                switch (c) {
+                    case '&':
+                        out.write("&amp;");
+                        break;
+                    case '<':
+                        out.write("&lt;");
+                        break;
+                    case '>':
+                        out.write("&gt;");
+                        break;
+                    case '"':
+                        out.write("&quot;");
+                        break;
+                    default:
+                        out.write(c);
+                }
+            }
+        }
+    }
+
+    /**
+     * A4 pages of fixed-width Courier text. Each page is three objects (page, content stream and
+     * its length, written after the stream), so page object numbers are known without keeping a
+     * list, and the page tree is written last.
+     */
+    private static final class PdfWriter extends ReportWriter {
+
+        private static final int PAGE_WIDTH = 595;
+        private static final int PAGE_HEIGHT = 842;
+        private static final int MARGIN = 40;
+        private static final int FONT_SIZE = 8;
+        private static final int LEADING = 10;
+        private static final int LINES_PER_PAGE = (PAGE_HEIGHT - 2 * MARGIN) / LEADING;
+        private static final int FIRST_COLUMN_WIDTH = 24;
+        private static final int COLUMN_WIDTH = 14;
+        private static final int CATALOG = 1;
+        private static final int PAGES = 2;
+        private static final int FONT = 3;
+        private static final int FIRST_PAGE = 4;
+
+        // Byte offset of each object by number; the only state that grows with the output.
+        private long[] offsets = new long[64];
+        private int nextObject = FIRST_PAGE;
+        private int pageCount;
+        private boolean pageOpen;
+        private long streamStart;
+        private int linesOnPage;
+        private final StringBuilder line = new StringBuilder();
+        private int column;
+
+        PdfWriter(ChannelOutput out) {
+            super(out);
+        }
+
+        @Override
+        void begin() throws IOException {
+            out.write("%PDF-1.4\n%âãÏÓ\n");
+            startObject(CATALOG);
+            out.write("<< /Type /Catalog /Pages 2 0 R >>\nendobj\n");
+            startObject(FONT);
+            out.write("<< /Type /Font /Subtype /Type1 /BaseFont /Courier /Encoding /WinAnsiEncoding >>\nendobj\n");
+        }
+
+        @Override
+        void beginSection(String title, String... columns) throws IOException {
+            if (pageOpen && linesOnPage > 0 && linesOnPage + 4 > LINES_PER_PAGE) {
+                endPage();
+            }
+            if (pageOpen && linesOnPage > 0) {
+                writeLine("");
+            }
+            writeLine(title);
+            beginRow();
+            for (String name : columns) {
+                cell(name, column > 0);
+            }
+            endRow();
+        }
+
+        @Override
+        void beginRow() {
+            line.setLength(0);
+            column = 0;
+        }
+
+        @Override
+        void cell(CharSequence text, boolean numeric) {
+            int width = column == 0 ? FIRST_COLUMN_WIDTH : COLUMN_WIDTH;
+            if (column > 0) {
+                line.append(' ');
+            }
+            int length = Math.min(text.length(), width);
+            int padding = width - length;
+            if (numeric) {
+                pad(padding);
+            }
+            line.append(text, 0, length);
+            if (!numeric) {
+                pad(padding);
+            }
+            column++;
+        }
+
+        private void pad(int count) {
+            for (int i = 0; i < count; i++) {
+                line.append(' ');
+            }
+        }
+
+        @Override
+        void endRow() throws IOException {
+            int end = line.length();
+            while (end > 0 && line.charAt(end - 1) == ' ') {
+                end--;
+            }
+            line.setLength(end);
+            writeLine(line);
+        }
+
+        @Override
+        void end() throws IOException {
+            if (!pageOpen && pageCount == 0) {
+                beginPage();
+            }
+            if (pageOpen) {
+                endPage();
+            }
+            startObject(PAGES);
+            out.write("<< /Type /Pages /Kids [");
+            for (int page = 0; page < pageCount; page++) {
+                out.write(FIRST_PAGE + 3L * page);
+                out.write(" 0 R ");
+            }
+            out.write("] /Count ");
+            out.write(pageCount);
+            out.write(" >>\nendobj\n");
+
+            long xref = out.position();
+            out.write("xref\n0 ");
+            out.write(nextObject);
+            out.write("\n0000000000 65535 f \n");
+            char[] digits = new char[10];
+            for (int object = 1; object < nextObject; object++) {
+                long offset = offsets[object];
+                for (int i = digits.length - 1; i >= 0; i--) {
+                    digits[i] = (char) ('0' + offset % 10);
+                    offset /= 10;
+                }
+                out.write(CharBuffer.wrap(digits));
+                out.write(" 00000 n \n");
+            }
+            out.write("trailer\n<< /Size ");
+            out.write(nextObject);
+            out.write(" /Root 1 0 R >>\nstartxref\n");
+            out.write(xref);
+            out.write("\n%%EOF\n");
+        }
+
+        private void writeLine(CharSequence text) throws IOException {
+            if (!pageOpen || linesOnPage == LINES_PER_PAGE) {
+                if (pageOpen) {
+                    endPage();
+                }
+                beginPage();
+            }
+            out.write('(');
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '(' || c == ')' || c == '\\') {
+                    out.write('\\');
+                } else if (c < ' ') {
+                    c = ' ';
+                }
+                out.write(c);
+            }
+            out.write(") Tj T*\n");
+            linesOnPage++;
+        }
+
+        private void beginPage() throws IOException {
+            int page = nextObject;
+            nextObject += 3;
+            startObject(page);
+            out.write("<< /Type /Page /Parent 2 0 R /MediaBox [0 0 " + PAGE_WIDTH + " " + PAGE_HEIGHT
+                    + "] /Resources << /Font << /F1 3 0 R >> >> /Contents ");
+            out.write(page + 1);
+            out.write(" 0 R >>\nendobj\n");
+            startObject(page + 1);
+            out.write("<< /Length ");
+            out.write(page + 2);
+            out.write(" 0 R >>\nstream\n");
+            streamStart = out.position();
+            out.write("BT /F1 " + FONT_SIZE + " Tf " + LEADING + " TL " + MARGIN + " "
+                    + (PAGE_HEIGHT - MARGIN - FONT_SIZE) + " Td\n");
+            pageCount++;
+            pageOpen = true;
+            linesOnPage = 0;
+        }
+
+        private void endPage() throws IOException {
+            out.write("ET\n");
+            long length = out.position() - streamStart;
+            out.write("endstream\nendobj\n");
+            startObject(nextObject - 1);
+            out.write(length);
+            out.write("\nendobj\n");
+            pageOpen = false;
+        }
+
+        private void startObject(int object) throws IOException {
+            if (object >= offsets.length) {
+                offsets = Arrays.copyOf(offsets, Math.max(object + 1, offsets.length * 2));
+            }
+            offsets[object] = out.position();
+            out.write(object);
+            out.write(" 0 obj\n");
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package site.aberdeen;
+
+import java.util.Arrays;
+
+/**
+ * One what-if case for {@link ProjectionEngine}: annual growth rates as fractions (0.03 is 3%) and
+ * one-off events in cents at given weeks from the start of the projection.
+ */
+public class Scenario {
+
+    private long startingBalance;
+    private double incomeGrowth;
+    private double inflation;
+    private double interestRate;
+
+    private int[] eventWeeks = new int[0];
+    private long[] eventAmounts = new long[0];
+
+    public long getStartingBalance() {
+        return startingBalance;
+    }
+
+    public void setStartingBalance(long startingBalance) {
+        this.startingBalance = startingBalance;
+    }
+
+    public double getIncomeGrowth() {
+        return incomeGrowth;
+    }
+
+    public void setIncomeGrowth(double incomeGrowth) {
+        this.incomeGrowth = incomeGrowth;
+    }
+
+    /**
+     * Annual growth applied to spending.
+     */
+    public double getInflation() {
+        return inflation;
+    }
+
+    public void setInflation(double inflation) {
+        this.inflation = inflation;
+    }
+
+    /**
+     * Annual interest earned (or, on a negative balance, paid) on the running balance.
+     */
+    public double getInterestRate() {
+        return interestRate;
+    }
+
+    public void setInterestRate(double interestRate) {
+        this.interestRate = interestRate;
+    }
+
+    /**
+     * Adds a one-off amount at {@code week}, positive for a windfall and negative for an expense.
+     */
+    public void addEvent(int week, long cents) {
+        if (week < 0) {
+            throw new IllegalArgumentException("week " + week);
+        }
+        int index = eventWeeks.length;
+        while (index > 0 && eventWeeks[index - 1] > week) {
+            index--;
+        }
+        eventWeeks = Arrays.copyOf(eventWeeks, eventWeeks.length + 1);
+        eventAmounts = Arrays.copyOf(eventAmounts, eventAmounts.length + 1);
+        int moved = eventWeeks.length - 1 - index;
+        System.arraycopy(eventWeeks, index, eventWeeks, index + 1, moved);
+        System.arraycopy(eventAmounts, index, eventAmounts, index + 1, moved);
+        eventWeeks[index] = week;
+        eventAmounts[index] = cents;
+    }
+
+    public int getEventCount() {
+        return eventWeeks.length;
+    }
+
+    /**
+     * Event weeks in ascending order; do not modify.
+     */
+    int[] eventWeeks() {
+        return eventWeeks;
+    }
+
+    long[] eventAmounts() {
+        return eventAmounts;
+    }
+}
@@ -0,0 +1,94 @@
+package site.aberdeen;
+
+/**
+ * Summary of a {@link MonteCarloSimulation} run: exact path count, mean, extremes and probability
+ * of a negative cash flow, plus percentiles read from a fixed-width histogram of the cash flows.
+ * Percentiles are accurate to one bin width ({@link #getBinWidth()} cents).
+ */
+public class SimulationResult {
+
+    private final long pathCount;
+    private final long sum;
+    private final long negativeCount;
+    private final long minimum;
+    private final long maximum;
+    private final long low;
+    private final long high;
+    private final long[] bins;
+    private final long below;
+    private final long above;
+
+    SimulationResult(long pathCount, long sum, long negativeCount, long minimum, long maximum,
+                     long low, long high, long[] bins, long below, long above) {
+        this.pathCount = pathCount;
+        this.sum = sum;
+        this.negativeCount = negativeCount;
+        this.minimum = minimum;
+        this.maximum = maximum;
+        this.low = low;
+        this.high = high;
+        this.bins = bins;
+        this.below = below;
+        this.above = above;
+    }
+
+    public long getPathCount() {
+        return pathCount;
+    }
+
+    public double getMean() {
+        return (double) sum / pathCount;
+    }
+
+    public long getMinimum() {
+        return minimum;
+    }
+
+    public long getMaximum() {
+        return maximum;
+    }
+
+    public double getProbabilityNegative() {
+        return (double) negativeCount / pathCount;
+    }
+
+    public double getBinWidth() {
+        return (double) (high - low) / bins.length;
+    }
+
+    /**
+     * Cash flow in cents below which a {@code fraction} (0..1) of paths fall, always within the
+     * observed {@link #getMinimum()} and {@link #getMaximum()}, which p0 and p100 return.
+     */
+    public long getPercentile(double fraction) {
+        if (fraction < 0 || fraction > 1) {
+            throw new IllegalArgumentException("fraction " + fraction);
+        }
+        double rank = fraction * pathCount;
+        if (rank <= below) {
+            return minimum;
+        }
+        double cumulative = below;
+        double width = getBinWidth();
+        for (int bin = 0; bin < bins.length; bin++) {
+            long count = bins[bin];
+            if (count > 0 && cumulative + count >= rank) {
+                double within = (rank - cumulative) / count;
+                long value = Math.round(low + (bin + within) * width);
+                return Math.max(minimum, Math.min(value, maximum));
+            }
+            cumulative += count;
+        }
+        return maximum;
+    }
+
+    /**
+     * Fills {@code destination[i]} with the percentile for {@code fractions[i]}, e.g. 0.05, 0.5 and
+     * 0.95 for a median with a 90% band.
+     */
+    public void getPercentiles(double[] fractions, long[] destination) {
+        for (int i = 0; i < fractions.length; i++) {
+            destination[i] = getPercentile(fractions[i]);
+        }
+    }
+}
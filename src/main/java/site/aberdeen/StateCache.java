@@ -0,0 +1,100 @@
+package site.aberdeen;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Least-recently-used cache of results computed from a {@link BudgetState} and its period triple.
+ * Bounded both by entry count and by the total number of lines held in cached states, so a few
+ * huge budgets cannot pin much memory. Not thread-safe.
+ */
+public class StateCache<V> {
+
+    private final int maxEntries;
+    private final long maxLines;
+    private final LinkedHashMap<Key, V> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long lineCount;
+    private long hits;
+    private long misses;
+
+    public StateCache(int maxEntries, long maxLines) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        this.maxLines = maxLines;
+    }
+
+    public V get(BudgetState state, TimePeriod incomePeriod, TimePeriod spendingPeriod, TimePeriod overallPeriod) {
+        V value = entries.get(new Key(state, incomePeriod, spendingPeriod, overallPeriod));
+        if (value == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return value;
+    }
+
+    public void put(BudgetState state, TimePeriod incomePeriod, TimePeriod spendingPeriod, TimePeriod overallPeriod,
+                    V value) {
+        Key key = new Key(state, incomePeriod, spendingPeriod, overallPeriod);
+        if (entries.put(key, value) == null) {
+            lineCount += state.getLineCount();
+        }
+        Iterator<Key> eldest = entries.keySet().iterator();
+        while (entries.size() > 1 && (entries.size() > maxEntries || lineCount > maxLines)) {
+            lineCount -= eldest.next().state.getLineCount();
+            eldest.remove();
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public void clear() {
+        entries.clear();
+        lineCount = 0;
+    }
+
+    private static final class Key {
+
+        final BudgetState state;
+        final TimePeriod incomePeriod;
+        final TimePeriod spendingPeriod;
+        final TimePeriod overallPeriod;
+        final int hash;
+
+        Key(BudgetState state, TimePeriod incomePeriod, TimePeriod spendingPeriod, TimePeriod overallPeriod) {
+            this.state = state;
+            this.incomePeriod = incomePeriod;
+            this.spendingPeriod = spendingPeriod;
+            this.overallPeriod = overallPeriod;
+            hash = ((state.hashCode() * 31 + incomePeriod.ordinal()) * 31 + spendingPeriod.ordinal()) * 31
+                    + overallPeriod.ordinal();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key that = (Key) o;
+            return hash == that.hash && incomePeriod == that.incomePeriod && spendingPeriod == that.spendingPeriod
+                    && overallPeriod == that.overallPeriod && state.equals(that.state);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
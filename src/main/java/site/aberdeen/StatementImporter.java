@@ -0,0 +1,369 @@
+package site.aberdeen;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Streams bank statement exports (CSV, or OFX/QFX by file extension) through memory-mapped
+ * windows and adds each transaction straight into an income or spending category. Cells are
+ * read through a reused {@link CharSequence} view over the mapped bytes, so no per-row objects
+ * are created and heap use does not depend on file size.
+ * <p>
+ * Bytes are read as Latin-1; amounts and ASCII keywords are unaffected by the file's real
+ * encoding. Quoted CSV cells may contain the delimiter but not line breaks.
+ * <p>
+ * With a {@link #setLedger ledger} attached, every classified transaction that carries a date is
+ * also recorded there, so the statement's history can be queried by date range afterwards.
+ */
+public class StatementImporter {
+
+    public interface Classifier {
+        /**
+         * Returns the category for a transaction: {@code 0 .. incomeCount - 1} for income,
+         * {@code incomeCount ..} for spending, or a negative value to skip it.
+         */
+        int classify(CharSequence description, long cents);
+    }
+
+    public interface ProgressListener {
+        void progress(long bytesRead, long bytesTotal);
+    }
+
+    public static final int DEFAULT_WINDOW_SIZE = 64 << 20;
+
+    private static final byte[] OFX_TRANSACTION_END = "</STMTTRN>".getBytes();
+    private static final byte[] OFX_AMOUNT = "<TRNAMT>".getBytes();
+    private static final byte[] OFX_NAME = "<NAME>".getBytes();
+    private static final byte[] OFX_MEMO = "<MEMO>".getBytes();
+    private static final byte[] OFX_DATE = "<DTPOSTED>".getBytes();
+
+    private final int incomeCount;
+    private final long[] totals;
+    private final Classifier classifier;
+    private final AmountParser amountParser;
+    private final ByteText description = new ByteText();
+    private final ByteText cell = new ByteText();
+
+    private char delimiter = ',';
+    private int descriptionColumn = 1;
+    private int amountColumn = 2;
+    private int dateColumn = 0;
+    private Ledger ledger;
+    private int windowSize = DEFAULT_WINDOW_SIZE;
+    private ProgressListener progressListener;
+    private volatile boolean cancelled;
+
+    private long rowCount;
+    private long rejectedCount;
+
+    public StatementImporter(int incomeCount, int spendingCount, Classifier classifier, AmountParser amountParser) {
+        this.incomeCount = incomeCount;
+        this.totals = new long[incomeCount + spendingCount];
+        this.classifier = classifier;
+        this.amountParser = amountParser;
+    }
+
+    /**
+     * Puts credits into the first income category and debits into the first spending category.
+     */
+    public static Classifier bySign(int incomeCount) {
+        return (description, cents) -> cents >= 0 ? 0 : incomeCount;
+    }
+
+    public void setCsvColumns(char delimiter, int descriptionColumn, int amountColumn) {
+        this.delimiter = delimiter;
+        this.descriptionColumn = descriptionColumn;
+        this.amountColumn = amountColumn;
+    }
+
+    /**
+     * Also records dated transactions in {@code ledger}, reading CSV dates from
+     * {@code dateColumn} and OFX dates from {@code <DTPOSTED>}. Pass {@code null} to stop.
+     */
+    public void setLedger(Ledger ledger, int dateColumn) {
+        this.ledger = ledger;
+        this.dateColumn = dateColumn;
+    }
+
+    public void setWindowSize(int windowSize) {
+        this.windowSize = windowSize;
+    }
+
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * Imports one file and returns the category totals accumulated so far, spending as positive
+     * amounts. Successive calls keep adding to the same totals.
+     *
+     * @throws CancellationException if {@link #cancel()} was called during the import
+     */
+    public BudgetState importFile(Path path) throws IOException {
+        String name = path.getFileName().toString().toLowerCase();
+        boolean ofx = name.endsWith(".ofx") || name.endsWith(".qfx");
+        cancelled = false;
+        long rowsBefore = rowCount;
+        long rejectedBefore = rejectedCount;
+        long start = System.nanoTime();
+        ImportEvent event = new ImportEvent();
+        event.begin();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                checkCancelled();
+                long length = Math.min(windowSize, size - position);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                boolean last = position + length == size;
+                int consumed = ofx ? scanOfx(window, (int) length, last) : scanCsv(window, (int) length, last);
+                if (consumed == 0) {
+                    throw new IOException("Record at byte " + position + " is longer than the "
+                            + windowSize + " byte import window");
+                }
+                position += consumed;
+                if (progressListener != null) {
+                    progressListener.progress(position, size);
+                }
+            }
+
+            MetricsRegistry metrics = MetricsRegistry.global();
+            metrics.histogram(MetricsRegistry.IMPORT_DURATION).record(System.nanoTime() - start);
+            metrics.counter(MetricsRegistry.IMPORT_BYTES).add(size);
+            metrics.counter(MetricsRegistry.IMPORT_ROWS).add(rowCount - rowsBefore);
+            event.end();
+            if (event.shouldCommit()) {
+                event.file = path.toString();
+                event.bytes = size;
+                event.rows = rowCount - rowsBefore;
+                event.rejected = rejectedCount - rejectedBefore;
+                event.commit();
+            }
+        }
+        return getState();
+    }
+
+    public BudgetState getState() {
+        long[] income = new long[incomeCount];
+        long[] spending = new long[totals.length - incomeCount];
+        System.arraycopy(totals, 0, income, 0, income.length);
+        System.arraycopy(totals, incomeCount, spending, 0, spending.length);
+        return new BudgetState(income, spending);
+    }
+
+    private int scanCsv(MappedByteBuffer window, int length, boolean last) {
+        int lineStart = 0;
+        int lines = 0;
+        for (int i = 0; i < length; i++) {
+            if (window.get(i) == '\n') {
+                csvLine(window, lineStart, i);
+                lineStart = i + 1;
+                if ((++lines & 0xFFFF) == 0) {
+                    checkCancelled();
+                }
+            }
+        }
+        if (last && lineStart < length) {
+            csvLine(window, lineStart, length);
+            lineStart = length;
+        }
+        return lineStart;
+    }
+
+    private void csvLine(MappedByteBuffer window, int from, int to) {
+        if (to > from && window.get(to - 1) == '\r') {
+            to--;
+        }
+        if (to == from) {
+            return;
+        }
+
+        int column = 0;
+        int cellStart = from;
+        boolean quoted = false;
+        boolean haveAmount = false;
+        int day = Ledger.NO_DAY;
+        description.reset(window, from, from);
+        for (int i = from; i <= to; i++) {
+            byte b = i < to ? window.get(i) : (byte) delimiter;
+            if (b == '"') {
+                quoted = !quoted;
+            } else if (b == delimiter && !quoted) {
+                int start = cellStart;
+                int end = i;
+                if (end - start >= 2 && window.get(start) == '"' && window.get(end - 1) == '"') {
+                    start++;
+                    end--;
+                }
+                if (column == descriptionColumn) {
+                    description.reset(window, start, end);
+                } else if (column == dateColumn && ledger != null) {
+                    cell.reset(window, start, end);
+                    day = Ledger.parseDay(cell);
+                } else if (column == amountColumn) {
+                    cell.reset(window, start, end);
+                    haveAmount = amountParser.parse(cell) == AmountParser.OK;
+                    if (!haveAmount) {
+                        break;
+                    }
+                }
+                column++;
+                cellStart = i + 1;
+            }
+        }
+
+        if (haveAmount) {
+            add(description, amountParser.getValue(), day);
+        } else {
+            rejectedCount++;
+        }
+    }
+
+    private int scanOfx(MappedByteBuffer window, int length, boolean last) {
+        int transactionStart = 0;
+        boolean haveAmount = false;
+        long amount = 0;
+        int day = Ledger.NO_DAY;
+        description.reset(window, 0, 0);
+
+        for (int i = 0; i < length; i++) {
+            if (window.get(i) != '<') {
+                continue;
+            }
+            if (startsWith(window, i, length, OFX_TRANSACTION_END)) {
+                if (haveAmount) {
+                    add(description, amount, day);
+                } else {
+                    rejectedCount++;
+                }
+                haveAmount = false;
+                day = Ledger.NO_DAY;
+                description.reset(window, 0, 0);
+                transactionStart = i + OFX_TRANSACTION_END.length;
+            } else if (startsWith(window, i, length, OFX_AMOUNT)) {
+                int start = i + OFX_AMOUNT.length;
+                cell.reset(window, start, valueEnd(window, start, length));
+                haveAmount = amountParser.parse(cell) == AmountParser.OK;
+                amount = amountParser.getValue();
+            } else if (ledger != null && startsWith(window, i, length, OFX_DATE)) {
+                int start = i + OFX_DATE.length;
+                cell.reset(window, start, valueEnd(window, start, length));
+                day = Ledger.parseDay(cell);
+            } else if (startsWith(window, i, length, OFX_NAME)) {
+                int start = i + OFX_NAME.length;
+                description.reset(window, start, valueEnd(window, start, length));
+            } else if (description.length() == 0 && startsWith(window, i, length, OFX_MEMO)) {
+                int start = i + OFX_MEMO.length;
+                description.reset(window, start, valueEnd(window, start, length));
+            }
+        }
+        return last ? length : transactionStart;
+    }
+
+    private void add(CharSequence description, long cents, int day) {
+        rowCount++;
+        int category = classifier.classify(description, cents);
+        if (category < 0 || category >= totals.length) {
+            return;
+        }
+        boolean income = category < incomeCount;
+        totals[category] += income ? cents : -cents;
+        if (ledger != null && day != Ledger.NO_DAY) {
+            if (income) {
+                ledger.addIncome(day, cents);
+            } else {
+                ledger.addSpending(day, -cents);
+            }
+        }
+    }
+
+    private void checkCancelled() {
+        if (cancelled || Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Import cancelled");
+        }
+    }
+
+    private static int valueEnd(MappedByteBuffer window, int from, int length) {
+        int i = from;
+        while (i < length) {
+            byte b = window.get(i);
+            if (b == '<' || b == '\n' || b == '\r') {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean startsWith(MappedByteBuffer window, int at, int length, byte[] tag) {
+        if (length - at < tag.length) {
+            return false;
+        }
+        for (int i = 0; i < tag.length; i++) {
+            if (window.get(at + i) != tag[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class ByteText implements CharSequence {
+
+        private MappedByteBuffer buffer;
+        private int from;
+        private int to;
+
+        void reset(MappedByteBuffer buffer, int from, int to) {
+            this.buffer = buffer;
+            while (from < to && buffer.get(from) == ' ') {
+                from++;
+            }
+            while (to > from && buffer.get(to - 1) == ' ') {
+                to--;
+            }
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public int length() {
+            return to - from;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (buffer.get(from + index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            char[] chars = new char[length()];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = charAt(i);
+            }
+            return new String(chars);
+        }
+    }
+}
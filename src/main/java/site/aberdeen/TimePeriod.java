@@ -1,20 +1,41 @@
 package site.aberdeen;
 
 public enum TimePeriod {
-    WEEKLY(1),
-    MONTHLY(4.3333333),
-    YEARLY(52);
+    WEEKLY(52),
+    MONTHLY(12),
+    YEARLY(1);
 
-    private final double value;
+    private static final int WEEKS_PER_YEAR = 52;
 
-    private TimePeriod(double value) {
-        this.value = value;
+    private final int periodsPerYear;
+
+    private TimePeriod(int periodsPerYear) {
+        this.periodsPerYear = periodsPerYear;
+    }
+
+    public int getPeriodsPerYear() {
+        return periodsPerYear;
     }
 
     public double getValue() {
-        return value;
+        return (double) WEEKS_PER_YEAR / periodsPerYear;
+    }
+
+    /**
+     * Scales an amount for this period to the same amount per year. The result is exact, so values
+     * kept in annual form can move between periods without accumulating rounding.
+     *
+     * @throws ArithmeticException if the annual amount does not fit in a long
+     */
+    public long annualize(long cents) {
+        return Math.multiplyExact(cents, periodsPerYear);
     }
 
+    public long fromAnnual(long annualCents) {
+        return Money.divideRounded(annualCents, periodsPerYear);
+    }
 
+    public long convert(long cents, TimePeriod target) {
+        return target.fromAnnual(annualize(cents));
+    }
 }
-
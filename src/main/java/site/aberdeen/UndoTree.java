@@ -0,0 +1,304 @@
+package site.aberdeen;
+
+import java.util.Arrays;
+
+/**
+ * Every version of a budget the user has saved, undone to or redone to, kept as a tree so that
+ * editing after an undo starts a new branch instead of discarding the old one. Versions are
+ * {@link BudgetSnapshot}s, which share unchanged chunks with each other, so each edit adds roughly
+ * one chunk of amounts rather than a copy of every line.
+ * <p>
+ * At most {@code capacity} versions are kept, in a ring like {@link EditHistory}'s: once full,
+ * each new version evicts the oldest one. A parent is always older than its children, so this
+ * trims the tree from the root; a branch whose fork point was evicted keeps its own root until
+ * it is the oldest in turn. Versions are numbered in creation order from 0, the first root, and
+ * keep their numbers; {@link #getFirstVersion()} is the oldest one still kept.
+ * <p>
+ * Each version also stores a skew-binary jump pointer (Myers, 1983), giving O(log n) ancestor
+ * and common-ancestor queries with two ints per version, and its list of children, so finding an
+ * existing child on commit costs its number of children. Not thread-safe.
+ */
+public class UndoTree {
+
+    public static final int NONE = -1;
+    public static final int DEFAULT_CAPACITY = EditHistory.DEFAULT_CAPACITY;
+
+    private final int capacity;
+    // Indexed by version % capacity; versions, not slots, are stored in the int arrays.
+    private BudgetSnapshot[] snapshots;
+    private int[] parents;
+    private int[] jumps;
+    private int[] depths;
+    // Most recently visited child, followed by redo; NONE for a leaf.
+    private int[] redoChildren;
+    // Newest child, and the next older sibling; older entries may already be evicted.
+    private int[] firstChildren;
+    private int[] nextSiblings;
+    private int first;
+    private int next;
+    private int current;
+
+    public UndoTree(BudgetSnapshot root) {
+        this(root, DEFAULT_CAPACITY);
+    }
+
+    public UndoTree(BudgetSnapshot root, int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("capacity must be at least 2: " + capacity);
+        }
+        this.capacity = capacity;
+        int length = Math.min(16, capacity);
+        snapshots = new BudgetSnapshot[length];
+        parents = new int[length];
+        jumps = new int[length];
+        depths = new int[length];
+        redoChildren = new int[length];
+        firstChildren = new int[length];
+        nextSiblings = new int[length];
+        snapshots[0] = root;
+        parents[0] = NONE;
+        jumps[0] = 0;
+        redoChildren[0] = NONE;
+        firstChildren[0] = NONE;
+        nextSiblings[0] = NONE;
+        next = 1;
+    }
+
+    private UndoTree(UndoTree other) {
+        capacity = other.capacity;
+        snapshots = other.snapshots.clone();
+        parents = other.parents.clone();
+        jumps = other.jumps.clone();
+        depths = other.depths.clone();
+        redoChildren = other.redoChildren.clone();
+        firstChildren = other.firstChildren.clone();
+        nextSiblings = other.nextSiblings.clone();
+        first = other.first;
+        next = other.next;
+        current = other.current;
+    }
+
+    /**
+     * An independent copy sharing the snapshots, which are immutable, e.g. for reading on another
+     * thread while this tree keeps changing.
+     */
+    public UndoTree copy() {
+        return new UndoTree(this);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Number of versions kept, numbered {@link #getFirstVersion()} up to {@code getFirstVersion() + size() - 1}.
+     */
+    public int size() {
+        return next - first;
+    }
+
+    public int getFirstVersion() {
+        return first;
+    }
+
+    public boolean contains(int version) {
+        return version >= first && version < next;
+    }
+
+    public int getCurrent() {
+        return current;
+    }
+
+    public BudgetSnapshot getSnapshot(int version) {
+        checkVersion(version);
+        return snapshots[slot(version)];
+    }
+
+    /**
+     * The parent of {@code version}, or {@link #NONE} for a root or if the parent was evicted.
+     */
+    public int getParent(int version) {
+        checkVersion(version);
+        return kept(parents[slot(version)]);
+    }
+
+    public int getDepth(int version) {
+        checkVersion(version);
+        return depths[slot(version)];
+    }
+
+    public boolean canUndo() {
+        return getParent(current) != NONE;
+    }
+
+    public boolean canRedo() {
+        return kept(redoChildren[slot(current)]) != NONE;
+    }
+
+    /**
+     * Moves to the version holding {@code snapshot}: the current one if nothing changed, its
+     * parent or a child if the budget went back to one of those (as after an undo or redo), or
+     * else a new child of the current version. Returns the version moved to.
+     */
+    public int commit(BudgetSnapshot snapshot) {
+        if (sameBudget(snapshots[slot(current)], snapshot)) {
+            return current;
+        }
+        int parent = getParent(current);
+        if (parent != NONE && sameBudget(snapshots[slot(parent)], snapshot)) {
+            return undo();
+        }
+        int redoChild = kept(redoChildren[slot(current)]);
+        if (redoChild != NONE && sameBudget(snapshots[slot(redoChild)], snapshot)) {
+            return redo();
+        }
+        for (int child = kept(firstChildren[slot(current)]); child != NONE; child = kept(nextSiblings[slot(child)])) {
+            if (sameBudget(snapshots[slot(child)], snapshot)) {
+                return moveTo(child);
+            }
+        }
+        if (size() == capacity && current == first) {
+            // the current version is next to go: keep its budget as a new root to undo to
+            current = add(NONE, snapshots[slot(current)]);
+        }
+        return moveTo(add(current, snapshot));
+    }
+
+    public int undo() {
+        if (canUndo()) {
+            int parent = parents[slot(current)];
+            redoChildren[slot(parent)] = current;
+            current = parent;
+        }
+        return current;
+    }
+
+    public int redo() {
+        if (canRedo()) {
+            current = redoChildren[slot(current)];
+        }
+        return current;
+    }
+
+    /**
+     * Makes {@code version} current, e.g. to switch to another branch. Combined with
+     * {@link #getAncestor} this jumps any number of versions back in O(log n).
+     */
+    public int moveTo(int version) {
+        checkVersion(version);
+        current = version;
+        return current;
+    }
+
+    /**
+     * The ancestor of {@code version} at {@code depth}, in O(log n).
+     *
+     * @throws IllegalArgumentException if {@code depth} is below {@code version} or above its
+     *                                  oldest kept ancestor
+     */
+    public int getAncestor(int version, int depth) {
+        checkVersion(version);
+        int ancestor = ancestor(version, depth);
+        if (ancestor == NONE) {
+            throw new IllegalArgumentException("depth " + depth + " is not above version " + version);
+        }
+        return ancestor;
+    }
+
+    /**
+     * The latest version both {@code a} and {@code b} descend from, in O(log n), or {@link #NONE}
+     * if it was evicted. Budget variants are compared from here.
+     */
+    public int getCommonAncestor(int a, int b) {
+        checkVersion(a);
+        checkVersion(b);
+        int depth = Math.min(depths[slot(a)], depths[slot(b)]);
+        a = ancestor(a, depth);
+        b = ancestor(b, depth);
+        // Differing ancestors at one depth put the common one above it; jumps are taken only when
+        // both land on the same depth, so the two sides stay level.
+        while (a != b && a != NONE && b != NONE) {
+            int jumpA = kept(jumps[slot(a)]);
+            int jumpB = kept(jumps[slot(b)]);
+            if (jumpA != jumpB && jumpA != NONE && jumpB != NONE && depths[slot(jumpA)] == depths[slot(jumpB)]) {
+                a = jumpA;
+                b = jumpB;
+            } else {
+                a = kept(parents[slot(a)]);
+                b = kept(parents[slot(b)]);
+            }
+        }
+        return a == b ? a : NONE;
+    }
+
+    private int ancestor(int version, int depth) {
+        if (depth < 0 || depth > depths[slot(version)]) {
+            return NONE;
+        }
+        while (version != NONE && depths[slot(version)] > depth) {
+            int jump = kept(jumps[slot(version)]);
+            version = jump != NONE && depths[slot(jump)] >= depth ? jump : kept(parents[slot(version)]);
+        }
+        return version;
+    }
+
+    private int add(int parent, BudgetSnapshot snapshot) {
+        if (next - first == capacity) {
+            snapshots[slot(first)] = null;
+            first++;
+        } else if (next == snapshots.length) {
+            int length = Math.min(next + (next >> 1), capacity);
+            snapshots = Arrays.copyOf(snapshots, length);
+            parents = Arrays.copyOf(parents, length);
+            jumps = Arrays.copyOf(jumps, length);
+            depths = Arrays.copyOf(depths, length);
+            redoChildren = Arrays.copyOf(redoChildren, length);
+            firstChildren = Arrays.copyOf(firstChildren, length);
+            nextSiblings = Arrays.copyOf(nextSiblings, length);
+        }
+        int version = next++;
+        int slot = slot(version);
+        snapshots[slot] = snapshot;
+        parents[slot] = parent;
+        redoChildren[slot] = NONE;
+        firstChildren[slot] = NONE;
+        if (parent == NONE) {
+            depths[slot] = 0;
+            jumps[slot] = version;
+            nextSiblings[slot] = NONE;
+            return version;
+        }
+        int parentSlot = slot(parent);
+        depths[slot] = depths[parentSlot] + 1;
+        nextSiblings[slot] = firstChildren[parentSlot];
+        firstChildren[parentSlot] = version;
+        // Where the skew-binary rule would need an evicted version, fall back to the parent: still
+        // an ancestor, just a shorter jump.
+        int jump = jumps[parentSlot];
+        if (contains(jump) && contains(jumps[slot(jump)])
+                && depths[parentSlot] - depths[slot(jump)] == depths[slot(jump)] - depths[slot(jumps[slot(jump)])]) {
+            jumps[slot] = jumps[slot(jump)];
+        } else {
+            jumps[slot] = parent;
+        }
+        return version;
+    }
+
+    private int kept(int version) {
+        return contains(version) ? version : NONE;
+    }
+
+    private int slot(int version) {
+        return version % capacity;
+    }
+
+    private static boolean sameBudget(BudgetSnapshot a, BudgetSnapshot b) {
+        return a == b || (a.getState().equals(b.getState()) && a.hasSameNames(b));
+    }
+
+    private void checkVersion(int version) {
+        if (!contains(version)) {
+            throw new IndexOutOfBoundsException("version " + version + ", kept " + first + " to " + (next - 1));
+        }
+    }
+}
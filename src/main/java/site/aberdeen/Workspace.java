@@ -0,0 +1,327 @@
+package site.aberdeen;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Many named budgets in one directory, one {@link BudgetStore} snapshot file each. Only recently
+ * opened budgets stay resident with their model, undo history and journal; once their estimated
+ * heap use exceeds the memory budget the least recently used are compacted to disk and dropped,
+ * then paged back in by {@link #open}. Every budget's annual totals are kept in a few bytes, so
+ * aggregate totals across budgets never page anything in. Not thread-safe.
+ */
+public class Workspace implements Closeable {
+
+    public static final String FILE_SUFFIX = ".dat";
+    public static final long DEFAULT_MEMORY_BUDGET = 64L << 20;
+
+    /**
+     * Rough heap cost of one line across the line items, the published snapshot and the tables,
+     * used to estimate a resident budget's footprint.
+     */
+    static final int BYTES_PER_LINE = 96;
+
+    private static final int JOURNAL_RECORDS = 1 << 12;
+
+    public static final class Budget {
+
+        private final String name;
+        private final BudgetModel model;
+        private final EditHistory history;
+        private final BudgetStore store;
+        private boolean resident = true;
+
+        Budget(String name, BudgetModel model, EditHistory history, BudgetStore store) {
+            this.name = name;
+            this.model = model;
+            this.history = history;
+            this.store = store;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public BudgetModel getModel() {
+            return model;
+        }
+
+        public EditHistory getHistory() {
+            return history;
+        }
+
+        /**
+         * Journal for edits made to the model; see {@link BudgetStore#append}.
+         */
+        public BudgetStore getStore() {
+            return store;
+        }
+
+        /**
+         * False once the budget has been evicted; call {@link Workspace#open} again for a fresh handle.
+         */
+        public boolean isResident() {
+            return resident;
+        }
+
+        long estimateBytes() {
+            return (long) model.getLineCount() * BYTES_PER_LINE + history.getByteSize();
+        }
+    }
+
+    // Annual totals, exact, so that aggregates round only once.
+    private static final class Summary {
+
+        final long annualIncome;
+        final long annualSpending;
+
+        Summary(BudgetSnapshot snapshot) {
+            annualIncome = snapshot.getIncomePeriod().annualize(snapshot.getTotalIncome());
+            annualSpending = snapshot.getSpendingPeriod().annualize(snapshot.getTotalSpending());
+        }
+    }
+
+    private final Path directory;
+    private long memoryBudget;
+    private final LinkedHashMap<String, Budget> resident = new LinkedHashMap<>(16, 0.75f, true);
+    // Every known budget; the summary is null until the budget has been read once.
+    private final Map<String, Summary> summaries = new TreeMap<>();
+    private long residentBytes;
+
+    public Workspace(Path directory) throws IOException {
+        this(directory, DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * Opens the workspace in {@code directory}, creating it if needed, and lists the budgets
+     * saved there without reading them.
+     */
+    public Workspace(Path directory, long memoryBudget) throws IOException {
+        this.directory = directory;
+        this.memoryBudget = memoryBudget;
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + FILE_SUFFIX)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                summaries.put(fileName.substring(0, fileName.length() - FILE_SUFFIX.length()), null);
+            }
+        }
+    }
+
+    public List<String> getNames() {
+        return new ArrayList<>(summaries.keySet());
+    }
+
+    public boolean contains(String name) {
+        return summaries.containsKey(name);
+    }
+
+    public boolean isResident(String name) {
+        return resident.containsKey(name);
+    }
+
+    public int getResidentCount() {
+        return resident.size();
+    }
+
+    /**
+     * Estimated heap use of the resident budgets as of their last {@link #open} or
+     * {@link #trim}, in bytes.
+     */
+    public long getResidentBytes() {
+        return residentBytes;
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    public void setMemoryBudget(long memoryBudget) throws IOException {
+        this.memoryBudget = memoryBudget;
+        trim();
+    }
+
+    /**
+     * Creates and saves a new budget with the given lines and makes it the most recently used.
+     */
+    public Budget create(String name, LineItems income, LineItems spending) throws IOException {
+        if (summaries.containsKey(name)) {
+            throw new IllegalArgumentException("Budget already exists: " + name);
+        }
+        BudgetModel model = new BudgetModel(income, spending);
+        EditHistory history = new EditHistory(model.getLineCount(), EditHistory.DEFAULT_CAPACITY);
+        BudgetStore store = new BudgetStore(path(name), JOURNAL_RECORDS);
+        store.compact(model, history);
+        Budget budget = new Budget(name, model, history, store);
+        summaries.put(name, null);
+        resident.put(name, budget);
+        trim();
+        return budget;
+    }
+
+    /**
+     * Returns the budget, paging it in from disk if it was evicted, and makes it the most recently
+     * used. May evict others to stay within the memory budget.
+     */
+    public Budget open(String name) throws IOException {
+        Budget budget = resident.get(name);
+        if (budget == null) {
+            if (!summaries.containsKey(name)) {
+                throw new IllegalArgumentException("No such budget: " + name);
+            }
+            BudgetModel model = new BudgetModel(new LineItems(), new LineItems());
+            BudgetStore store = new BudgetStore(path(name), JOURNAL_RECORDS);
+            EditHistory history = store.load(model);
+            if (history == null) {
+                history = new EditHistory(model.getLineCount(), EditHistory.DEFAULT_CAPACITY);
+                store.compact(model, history);
+            }
+            budget = new Budget(name, model, history, store);
+            resident.put(name, budget);
+        }
+        trim();
+        return budget;
+    }
+
+    /**
+     * Evicts least recently used budgets until the rest fit the memory budget. The most recently
+     * used budget always stays resident.
+     */
+    public void trim() throws IOException {
+        residentBytes = 0;
+        for (Budget budget : resident.values()) {
+            residentBytes += budget.estimateBytes();
+        }
+        Iterator<Budget> eldest = resident.values().iterator();
+        while (residentBytes > memoryBudget && resident.size() > 1) {
+            Budget budget = eldest.next();
+            residentBytes -= budget.estimateBytes();
+            eldest.remove();
+            evict(budget);
+        }
+    }
+
+    /**
+     * Compacts a budget to disk and drops it, e.g. when its editor is closed. Does nothing if it
+     * is not resident.
+     */
+    public void release(String name) throws IOException {
+        Budget budget = resident.remove(name);
+        if (budget != null) {
+            residentBytes -= budget.estimateBytes();
+            evict(budget);
+        }
+    }
+
+    private void evict(Budget budget) throws IOException {
+        budget.resident = false;
+        summaries.put(budget.name, new Summary(budget.model.getSnapshot()));
+        budget.store.compact(budget.model, budget.history);
+        budget.store.discardJournal();
+    }
+
+    /**
+     * Deletes a budget from disk, resident or not.
+     */
+    public void delete(String name) throws IOException {
+        Budget budget = resident.remove(name);
+        if (budget != null) {
+            budget.resident = false;
+            budget.store.close();
+            residentBytes -= budget.estimateBytes();
+        }
+        summaries.remove(name);
+        Path path = path(name);
+        Files.deleteIfExists(path.resolveSibling(path.getFileName() + ".journal"));
+        Files.deleteIfExists(path);
+    }
+
+    public long getIncome(TimePeriod period, Collection<String> names) throws IOException {
+        long annual = 0;
+        for (String name : names) {
+            annual += summary(name).annualIncome;
+        }
+        return period.fromAnnual(annual);
+    }
+
+    public long getSpending(TimePeriod period, Collection<String> names) throws IOException {
+        long annual = 0;
+        for (String name : names) {
+            annual += summary(name).annualSpending;
+        }
+        return period.fromAnnual(annual);
+    }
+
+    /**
+     * Combined cash flow per {@code period} of several budgets, e.g. the accounts of one
+     * household. Evicted budgets are only read if their totals were never seen before.
+     */
+    public long getCashFlow(TimePeriod period, Collection<String> names) throws IOException {
+        long annual = 0;
+        for (String name : names) {
+            Summary summary = summary(name);
+            annual += summary.annualIncome - summary.annualSpending;
+        }
+        return period.fromAnnual(annual);
+    }
+
+    public long getCashFlow(TimePeriod period) throws IOException {
+        return getCashFlow(period, summaries.keySet());
+    }
+
+    private Summary summary(String name) throws IOException {
+        // not resident.get, which would make the budget most recently used
+        for (Budget budget : resident.values()) {
+            if (budget.name.equals(name)) {
+                return new Summary(budget.model.getSnapshot());
+            }
+        }
+        if (!summaries.containsKey(name)) {
+            throw new IllegalArgumentException("No such budget: " + name);
+        }
+        Summary summary = summaries.get(name);
+        if (summary == null) {
+            BudgetModel model = new BudgetModel(new LineItems(), new LineItems());
+            BudgetStore store = new BudgetStore(path(name), JOURNAL_RECORDS);
+            store.load(model);
+            if (store.getJournalCount() == 0) {
+                store.discardJournal();
+            } else {
+                store.close();
+            }
+            summary = new Summary(model.getSnapshot());
+            summaries.put(name, summary);
+        }
+        return summary;
+    }
+
+    private Path path(String name) {
+        Path path = directory.resolve(name + FILE_SUFFIX);
+        if (name.isEmpty() || !directory.equals(path.getParent())) {
+            throw new IllegalArgumentException("Invalid budget name: " + name);
+        }
+        return path;
+    }
+
+    /**
+     * Compacts and releases every resident budget.
+     */
+    @Override
+    public void close() throws IOException {
+        for (Budget budget : resident.values()) {
+            evict(budget);
+        }
+        resident.clear();
+        residentBytes = 0;
+    }
+}
@@ -0,0 +1,248 @@
+package site.aberdeen;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The budgets of a {@link Workspace} side by side, one {@link BudgetBase} tab each, with a selector
+ * to open, create and close them. A tab whose budget the workspace evicted keeps its place and is
+ * paged back in when selected. Not thread-safe; use on the EDT.
+ */
+public class WorkspacePanel extends JPanel implements Closeable {
+
+    private final JFrame topLevelFrame;
+    private final Workspace workspace;
+    private final JComboBox<String> budgetSelector = new JComboBox<>();
+    private final JTabbedPane tabs = new JTabbedPane();
+    // Budget shown by each tab, by name; a tab without one is evicted and shows a placeholder.
+    private final Map<String, Workspace.Budget> shown = new HashMap<>();
+    private ExchangeRates exchangeRates;
+    private boolean paging;
+
+    public WorkspacePanel(JFrame frame, Workspace workspace) {
+        super(new BorderLayout());
+        topLevelFrame = frame;
+        this.workspace = workspace;
+
+        JButton openButton = new JButton("Open");
+        JButton newButton = new JButton("New");
+        JButton closeButton = new JButton("Close");
+        JPanel selector = new JPanel(new FlowLayout(FlowLayout.LEADING));
+        selector.add(budgetSelector);
+        selector.add(openButton);
+        selector.add(newButton);
+        selector.add(closeButton);
+        add(selector, BorderLayout.NORTH);
+        add(tabs, BorderLayout.CENTER);
+        updateSelector();
+
+        openButton.addActionListener(e -> {
+            String name = (String) budgetSelector.getSelectedItem();
+            if (name != null) {
+                try {
+                    open(name);
+                } catch (IOException | RuntimeException ex) {
+                    JOptionPane.showMessageDialog(topLevelFrame, "Could not open " + name + ": " + ex.getMessage());
+                }
+            }
+        });
+        newButton.addActionListener(e -> {
+            String name = JOptionPane.showInputDialog(topLevelFrame, "Budget name");
+            if (name != null && !name.trim().isEmpty()) {
+                try {
+                    create(name.trim());
+                } catch (IOException | RuntimeException ex) {
+                    JOptionPane.showMessageDialog(topLevelFrame, "Could not create " + name + ": " + ex.getMessage());
+                }
+            }
+        });
+        closeButton.addActionListener(e -> {
+            int index = tabs.getSelectedIndex();
+            if (index >= 0) {
+                String name = tabs.getTitleAt(index);
+                try {
+                    close(name);
+                } catch (IOException ex) {
+                    JOptionPane.showMessageDialog(topLevelFrame, "Could not save " + name + ": " + ex.getMessage());
+                }
+            }
+        });
+        tabs.addChangeListener(e -> {
+            int index = tabs.getSelectedIndex();
+            if (index >= 0 && !paging) {
+                try {
+                    pageIn(index);
+                } catch (IOException ex) {
+                    JOptionPane.showMessageDialog(topLevelFrame, "Could not open " + tabs.getTitleAt(index) + ": " + ex.getMessage());
+                }
+            }
+        });
+    }
+
+    public Workspace getWorkspace() {
+        return workspace;
+    }
+
+    public JTabbedPane getTabs() {
+        return tabs;
+    }
+
+    /**
+     * The editor of the selected tab, paged in if needed, or null if no budget is open.
+     */
+    public BudgetBase getSelectedBudget() throws IOException {
+        int index = tabs.getSelectedIndex();
+        return index < 0 ? null : pageIn(index);
+    }
+
+    /**
+     * Shows {@code name} in its own tab, opening one if needed, and selects it.
+     */
+    public BudgetBase open(String name) throws IOException {
+        int index = tabs.indexOfTab(name);
+        if (index < 0) {
+            if (!workspace.contains(name)) {
+                throw new IllegalArgumentException("No such budget: " + name);
+            }
+            tabs.addTab(name, new JPanel());
+            index = tabs.getTabCount() - 1;
+        }
+        BudgetBase editor = pageIn(index);
+        select(index);
+        return editor;
+    }
+
+    /**
+     * Creates a budget with the usual starting lines and opens it.
+     */
+    public BudgetBase create(String name) throws IOException {
+        stopEditing();
+        Workspace.Budget budget = workspace.create(name, new LineItems(BudgetBase.DEFAULT_INCOME_LINES),
+                new LineItems(BudgetBase.DEFAULT_SPENDING_LINES));
+        BudgetBase editor = show(budget);
+        tabs.addTab(name, editor);
+        select(tabs.getTabCount() - 1);
+        updateSelector();
+        closeEvicted();
+        return editor;
+    }
+
+    /**
+     * Saves {@code name} and closes its tab. It stays in the workspace and can be opened again.
+     */
+    public void close(String name) throws IOException {
+        int index = tabs.indexOfTab(name);
+        if (index < 0) {
+            return;
+        }
+        Component component = tabs.getComponentAt(index);
+        if (component instanceof BudgetBase) {
+            ((BudgetBase) component).dispose();
+        }
+        shown.remove(name);
+        workspace.release(name);
+        tabs.removeTabAt(index);
+    }
+
+    /**
+     * Makes {@code rates} available to every open budget, as {@link BudgetBase#setExchangeRates}.
+     */
+    public void setExchangeRates(ExchangeRates rates) {
+        exchangeRates = rates;
+        for (int index = 0; index < tabs.getTabCount(); index++) {
+            Component component = tabs.getComponentAt(index);
+            if (component instanceof BudgetBase) {
+                ((BudgetBase) component).setExchangeRates(rates);
+            }
+        }
+    }
+
+    /**
+     * Saves every open budget and closes the workspace.
+     */
+    @Override
+    public void close() throws IOException {
+        for (int index = 0; index < tabs.getTabCount(); index++) {
+            Component component = tabs.getComponentAt(index);
+            if (component instanceof BudgetBase) {
+                ((BudgetBase) component).dispose();
+            }
+        }
+        shown.clear();
+        workspace.close();
+    }
+
+    private BudgetBase pageIn(int index) throws IOException {
+        String name = tabs.getTitleAt(index);
+        stopEditing();
+        // marks the budget most recently used, which may evict others
+        Workspace.Budget budget = workspace.open(name);
+        BudgetBase editor;
+        if (shown.get(name) == budget) {
+            editor = (BudgetBase) tabs.getComponentAt(index);
+        } else {
+            editor = show(budget);
+            paging = true;
+            try {
+                tabs.setComponentAt(index, editor);
+            } finally {
+                paging = false;
+            }
+        }
+        closeEvicted();
+        return editor;
+    }
+
+    private BudgetBase show(Workspace.Budget budget) {
+        BudgetBase editor = new BudgetBase(topLevelFrame, budget);
+        if (exchangeRates != null) {
+            editor.setExchangeRates(exchangeRates);
+        }
+        shown.put(budget.getName(), budget);
+        return editor;
+    }
+
+    // Before the workspace may evict and save a budget, commit every edit still in a cell editor.
+    private void stopEditing() {
+        for (int index = 0; index < tabs.getTabCount(); index++) {
+            Component component = tabs.getComponentAt(index);
+            if (component instanceof BudgetBase) {
+                ((BudgetBase) component).stopEditing();
+            }
+        }
+    }
+
+    // Evicted budgets were saved by the workspace; their editors must not write to them again.
+    private void closeEvicted() {
+        for (int index = 0; index < tabs.getTabCount(); index++) {
+            Workspace.Budget budget = shown.get(tabs.getTitleAt(index));
+            if (budget != null && !budget.isResident()) {
+                ((BudgetBase) tabs.getComponentAt(index)).dispose();
+                shown.remove(budget.getName());
+                paging = true;
+                try {
+                    tabs.setComponentAt(index, new JPanel());
+                } finally {
+                    paging = false;
+                }
+            }
+        }
+    }
+
+    private void select(int index) {
+        paging = true;
+        try {
+            tabs.setSelectedIndex(index);
+        } finally {
+            paging = false;
+        }
+    }
+
+    private void updateSelector() {
+        budgetSelector.setModel(new DefaultComboBoxModel<>(workspace.getNames().toArray(new String[0])));
+    }
+}
@@ -0,0 +1,67 @@
+package site.aberdeen;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AmountParserTest {
+
+    private final AmountParser us = new AmountParser(Locale.US);
+    private final AmountParser germany = new AmountParser(Locale.GERMANY);
+
+    @Test
+    void testPlainAndGroupedAmounts() {
+        assertParsed(us, "42.5", 4250);
+        assertParsed(us, "1,234,567.89", 123456789);
+        assertParsed(us, "1,234", 123400);
+        assertParsed(us, "  7 ", 700);
+        assertParsed(germany, "1.234,56", 123456);
+        assertParsed(germany, "1234,5", 123450);
+    }
+
+    @Test
+    void testCurrencySymbolsAndNegatives() {
+        assertParsed(us, "$1,234.50", 123450);
+        assertParsed(us, "($1,234.50)", -123450);
+        assertParsed(us, "-$5", -500);
+        assertParsed(us, "$-5", -500);
+        assertParsed(us, "USD 12", 1200);
+        assertParsed(us, "12.00-", -1200);
+        assertParsed(germany, "1.234,50 €", 123450);
+        assertParsed(germany, "-3,10 EUR", -310);
+    }
+
+    @Test
+    void testCanonicalFormatParsesInAnyLocale() {
+        assertParsed(germany, Money.toString(123456), 123456);
+        assertParsed(new AmountParser(Locale.FRANCE), "1 234,5", 123450);
+        assertParsed(new AmountParser(Locale.FRANCE), Money.toString(-9905), -9905);
+    }
+
+    @Test
+    void testBadInputReportsStatus() {
+        assertEquals(AmountParser.EMPTY, us.parse("   "));
+        assertEquals(AmountParser.MALFORMED, us.parse("abc"));
+        assertEquals(AmountParser.MALFORMED, us.parse("12,34,56"));
+        assertEquals(AmountParser.MALFORMED, us.parse("1.2.3"));
+        assertEquals(AmountParser.MALFORMED, us.parse("(12"));
+        assertEquals(AmountParser.MALFORMED, us.parse("$"));
+        assertEquals(AmountParser.OVERFLOW, us.parse("123456789012345678901"));
+        assertEquals(0L, us.getValue());
+        assertEquals(-1L, us.valueOr("nope", -1));
+    }
+
+    @Test
+    void testParsesSubrange() {
+        String line = "2024-01-05,Coffee,-3.75,GBP";
+        assertEquals(AmountParser.OK, us.parse(line, 18, 23));
+        assertEquals(-375L, us.getValue());
+    }
+
+    private static void assertParsed(AmountParser parser, String text, long expected) {
+        assertEquals(AmountParser.OK, parser.parse(text), text);
+        assertEquals(expected, parser.getValue(), text);
+    }
+}
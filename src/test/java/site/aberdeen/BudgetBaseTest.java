@@ -1,17 +1,23 @@
 package site.aberdeen;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
 import javax.swing.*;
 import java.awt.*;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.CountDownLatch;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 class BudgetBaseTest {
 
+    private JFrame frame;
     private BudgetBase budgetBase;
     private CountDownLatch latch;
 
@@ -20,7 +26,7 @@ class BudgetBaseTest {
         latch = new CountDownLatch(1);
 
         SwingUtilities.invokeLater(() -> {
-            JFrame frame = new JFrame();
+            frame = new JFrame();
             frame.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
             budgetBase = new BudgetBase(frame);
             frame.setContentPane(budgetBase);
@@ -37,14 +43,20 @@ class BudgetBaseTest {
         }
     }
 
+    @AfterEach
+    void tearDown() throws Exception {
+        SwingUtilities.invokeAndWait(() -> frame.dispose());
+        assertTrue(budgetBase.getRecalculator().isShutdown());
+    }
+
     @Test
     void testGetTextFieldValueWithValidNumber() {
         JTextField mockTextField = Mockito.mock(JTextField.class);
         Mockito.when(mockTextField.getText()).thenReturn("42.5");
 
-        double result = budgetBase.getTextFieldValue(mockTextField);
+        long result = budgetBase.getTextFieldValue(mockTextField);
 
-        assertEquals(42.5, result);
+        assertEquals(4250L, result);
         // Make sure that the text field content is not modified
         Mockito.verify(mockTextField, Mockito.never()).setText(Mockito.anyString());
     }
@@ -54,25 +66,25 @@ class BudgetBaseTest {
         JTextField mockTextField = Mockito.mock(JTextField.class);
         Mockito.when(mockTextField.getText()).thenReturn("");
 
-        double result = budgetBase.getTextFieldValue(mockTextField);
+        long result = budgetBase.getTextFieldValue(mockTextField);
 
-        assertEquals(0.0, result);
-        Mockito.verify(mockTextField, Mockito.times(1)).setText("0");
+        assertEquals(0L, result);
+        Mockito.verify(mockTextField, Mockito.never()).setText(Mockito.anyString());
     }
 
     @Test
     void testCalculateAllWithDifferentValues() {
-        JTextField[] incomeFields = budgetBase.getIncomeFields();
-        JTextField[] spendingFields = budgetBase.getSpendingFields();
+        JTable incomeTable = budgetBase.getIncomeTable();
+        JTable spendingTable = budgetBase.getSpendingTable();
 
-        // Set different values for income fields
-        for (int i = 0; i < incomeFields.length; i++) {
-            incomeFields[i].setText(String.valueOf((i + 1) * 2.5));  // Use different values
+        // Set different values for income rows
+        for (int i = 0; i < incomeTable.getRowCount(); i++) {
+            setAmount(incomeTable, i, String.valueOf((i + 1) * 2.5));  // Use different values
         }
 
-        // Set different values for spending fields
-        for (int i = 0; i < spendingFields.length; i++) {
-            spendingFields[i].setText(String.valueOf((i + 1) * 1.5));  // Use different values
+        // Set different values for spending rows
+        for (int i = 0; i < spendingTable.getRowCount(); i++) {
+            setAmount(spendingTable, i, String.valueOf((i + 1) * 1.5));  // Use different values
         }
 
         // Set different granularity for income, spending, and overall
@@ -96,15 +108,15 @@ class BudgetBaseTest {
     @Test
     void testCalculateAllScenario() {
         // Test the calculateAll method
-        JTextField[] incomeFields = budgetBase.getIncomeFields();
-        JTextField[] spendingFields = budgetBase.getSpendingFields();
+        JTable incomeTable = budgetBase.getIncomeTable();
+        JTable spendingTable = budgetBase.getSpendingTable();
 
-        for (JTextField field : incomeFields) {
-            field.setText("10.0");
+        for (int i = 0; i < incomeTable.getRowCount(); i++) {
+            setAmount(incomeTable, i, "10.0");
         }
 
-        for (JTextField field : spendingFields) {
-            field.setText("5.0");
+        for (int i = 0; i < spendingTable.getRowCount(); i++) {
+            setAmount(spendingTable, i, "5.0");
         }
 
         budgetBase.calculateAll();
@@ -118,40 +130,171 @@ class BudgetBaseTest {
     void testSaveStateAndUndo() {
         // Test the saveState and undo functionality
 
-        // Add some values to the fields
-        JTextField[] incomeFields = budgetBase.getIncomeFields();
-        for (int i = 0; i < incomeFields.length; i++) {
-            incomeFields[i].setText(String.valueOf(i + 1));
+        // Add some values to the rows
+        JTable incomeTable = budgetBase.getIncomeTable();
+        for (int i = 0; i < incomeTable.getRowCount(); i++) {
+            setAmount(incomeTable, i, String.valueOf(i + 1));
         }
 
         // Save the state
         budgetBase.saveState();
 
         // Modify the values
-        for (JTextField field : incomeFields) {
-            field.setText("0");
+        for (int i = 0; i < incomeTable.getRowCount(); i++) {
+            setAmount(incomeTable, i, "0");
         }
 
         // Undo and check if the values are restored
         budgetBase.undo();
 
-        for (int i = 0; i < incomeFields.length; i++) {
-            assertEquals(String.format("%.1f", i + 1.0), incomeFields[i].getText());
+        for (int i = 0; i < incomeTable.getRowCount(); i++) {
+            assertEquals(String.format("%.2f", i + 1.0), getAmount(incomeTable, i));
         }
     }
 
+    @Test
+    void testRedoAfterUndo() {
+        JTable incomeTable = budgetBase.getIncomeTable();
+        setAmount(incomeTable, 0, "5");
+        budgetBase.saveState();
+
+        setAmount(incomeTable, 0, "8");
+        budgetBase.undo();
+        assertEquals("5.00", getAmount(incomeTable, 0));
+
+        budgetBase.redo();
+        assertEquals("8.00", getAmount(incomeTable, 0));
+        assertEquals("8.00", budgetBase.getTotalIncomeField().getText());
+    }
+
+    @Test
+    void testJumpToAbandonedBranch() {
+        JTable incomeTable = budgetBase.getIncomeTable();
+        setAmount(incomeTable, 0, "5");
+        budgetBase.saveState();
+        int abandoned = budgetBase.getVersions().getCurrent();
+
+        budgetBase.undo();
+        setAmount(incomeTable, 1, "7");
+        budgetBase.saveState();
+        awaitRecalculation();
+        assertEquals("7.00", budgetBase.getTotalIncomeField().getText());
+
+        budgetBase.jumpTo(abandoned);
+        assertEquals("5.00", getAmount(incomeTable, 0));
+        assertEquals("0.00", getAmount(incomeTable, 1));
+        assertEquals("5.00", budgetBase.getTotalIncomeField().getText());
+
+        budgetBase.undo();
+        assertEquals("7.00", getAmount(incomeTable, 1));
+    }
+
+    @Test
+    void testAddAndRemoveLines() {
+        LineItems income = budgetBase.getModel().getIncomeItems();
+        JTable incomeTable = budgetBase.getIncomeTable();
+        setAmount(incomeTable, 0, "10");
+
+        for (int i = 0; i < 1000; i++) {
+            income.add("Extra" + i, 100);
+        }
+        assertEquals(1003, incomeTable.getRowCount());
+        awaitRecalculation();
+        assertEquals("1010.00", budgetBase.getTotalIncomeField().getText());
+
+        income.remove(3, 1002);
+        assertEquals(3, incomeTable.getRowCount());
+        awaitRecalculation();
+        assertEquals("10.00", budgetBase.getTotalIncomeField().getText());
+    }
+
+    @Test
+    void testUndoImportWithUnmatchedTransactions() {
+        JTable incomeTable = budgetBase.getIncomeTable();
+        setAmount(incomeTable, 0, "10");
+        budgetBase.saveState();
+        BudgetModel model = budgetBase.getModel();
+        BudgetState imported = new BudgetState(new long[]{Money.ofUnits(5), 0, 0, Money.ofUnits(7)},
+                new long[]{Money.ofUnits(3), 0, 0, Money.ofUnits(4)});
+
+        budgetBase.addImportedLines("statement.csv", imported);
+
+        assertEquals(4, model.getIncomeItems().size());
+        assertEquals("statement.csv", model.getSpendingItems().getName(3));
+        assertEquals(Money.ofUnits(15), model.getIncomeItems().get(0));
+        assertEquals(Money.ofUnits(7), model.getIncomeItems().get(3));
+        assertEquals(Money.ofUnits(3), model.getSpendingItems().get(0));
+        assertEquals(Money.ofUnits(4), model.getSpendingItems().get(3));
+
+        budgetBase.undo();
+        assertEquals(Money.ofUnits(10), model.getIncomeItems().get(0));
+        assertEquals(0, model.getIncomeItems().get(3));
+        assertEquals(0, model.getSpendingItems().get(0));
+        assertEquals(0, model.getSpendingItems().get(3));
+
+        budgetBase.redo();
+        assertEquals(Money.ofUnits(15), model.getIncomeItems().get(0));
+        assertEquals(Money.ofUnits(4), model.getSpendingItems().get(3));
+    }
+
+    @Test
+    void testLedgerDrivesTotals() throws IOException {
+        Ledger ledger = new Ledger();
+        for (int day = 0; day < 7 * 52 * 2; day++) {
+            ledger.addIncome(day, 1000);
+            ledger.addSpending(day, 400);
+        }
+        setAmount(budgetBase.getIncomeTable(), 0, "99");
+        budgetBase.setLedger(ledger);
+
+        assertEquals("70.00", budgetBase.getTotalIncomeField().getText());
+        assertEquals("28.00", budgetBase.getTotalSpendingField().getText());
+        assertEquals("42.00", budgetBase.getOverallField().getText());
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        budgetBase.createExporter().export(Channels.newChannel(report), ReportExporter.Format.CSV);
+        assertTrue(report.toString(StandardCharsets.UTF_8).contains("\r\nIncome,70.00,"));
+        assertTrue(report.toString(StandardCharsets.UTF_8).contains("\r\nCash flow,42.00,"));
+
+        budgetBase.setLedger(null);
+        assertEquals("99.00", budgetBase.getTotalIncomeField().getText());
+    }
+
+    @Test
+    void testReportingCurrencyConvertsTotals() {
+        ExchangeRates rates = new ExchangeRates(new String[]{"USD", "EUR"}, new int[]{0}, new double[]{1, 1.5});
+        setAmount(budgetBase.getIncomeTable(), 0, "100");
+        setAmount(budgetBase.getIncomeTable(), 1, "10");
+        budgetBase.getIncomeTable().getModel().setValueAt("eur", 0, LineItemTableModel.CURRENCY_COLUMN);
+        budgetBase.getIncomeTable().getModel().setValueAt("USD", 1, LineItemTableModel.CURRENCY_COLUMN);
+        budgetBase.setExchangeRates(rates);
+        budgetBase.calculateAll();
+        assertEquals("110.00", budgetBase.getTotalIncomeField().getText());
+
+        budgetBase.getReportingCurrency().setSelectedItem("USD");
+        assertEquals("160.00", budgetBase.getTotalIncomeField().getText());
+        budgetBase.getReportingCurrency().setSelectedItem("EUR");
+        assertEquals("106.67", budgetBase.getTotalIncomeField().getText());
+        budgetBase.getReportingCurrency().setSelectedItem("");
+        assertEquals("110.00", budgetBase.getTotalIncomeField().getText());
+
+        budgetBase.getIncomeTable().getModel().setValueAt("JPY", 1, LineItemTableModel.CURRENCY_COLUMN);
+        budgetBase.getReportingCurrency().setSelectedItem("USD");
+        assertEquals(BudgetBase.UNKNOWN_TOTAL, budgetBase.getTotalIncomeField().getText());
+        assertEquals("No JPY to USD rate", budgetBase.getTotalIncomeField().getToolTipText());
+    }
+
     @Test
     void testCalculateAllScenario0() {
         // Test the calculateAll method
-        JTextField[] incomeFields = budgetBase.getIncomeFields();
-        JTextField[] spendingFields = budgetBase.getSpendingFields();
+        JTable incomeTable = budgetBase.getIncomeTable();
+        JTable spendingTable = budgetBase.getSpendingTable();
 
-        for (JTextField field : incomeFields) {
-            field.setText("150.0");
+        for (int i = 0; i < incomeTable.getRowCount(); i++) {
+            setAmount(incomeTable, i, "150.0");
         }
 
-        for (JTextField field : spendingFields) {
-            field.setText("10.0");
+        for (int i = 0; i < spendingTable.getRowCount(); i++) {
+            setAmount(spendingTable, i, "10.0");
         }
 
         budgetBase.getIncomeGranularity().setSelectedItem(TimePeriod.MONTHLY);
@@ -217,17 +360,17 @@ class BudgetBaseTest {
     private void setValuesAndGranularities(double[] incomeValues, double[] spendingValues,
                                            TimePeriod incomeGranularity, TimePeriod expenseGranularity,
                                            TimePeriod overallGranularity) {
-        JTextField[] incomeFields = budgetBase.getIncomeFields();
-        JTextField[] spendingFields = budgetBase.getSpendingFields();
+        JTable incomeTable = budgetBase.getIncomeTable();
+        JTable spendingTable = budgetBase.getSpendingTable();
 
-        // Set values for income fields
-        for (int i = 0; i < incomeFields.length; i++) {
-            incomeFields[i].setText(String.valueOf(incomeValues[i]));
+        // Set values for income rows
+        for (int i = 0; i < incomeTable.getRowCount(); i++) {
+            setAmount(incomeTable, i, String.valueOf(incomeValues[i]));
         }
 
-        // Set values for spending fields
-        for (int i = 0; i < spendingFields.length; i++) {
-            spendingFields[i].setText(String.valueOf(spendingValues[i]));
+        // Set values for spending rows
+        for (int i = 0; i < spendingTable.getRowCount(); i++) {
+            setAmount(spendingTable, i, String.valueOf(spendingValues[i]));
         }
 
         // Set granularities
@@ -239,4 +382,21 @@ class BudgetBaseTest {
         budgetBase.calculateAll();
     }
 
+    private void awaitRecalculation() {
+        try {
+            assertTrue(budgetBase.getRecalculator().awaitPublished(5000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for recalculation", e);
+        }
+    }
+
+    private void setAmount(JTable table, int row, String text) {
+        table.getModel().setValueAt(text, row, LineItemTableModel.AMOUNT_COLUMN);
+    }
+
+    private String getAmount(JTable table, int row) {
+        return (String) table.getModel().getValueAt(row, LineItemTableModel.AMOUNT_COLUMN);
+    }
+
 }
@@ -0,0 +1,68 @@
+package site.aberdeen;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BudgetCliTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testPrintsTotalsForEveryPeriod() throws IOException {
+        Path budget = write("a.budget", "# household\n"
+                + "period income monthly\n"
+                + "income 1,500.00 Wages\n"
+                + "income 150 Sales\n"
+                + "\n"
+                + "spending 10.0 Food\n"
+                + "spending 5 Bus fare\n");
+        StringWriter out = new StringWriter();
+
+        assertEquals(BudgetCli.EXIT_OK, new BudgetCli().run(new String[]{budget.toString()}, out));
+
+        assertEquals(budget + "\tweekly\t380.77\t15.00\t365.77\n"
+                + budget + "\tmonthly\t1650.00\t65.00\t1585.00\n"
+                + budget + "\tyearly\t19800.00\t780.00\t19020.00\n", out.toString());
+    }
+
+    @Test
+    void testInvalidSourceIsReportedAndOthersStillRun() throws IOException {
+        Path bad = write("bad.budget", "income 10\nspending ten\n");
+        Path good = write("good.budget", "spending 52\n");
+        StringWriter out = new StringWriter();
+
+        int status = new BudgetCli().run(new String[]{bad.toString(), good.toString()}, out);
+
+        assertEquals(BudgetCli.EXIT_INVALID_INPUT, status);
+        assertTrue(out.toString().startsWith(good + "\tweekly\t0.00\t52.00\t-52.00\n"));
+        assertFalse(out.toString().contains(bad.toString()));
+    }
+
+    @Test
+    void testMissingSourceIsReportedAndOthersStillRun() throws IOException {
+        Path missing = directory.resolve("missing.budget");
+        Path bad = write("bad.budget", "spending ten\n");
+        Path good = write("good.budget", "income 52\n");
+        StringWriter out = new StringWriter();
+
+        int status = new BudgetCli().run(new String[]{missing.toString(), bad.toString(), good.toString()}, out);
+
+        assertEquals(BudgetCli.EXIT_IO_ERROR, status);
+        assertTrue(out.toString().startsWith(good + "\tweekly\t52.00\t0.00\t52.00\n"));
+        assertFalse(out.toString().contains(missing.toString()));
+    }
+
+    private Path write(String name, String content) throws IOException {
+        Path path = directory.resolve(name);
+        Files.write(path, content.getBytes());
+        return path;
+    }
+}
@@ -0,0 +1,40 @@
+package site.aberdeen;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BudgetEngineTest {
+
+    @Test
+    void testCalculateBatchWithUnevenLineCounts() {
+        long[] incomeValues = {1000, 1000, 1000, 15000, 15000};
+        int[] incomeOffsets = {0, 3, 5};
+        long[] spendingValues = {500, 500, 500, 1000, 1000, 1000};
+        int[] spendingOffsets = {0, 3, 6};
+        byte[] incomePeriods = {(byte) TimePeriod.WEEKLY.ordinal(), (byte) TimePeriod.MONTHLY.ordinal()};
+        byte[] spendingPeriods = {(byte) TimePeriod.WEEKLY.ordinal(), (byte) TimePeriod.WEEKLY.ordinal()};
+        byte[] overallPeriods = {(byte) TimePeriod.WEEKLY.ordinal(), (byte) TimePeriod.WEEKLY.ordinal()};
+
+        long[] totalIncome = new long[2];
+        long[] totalSpending = new long[2];
+        long[] cashFlow = new long[2];
+
+        BudgetEngine.calculate(2, incomeValues, incomeOffsets, spendingValues, spendingOffsets,
+                incomePeriods, spendingPeriods, overallPeriods, totalIncome, totalSpending, cashFlow);
+
+        assertEquals(3000L, totalIncome[0]);
+        assertEquals(1500L, totalSpending[0]);
+        assertEquals(1500L, cashFlow[0]);
+        assertEquals(30000L, totalIncome[1]);
+        assertEquals(3000L, totalSpending[1]);
+        assertEquals(3923L, cashFlow[1]);
+    }
+
+    @Test
+    void testCalculateRejectsDecreasingOffsets() {
+        assertThrows(IllegalArgumentException.class, () -> BudgetEngine.calculate(2,
+                new long[2], new int[]{0, 2, 1}, new long[2], new int[]{0, 1, 2},
+                new byte[2], new byte[2], new byte[2], new long[2], new long[2], new long[2]));
+    }
+}
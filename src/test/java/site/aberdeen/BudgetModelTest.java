@@ -0,0 +1,109 @@
+package site.aberdeen;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BudgetModelTest {
+
+    @Test
+    void testSettingLinesUpdatesRunningTotals() {
+        BudgetModel model = new BudgetModel(3, 3);
+        model.getIncomeItems().set(0, 1000);
+        model.getIncomeItems().set(1, 1500);
+        model.getIncomeItems().set(0, 800);
+        model.getSpendingItems().set(2, 1900);
+
+        assertEquals(2300L, model.getTotalIncome());
+        assertEquals(1900L, model.getTotalSpending());
+        assertEquals(400L, model.getCashFlow());
+    }
+
+    @Test
+    void testPeriodsOnlyAffectCashFlow() {
+        BudgetModel model = new BudgetModel(1, 1);
+        model.getIncomeItems().set(0, 4500);
+        model.getSpendingItems().set(0, 2500);
+        model.setPeriods(TimePeriod.MONTHLY, TimePeriod.YEARLY, TimePeriod.MONTHLY);
+
+        assertEquals(4500L, model.getTotalIncome());
+        assertEquals(4292L, model.getCashFlow());
+    }
+
+    @Test
+    void testListenersAreNotifiedOnlyOnChange() {
+        BudgetModel model = new BudgetModel(2, 0);
+        int[] notifications = new int[1];
+        model.addListener(m -> notifications[0]++);
+
+        model.getIncomeItems().set(0, 100);
+        model.getIncomeItems().set(0, 100);
+        model.setValues(new long[]{1, 2});
+
+        assertEquals(2, notifications[0]);
+        assertEquals(3L, model.getTotalIncome());
+        assertArrayEquals(new long[]{1, 2}, model.getValues());
+    }
+
+    @Test
+    void testInsertAndRemoveKeepTotals() {
+        LineItems items = new LineItems("Wages");
+        items.set(0, 500);
+        for (int i = 0; i < 20000; i++) {
+            items.add("Category" + i, 1);
+        }
+        items.insert(1, "Bonus", 250);
+        assertEquals(20002, items.size());
+        assertEquals(20750L, items.getTotal());
+
+        items.remove(2, 20001);
+        assertEquals(2, items.size());
+        assertEquals("Bonus", items.getName(1));
+        assertEquals(750L, items.getTotal());
+    }
+
+    @Test
+    void testStateIsReusedUntilALineChanges() {
+        BudgetModel model = new BudgetModel(1, 1);
+        BudgetState state = model.getState();
+        model.setPeriods(TimePeriod.MONTHLY, TimePeriod.WEEKLY, TimePeriod.WEEKLY);
+        assertSame(state, model.getState());
+
+        model.getSpendingItems().set(0, 300);
+        assertNotSame(state, model.getState());
+        assertArrayEquals(new long[]{300}, model.getState().getSpendingValues());
+    }
+
+    @Test
+    void testTotalsAreConvertedIntoReportingCurrency() {
+        ExchangeRates rates = new ExchangeRates(new String[]{"USD", "EUR", "GBP"},
+                new int[]{0, 30}, new double[]{1, 1.1, 1.25, 1, 1.2, 1.25});
+        BudgetModel model = new BudgetModel(new LineItems("Wages", "Rent", "Dividends"), new LineItems("Rent"));
+        model.getIncomeItems().set(0, 100000);
+        model.getIncomeItems().set(1, 50000);
+        model.getIncomeItems().set(2, 1000);
+        model.getIncomeItems().setCurrency(1, "eur");
+        model.getIncomeItems().setCurrency(2, "JPY");
+        model.getSpendingItems().set(0, 40000);
+        model.getSpendingItems().setCurrency(0, "GBP");
+
+        assertEquals(151000, model.getTotalIncome());
+        model.setReportingCurrency(rates, "USD", 10);
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, model::getTotalIncome);
+        assertEquals("No JPY to USD rate", e.getMessage());
+        model.getIncomeItems().setCurrency(2, null);
+        assertEquals(100000 + 55000 + 1000, model.getTotalIncome());
+        assertEquals(50000, model.getTotalSpending());
+        model.setReportingCurrency(rates, "USD", 45);
+        assertEquals(100000 + 60000 + 1000, model.getTotalIncome());
+        model.getIncomeItems().set(1, 60000);
+        assertEquals(100000 + 72000 + 1000, model.getTotalIncome());
+        model.setReportingCurrency(rates, "GBP", 45);
+        assertEquals(100000 + 57600 + 1000, model.getTotalIncome());
+        assertEquals(40000, model.getTotalSpending());
+        model.setReportingCurrency(rates, null, 45);
+        assertEquals(161000, model.getTotalIncome());
+        assertThrows(IllegalArgumentException.class, () -> model.setReportingCurrency(rates, "JPY", 45));
+        assertThrows(IllegalArgumentException.class, () -> model.getIncomeItems().setCurrency(0, "euro"));
+    }
+}
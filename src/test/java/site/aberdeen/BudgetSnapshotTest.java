@@ -0,0 +1,163 @@
+package site.aberdeen;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BudgetSnapshotTest {
+
+    @Test
+    void testListenersReceivePreviousAndCurrentSnapshots() {
+        BudgetModel model = new BudgetModel(2, 1);
+        List<BudgetSnapshot[]> changes = new ArrayList<>();
+        model.addSnapshotListener((previous, current) -> changes.add(new BudgetSnapshot[]{previous, current}));
+
+        BudgetSnapshot before = model.getSnapshot();
+        model.getIncomeItems().set(1, 700);
+        model.getIncomeItems().set(1, 700);
+        model.getSpendingItems().setName(0, "Rent");
+        model.setPeriods(TimePeriod.MONTHLY, TimePeriod.WEEKLY, TimePeriod.WEEKLY);
+
+        assertEquals(3, changes.size());
+        assertSame(before, changes.get(0)[0]);
+        assertEquals(0, before.getTotalIncome());
+        assertEquals(700, changes.get(0)[1].getTotalIncome());
+        assertEquals("", changes.get(1)[0].getSpendingName(0));
+        assertEquals("Rent", changes.get(1)[1].getSpendingName(0));
+        assertEquals(TimePeriod.MONTHLY, model.getSnapshot().getIncomePeriod());
+        assertSame(model.getSnapshot(), changes.get(2)[1]);
+        assertSame(model.getState(), model.getSnapshot().getState());
+    }
+
+    @Test
+    void testConvertedTotalsFollowLineEdits() {
+        ExchangeRates rates = new ExchangeRates(new String[]{"USD", "EUR", "GBP"},
+                new int[]{0}, new double[]{1, 1.1, 1.25});
+        String[] currencies = {null, "USD", "EUR", "GBP"};
+        BudgetModel model = new BudgetModel(20, 20);
+        model.setReportingCurrency(rates, "EUR", 0);
+        Random random = new Random(23);
+        for (int edit = 0; edit < 2000; edit++) {
+            LineItems items = random.nextBoolean() ? model.getIncomeItems() : model.getSpendingItems();
+            int line = random.nextInt(items.size());
+            if (random.nextInt(4) == 0) {
+                items.setCurrency(line, currencies[random.nextInt(currencies.length)]);
+            } else {
+                items.set(line, random.nextInt(100000));
+            }
+
+            BudgetSnapshot rebuilt = BudgetSnapshot.of(model.getIncomeItems(), model.getSpendingItems(),
+                    TimePeriod.WEEKLY, TimePeriod.WEEKLY, TimePeriod.WEEKLY);
+            assertEquals(rebuilt.getTotalIncome(rates, "EUR", 0), model.getTotalIncome());
+            assertEquals(rebuilt.getTotalSpending(rates, "EUR", 0), model.getTotalSpending());
+        }
+    }
+
+    @Test
+    void testUnquotedCurrencyFailsConversion() {
+        ExchangeRates rates = new ExchangeRates(new String[]{"USD", "EUR"}, new int[]{0}, new double[]{1, 1.1});
+        BudgetModel model = new BudgetModel(new LineItems("Wages", "Rent"), new LineItems());
+        model.getIncomeItems().setCurrency(1, "JPY");
+        model.setReportingCurrency(rates, "EUR", 0);
+
+        assertEquals(0, model.getTotalIncome());
+        model.getIncomeItems().set(1, 1000000);
+        assertThrows(IllegalArgumentException.class, model::getTotalIncome);
+        assertThrows(IllegalArgumentException.class, () -> model.getSnapshot().getTotalIncome(rates, "EUR", 0));
+        model.getIncomeItems().set(1, 0);
+        assertEquals(0, model.getTotalIncome());
+    }
+
+    @Test
+    void testStructuralChangesArePublished() {
+        BudgetModel model = new BudgetModel(new LineItems("Wages"), new LineItems());
+        model.getIncomeItems().add("Bonus", 250);
+        model.getSpendingItems().add("Food", 90);
+        model.getIncomeItems().remove(0, 0);
+
+        BudgetSnapshot snapshot = model.getSnapshot();
+        assertEquals(1, snapshot.getIncomeCount());
+        assertEquals("Bonus", snapshot.getIncomeName(0));
+        assertEquals(250, snapshot.getTotalIncome());
+        assertEquals(90, snapshot.getSpendingValue(0));
+        assertEquals(160, snapshot.getCashFlow());
+    }
+
+    @Test
+    void testSetValuesPublishesOneSnapshot() {
+        BudgetModel model = new BudgetModel(2, 2);
+        List<BudgetSnapshot[]> changes = new ArrayList<>();
+        model.addSnapshotListener((previous, current) -> changes.add(new BudgetSnapshot[]{previous, current}));
+        int[] modelChanges = new int[1];
+        model.addListener(m -> modelChanges[0]++);
+        BudgetSnapshot before = model.getSnapshot();
+
+        model.setValues(new long[]{100, 200, 30, 40});
+
+        assertEquals(1, changes.size());
+        assertEquals(1, modelChanges[0]);
+        assertSame(before, changes.get(0)[0]);
+        BudgetSnapshot after = changes.get(0)[1];
+        assertSame(model.getSnapshot(), after);
+        assertEquals(300, after.getTotalIncome());
+        assertEquals(70, after.getTotalSpending());
+        assertEquals(40, after.getSpendingValue(1));
+    }
+
+    @Test
+    void testEditSharesTheOtherSection() {
+        BudgetModel model = new BudgetModel(new LineItems("Wages"), new LineItems("Rent", "Food"));
+        BudgetSnapshot before = model.getSnapshot();
+
+        model.getSpendingItems().set(1, 250);
+        BudgetSnapshot after = model.getSnapshot();
+
+        assertTrue(before.sharesIncomeLines(after));
+        assertFalse(before.sharesSpendingLines(after));
+        model.setPeriods(TimePeriod.MONTHLY, TimePeriod.MONTHLY, TimePeriod.MONTHLY);
+        assertTrue(after.sharesSpendingLines(model.getSnapshot()));
+    }
+
+    @Test
+    void testConcurrentReadersSeeConsistentSnapshots() throws InterruptedException {
+        BudgetModel model = new BudgetModel(500, 500);
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            while (!done.get()) {
+                BudgetSnapshot snapshot = model.getSnapshot();
+                long income = 0;
+                for (long value : snapshot.getState().getIncomeValues()) {
+                    income += value;
+                }
+                long spending = 0;
+                for (long value : snapshot.getState().getSpendingValues()) {
+                    spending += value;
+                }
+                if (income != snapshot.getTotalIncome() || spending != snapshot.getTotalSpending()) {
+                    failure.set(income + " / " + spending + " / " + snapshot.getTotalIncome());
+                }
+            }
+        });
+        reader.start();
+
+        for (int round = 1; round <= 20_000; round++) {
+            int line = round % 500;
+            model.getIncomeItems().set(line, round);
+            model.getSpendingItems().set(line, round);
+            if (model.getSnapshot().getTotalIncome() != model.getTotalIncome()) {
+                fail("snapshot behind model");
+            }
+        }
+        done.set(true);
+        reader.join();
+
+        assertNull(failure.get());
+    }
+}
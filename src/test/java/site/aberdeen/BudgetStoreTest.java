@@ -0,0 +1,170 @@
+package site.aberdeen;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BudgetStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testJournaledEditsSurviveReopen() throws IOException {
+        Path path = directory.resolve("budget.dat");
+        BudgetModel model = new BudgetModel(new LineItems("Wages", "Sales"), new LineItems("Rent"));
+        EditHistory history = new EditHistory(model.getLineCount(), 16);
+        try (BudgetStore store = new BudgetStore(path)) {
+            assertNull(store.load(model));
+            store.compact(model, history);
+
+            edit(store, model, history, 0, 150000);
+            edit(store, model, history, 2, 90000);
+            assertTrue(store.append(BudgetStore.RECORD_CHECKPOINT, 0, 0));
+            history.checkpoint();
+            edit(store, model, history, 2, 95000);
+            store.appendPeriods(TimePeriod.MONTHLY, TimePeriod.MONTHLY, TimePeriod.YEARLY);
+        }
+
+        BudgetModel restored = new BudgetModel(new LineItems(), new LineItems());
+        EditHistory restoredHistory;
+        try (BudgetStore store = new BudgetStore(path)) {
+            restoredHistory = store.load(restored);
+            assertEquals(5, store.getJournalCount());
+        }
+
+        assertArrayEquals(new long[]{150000, 0, 95000}, restored.getValues());
+        assertEquals("Rent", restored.getSpendingItems().getName(0));
+        assertEquals(TimePeriod.YEARLY, restored.getOverallPeriod());
+
+        long[] values = restored.getValues();
+        assertTrue(restoredHistory.undo(values));
+        assertArrayEquals(new long[]{150000, 0, 90000}, values);
+        assertTrue(restoredHistory.undo(values));
+        assertArrayEquals(new long[]{0, 0, 0}, values);
+    }
+
+    @Test
+    void testLineCurrenciesSurviveReopen() throws IOException {
+        Path path = directory.resolve("budget.dat");
+        BudgetModel model = new BudgetModel(new LineItems("Wages", "Rent"), new LineItems("Holiday"));
+        model.getIncomeItems().setCurrency(1, "EUR");
+        model.getSpendingItems().setCurrency(0, "CHF");
+        try (BudgetStore store = new BudgetStore(path)) {
+            store.compact(model, new EditHistory(model.getLineCount(), 16));
+        }
+
+        BudgetModel restored = new BudgetModel(new LineItems(), new LineItems());
+        try (BudgetStore store = new BudgetStore(path)) {
+            store.load(restored);
+        }
+
+        assertNull(restored.getIncomeItems().getCurrency(0));
+        assertEquals("EUR", restored.getIncomeItems().getCurrency(1));
+        assertEquals("CHF", restored.getSnapshot().getSpendingCurrency(0));
+    }
+
+    @Test
+    void testFullJournalIsCompactedIntoSnapshot() throws IOException {
+        Path path = directory.resolve("budget.dat");
+        BudgetModel model = new BudgetModel(2, 1);
+        EditHistory history = new EditHistory(model.getLineCount(), 16);
+        try (BudgetStore store = new BudgetStore(path, 4)) {
+            store.compact(model, history);
+            for (int i = 1; i <= 10; i++) {
+                model.getIncomeItems().set(1, i * 100);
+                history.record(1, i * 100);
+                if (!store.append(BudgetStore.RECORD_SET, 1, i * 100)) {
+                    store.compact(model, history);
+                }
+            }
+            assertTrue(store.getJournalCount() < 4);
+        }
+
+        BudgetModel restored = new BudgetModel(0, 0);
+        try (BudgetStore store = new BudgetStore(path, 4)) {
+            store.load(restored);
+        }
+        assertArrayEquals(new long[]{0, 1000, 0}, restored.getValues());
+    }
+
+    @Test
+    void testJournalFromOlderSnapshotIsIgnored() throws IOException {
+        Path path = directory.resolve("budget.dat");
+        BudgetModel model = new BudgetModel(1, 1);
+        EditHistory history = new EditHistory(model.getLineCount(), 16);
+        Path journal = directory.resolve("budget.dat.journal");
+        byte[] staleJournal;
+        try (BudgetStore store = new BudgetStore(path)) {
+            store.compact(model, history);
+            edit(store, model, history, 0, 500);
+            store.flush();
+            staleJournal = Files.readAllBytes(journal);
+            store.compact(model, history);
+        }
+        Files.write(journal, staleJournal);
+
+        BudgetModel restored = new BudgetModel(0, 0);
+        try (BudgetStore store = new BudgetStore(path)) {
+            store.load(restored);
+            assertEquals(0, store.getJournalCount());
+        }
+        assertArrayEquals(new long[]{500, 0}, restored.getValues());
+    }
+
+    @Test
+    void testTornRecordEndsReplay() throws IOException {
+        Path path = directory.resolve("budget.dat");
+        BudgetModel model = new BudgetModel(1, 1);
+        EditHistory history = new EditHistory(model.getLineCount(), 16);
+        try (BudgetStore store = new BudgetStore(path)) {
+            store.compact(model, history);
+            edit(store, model, history, 0, 500);
+            edit(store, model, history, 1, 700);
+        }
+        try (FileChannel channel = FileChannel.open(directory.resolve("budget.dat.journal"), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0x7F}), 16 + 24 + 8);
+        }
+
+        BudgetModel restored = new BudgetModel(0, 0);
+        try (BudgetStore store = new BudgetStore(path)) {
+            store.load(restored);
+            assertEquals(1, store.getJournalCount());
+        }
+        assertArrayEquals(new long[]{500, 0}, restored.getValues());
+    }
+
+    @Test
+    void testCorruptSnapshotIsRejected() throws IOException {
+        Path path = directory.resolve("budget.dat");
+        try (BudgetStore store = new BudgetStore(path)) {
+            store.compact(new BudgetModel(1, 1), new EditHistory(2, 16));
+        }
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[20] ^= 1;
+        Files.write(path, bytes);
+
+        try (BudgetStore store = new BudgetStore(path)) {
+            assertThrows(IOException.class, () -> store.load(new BudgetModel(0, 0)));
+        }
+    }
+
+    private static void edit(BudgetStore store, BudgetModel model, EditHistory history, int line, long value) {
+        int incomeCount = model.getIncomeItems().size();
+        if (line < incomeCount) {
+            model.getIncomeItems().set(line, value);
+        } else {
+            model.getSpendingItems().set(line - incomeCount, value);
+        }
+        history.record(line, value);
+        assertTrue(store.append(BudgetStore.RECORD_SET, line, value));
+    }
+}
@@ -0,0 +1,79 @@
+package site.aberdeen;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CashFlowChartTest {
+
+    @Test
+    void testOnlyChangedTilesAreRedrawn() {
+        CashFlowChart chart = new CashFlowChart();
+        chart.setSize(2 * CashFlowChart.TILE_WIDTH, 200);
+        long[] series = randomWalk(300_000);
+        chart.setSeries(series);
+
+        paint(chart);
+        assertEquals(2, chart.getTilesRendered());
+        assertEquals(chart.getWidth(), chart.getContentWidth());
+
+        chart.setValue(1000, series[1001] == series[1000] ? series[1002] : series[1001]);
+        chart.setShares(BudgetSnapshot.of(new LineItems("Wages"), new LineItems("Rent", "Food"),
+                TimePeriod.MONTHLY, TimePeriod.MONTHLY, TimePeriod.MONTHLY));
+        paint(chart);
+        assertEquals(3, chart.getTilesRendered());
+
+        long[] edited = chart.getSeries();
+        edited[series.length - 1] = edited[series.length - 2];
+        chart.setSeries(edited);
+        paint(chart);
+        assertEquals(4, chart.getTilesRendered());
+    }
+
+    @Test
+    void testScrollingReusesTiles() {
+        CashFlowChart chart = new CashFlowChart();
+        chart.setSize(2 * CashFlowChart.TILE_WIDTH, 200);
+        chart.setSeries(randomWalk(100_000));
+        paint(chart);
+
+        chart.setPixelsPerPoint(1);
+        paint(chart);
+        long rendered = chart.getTilesRendered();
+        chart.scrollBy(CashFlowChart.TILE_WIDTH);
+        paint(chart);
+        chart.scrollBy(-CashFlowChart.TILE_WIDTH);
+        paint(chart);
+
+        assertEquals(0, chart.getScrollX());
+        assertEquals(rendered + 1, chart.getTilesRendered());
+        assertEquals(3, chart.getCachedTileCount());
+
+        chart.setPixelsPerPoint(0);
+        assertEquals(0, chart.getScrollX());
+        assertEquals(chart.getWidth(), chart.getContentWidth());
+    }
+
+    private static long[] randomWalk(int length) {
+        SplittableRandom random = new SplittableRandom(22);
+        long[] series = new long[length];
+        for (int i = 1; i < length; i++) {
+            series[i] = series[i - 1] + random.nextLong(-10_000, 10_001);
+        }
+        return series;
+    }
+
+    private static void paint(CashFlowChart chart) {
+        BufferedImage image = new BufferedImage(chart.getWidth(), chart.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            chart.paint(g);
+        } finally {
+            g.dispose();
+        }
+    }
+}
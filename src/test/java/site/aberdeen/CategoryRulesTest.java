@@ -0,0 +1,142 @@
+package site.aberdeen;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CategoryRulesTest {
+
+    @Test
+    void testFirstMatchingRuleWins() {
+        CategoryRules rules = new CategoryRules();
+        rules.addKeyword("hers", 0);
+        rules.addKeyword("she", 1);
+        rules.addKeyword("he", 2);
+        rules.addKeyword("rent", 3, Long.MIN_VALUE, -100000);
+        rules.addRegex("^card \\d{4} ", 4);
+        rules.addAmountRange(Long.MIN_VALUE, -1, 5);
+        rules.setFallback((description, cents) -> 6);
+
+        assertEquals(0, rules.classify("USHERS", -500));
+        assertEquals(1, rules.classify("ushe", -500));
+        assertEquals(2, rules.classify("The Grocer", -500));
+        assertEquals(3, rules.classify("Monthly RENT", -120000));
+        assertEquals(5, rules.classify("Monthly RENT", -5000));
+        assertEquals(4, rules.classify("Card 1234 coffee", -350));
+        assertEquals(5, rules.classify("Card 12 coffee", -350));
+        assertEquals(6, rules.classify("Refund", 350));
+        assertEquals(2, rules.classify("CafÉ HELLO €", 0));
+    }
+
+    @Test
+    void testCompiledMatchingAgreesWithRuleOrder() {
+        Random random = new Random(21);
+        String[] words = new String[400];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = randomText(random, 1 + random.nextInt(5), "abcde");
+        }
+        CategoryRules rules = new CategoryRules();
+        long[][] ranges = new long[words.length][];
+        for (int i = 0; i < words.length; i++) {
+            long minimum = random.nextInt(3) == 0 ? -1000 + random.nextInt(1000) : Long.MIN_VALUE;
+            ranges[i] = new long[]{minimum, Long.MAX_VALUE};
+            rules.addKeyword(words[i], i, minimum, Long.MAX_VALUE);
+        }
+        rules.addRegex("e{3}", words.length);
+        rules.setFallback((description, cents) -> -1);
+
+        for (int trial = 0; trial < 5000; trial++) {
+            String description = randomText(random, random.nextInt(30), "abcdeABCDE -");
+            long cents = -1000 + random.nextInt(2000);
+            String lower = description.toLowerCase(Locale.ROOT);
+            int expected = -1;
+            for (int i = 0; i < words.length && expected < 0; i++) {
+                if (lower.contains(words[i]) && cents >= ranges[i][0]) {
+                    expected = i;
+                }
+            }
+            if (expected < 0 && lower.contains("eee")) {
+                expected = words.length;
+            }
+            assertEquals(expected, rules.classify(description, cents), description);
+        }
+    }
+
+    @Test
+    void testThousandsOfKeywordsAgreeWithBruteForce() {
+        Random random = new Random(7);
+        CategoryRules rules = new CategoryRules();
+        String[] keywords = new String[5001];
+        for (int i = 0; i < 5000; i++) {
+            keywords[i] = randomText(random, 6 + random.nextInt(6), "abcdefghijklmnopqrstuvwxyz");
+            rules.addKeyword(keywords[i], i % 40);
+        }
+        keywords[5000] = "payroll";
+        rules.addKeyword("payroll", 40);
+        rules.setFallback((description, cents) -> -1);
+        String[] descriptions = new String[100_000];
+        for (int i = 0; i < descriptions.length; i++) {
+            String text = randomText(random, 30, "ABCDEFGHIJKLMNOPQRSTUVWXYZ 0123456789");
+            if (i % 3 == 0) {
+                text = text.substring(0, 12) + keywords[random.nextInt(keywords.length)].toUpperCase(Locale.ROOT)
+                        + text.substring(12);
+            }
+            descriptions[i] = "POS " + text + (i % 10 == 0 ? " PAYROLL" : "");
+        }
+
+        int[] categories = new int[descriptions.length];
+        for (int i = 0; i < descriptions.length; i++) {
+            categories[i] = rules.classify(descriptions[i], 100);
+        }
+
+        for (int i = 0; i < descriptions.length; i += 50) {
+            String lower = descriptions[i].toLowerCase(Locale.ROOT);
+            int expected = -1;
+            for (int k = 0; k < keywords.length && expected < 0; k++) {
+                if (lower.contains(keywords[k])) {
+                    expected = k < 5000 ? k % 40 : 40;
+                }
+            }
+            assertEquals(expected, categories[i], descriptions[i]);
+        }
+    }
+
+    @Test
+    void testReadRulesFile() throws IOException {
+        List<String> categories = Arrays.asList("Salary", null, "Housing", "Food");
+        String text = "# rules\n"
+                + "keyword Salary ACME payroll\n"
+                + "\n"
+                + "keyword Housing rent | -2000 -1000\n"
+                + "regex Food ^(grocer|market)\\b\n"
+                + "amount Food -50 -1\n";
+
+        CategoryRules rules = CategoryRules.read(new BufferedReader(new StringReader(text)), categories);
+
+        assertEquals(4, rules.size());
+        assertEquals(0, rules.classify("acme payroll jan", 150000));
+        assertEquals(2, rules.classify("RENT", -150000));
+        assertEquals(-1, rules.classify("RENT", -500000));
+        assertEquals(3, rules.classify("Market street", -500000));
+        assertEquals(3, rules.classify("Kiosk", -700));
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> CategoryRules.read(
+                new BufferedReader(new StringReader("keyword Salary x\nkeyword Travel y\n")), categories));
+        assertTrue(e.getMessage().startsWith("line 2:"), e.getMessage());
+    }
+
+    private static String randomText(Random random, int length, String alphabet) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,50 @@
+package site.aberdeen;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DownsamplingTest {
+
+    @Test
+    void testKeepsEndpointsAndPeaks() {
+        SplittableRandom random = new SplittableRandom(22);
+        long[] values = new long[100_000];
+        for (int i = 1; i < values.length; i++) {
+            values[i] = values[i - 1] + random.nextLong(-100, 101);
+        }
+        values[31_337] = 50_000_000;
+        values[77_777] = -50_000_000;
+
+        int[] kept = Downsampling.largestTriangleThreeBuckets(values, 0, values.length, 500);
+
+        assertEquals(500, kept.length);
+        assertEquals(0, kept[0]);
+        assertEquals(values.length - 1, kept[kept.length - 1]);
+        for (int i = 1; i < kept.length; i++) {
+            assertTrue(kept[i - 1] < kept[i]);
+        }
+        assertTrue(contains(kept, 31_337));
+        assertTrue(contains(kept, 77_777));
+    }
+
+    @Test
+    void testShortRangesAreKeptWhole() {
+        long[] values = {5, 1, 4, 1, 5, 9, 2, 6};
+
+        assertArrayEquals(new int[]{2, 3, 4, 5}, Downsampling.largestTriangleThreeBuckets(values, 2, 6, 4));
+        assertArrayEquals(new int[]{2, 3, 4, 5}, Downsampling.largestTriangleThreeBuckets(values, 2, 6, 10));
+        assertEquals(0, Downsampling.largestTriangleThreeBuckets(values, 3, 3, 10).length);
+    }
+
+    private static boolean contains(int[] values, int value) {
+        for (int v : values) {
+            if (v == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,107 @@
+package site.aberdeen;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EditHistoryTest {
+
+    @Test
+    void testUndoAndRedoRestoreCommittedValues() {
+        EditHistory history = new EditHistory(3, 16);
+        long[] values = {100, 200, 300};
+        assertTrue(history.commit(values));
+
+        values[1] = 0;
+        values[2] = 0;
+        assertTrue(history.commit(values));
+        assertFalse(history.commit(values));
+
+        assertTrue(history.undo(values));
+        assertArrayEquals(new long[]{100, 200, 300}, values);
+        assertTrue(history.undo(values));
+        assertArrayEquals(new long[]{0, 0, 0}, values);
+        assertFalse(history.undo(values));
+
+        assertTrue(history.redo(values));
+        assertTrue(history.redo(values));
+        assertArrayEquals(new long[]{100, 0, 0}, values);
+        assertFalse(history.redo(values));
+    }
+
+    @Test
+    void testCommitAfterUndoDiscardsRedo() {
+        EditHistory history = new EditHistory(1, 16);
+        long[] values = {5};
+        history.commit(values);
+        history.undo(values);
+
+        values[0] = 7;
+        history.commit(values);
+
+        assertFalse(history.canRedo());
+        assertTrue(history.undo(values));
+        assertArrayEquals(new long[]{0}, values);
+    }
+
+    @Test
+    void testOldestEditsAreDroppedAtCapacity() {
+        EditHistory history = new EditHistory(2, 4);
+        long[] values = new long[2];
+        for (int i = 1; i <= 100; i++) {
+            values[0] = i;
+            values[1] = -i;
+            history.commit(values);
+        }
+
+        assertEquals(4, history.size());
+        assertTrue(history.undo(values));
+        assertArrayEquals(new long[]{99, -99}, values);
+        assertTrue(history.undo(values));
+        assertArrayEquals(new long[]{98, -98}, values);
+        assertFalse(history.undo(values));
+    }
+
+    @Test
+    void testEditLargerThanCapacityClearsHistory() {
+        EditHistory history = new EditHistory(3, 2);
+        long[] values = {1, 0, 0};
+        history.commit(values);
+
+        values = new long[]{2, 3, 4};
+        assertTrue(history.commit(values));
+
+        assertFalse(history.canUndo());
+        assertArrayEquals(new long[]{2, 3, 4}, history.getCommittedValues());
+    }
+
+    @Test
+    void testRecordedLinesAreUndoneTogetherUntilCheckpoint() {
+        EditHistory history = new EditHistory(3, 16);
+        history.record(0, 100);
+        history.record(1, 200);
+        history.checkpoint();
+        history.record(0, 0);
+        history.record(2, 50);
+
+        long[] values = new long[3];
+        assertTrue(history.undo(values));
+        assertArrayEquals(new long[]{100, 200, 0}, values);
+        assertTrue(history.undo(values));
+        assertArrayEquals(new long[]{0, 0, 0}, values);
+    }
+
+    @Test
+    void testResetAcceptsNewLineCount() {
+        EditHistory history = new EditHistory(2, 16);
+        history.record(0, 5);
+        history.reset(new long[]{5, 0, 7});
+
+        assertEquals(3, history.getLineCount());
+        assertFalse(history.canUndo());
+        history.record(2, 9);
+        long[] values = new long[3];
+        assertTrue(history.undo(values));
+        assertArrayEquals(new long[]{5, 0, 7}, values);
+    }
+}
@@ -0,0 +1,107 @@
+package site.aberdeen;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExchangeRatesTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testRatesCarryForwardBetweenSnapshots() throws IOException {
+        ExchangeRates rates = ExchangeRates.read(new BufferedReader(new StringReader("# base USD\n"
+                + "date,USD,EUR,GBP\n"
+                + "2024-01-02,1,1.10,1.25\n"
+                + "2024-02-01,1,1.08,\n")));
+        int january = Ledger.epochDay(2024, 1, 2);
+        int february = Ledger.epochDay(2024, 2, 1);
+
+        assertArrayEquals(new String[]{"USD", "EUR", "GBP"}, rates.getCurrencies());
+        assertEquals(2, rates.getDateCount());
+        assertEquals(11000, rates.convert(10000, "EUR", "USD", january));
+        assertEquals(11000, rates.convert(10000, "EUR", "USD", february - 1));
+        assertEquals(10800, rates.convert(10000, "EUR", "USD", february + 100));
+        assertEquals(12500, rates.convert(10000, "GBP", "USD", february));
+        assertEquals(11000, rates.convert(10000, "EUR", "USD", january - 30));
+        assertEquals(8800, rates.convert(10000, "EUR", "GBP", january));
+        assertSame(rates.getFactors("GBP", january), rates.getFactors("GBP", january + 1));
+        assertThrows(IllegalArgumentException.class, () -> rates.convert(100, "JPY", "USD", january));
+    }
+
+    @Test
+    void testLoadMergesFilesInDirectory() throws IOException {
+        Files.write(directory.resolve("2023.csv"), ("date,EUR,USD\n2023-12-29,1,0.91\n")
+                .getBytes(StandardCharsets.UTF_8));
+        Files.write(directory.resolve("2024.csv"), ("date,USD,CHF,EUR\n2024-01-02,0.90,1.07,1\n")
+                .getBytes(StandardCharsets.UTF_8));
+        Files.write(directory.resolve("notes.txt"), "ignored".getBytes(StandardCharsets.UTF_8));
+
+        ExchangeRates rates = ExchangeRates.load(directory);
+
+        assertArrayEquals(new String[]{"EUR", "USD", "CHF"}, rates.getCurrencies());
+        int day = Ledger.epochDay(2023, 12, 30);
+        assertEquals(9100, rates.convert(10000, "USD", "EUR", day));
+        assertTrue(Double.isNaN(rates.getFactors("EUR", day)[rates.indexOf("CHF")]));
+        assertEquals(10700, rates.convert(10000, "CHF", "EUR", day + 3));
+        assertEquals(-1, rates.indexOf("JPY"));
+
+        Files.write(directory.resolve("2025.csv"), "date,EUR\n2025-01-02,zero\n".getBytes(StandardCharsets.UTF_8));
+        IOException e = assertThrows(IOException.class, () -> ExchangeRates.load(directory));
+        assertTrue(e.getMessage().startsWith("2025.csv: line 2"), e.getMessage());
+    }
+
+    @Test
+    void testHeaderMustNameCurrencyCodes() throws IOException {
+        ExchangeRates rates = ExchangeRates.read(new BufferedReader(new StringReader("date, usd ,eur\n2024-01-02,1,1.1\n")));
+        assertArrayEquals(new String[]{"USD", "EUR"}, rates.getCurrencies());
+
+        IOException e = assertThrows(IOException.class, () -> ExchangeRates.read(new BufferedReader(
+                new StringReader("# rates\ndate,USD,Euro\n2024-01-02,1,1.1\n"))));
+        assertEquals("rates: line 2: invalid currency code Euro", e.getMessage());
+        assertThrows(IOException.class, () -> ExchangeRates.read(new BufferedReader(new StringReader("date,USD,\n"))));
+    }
+
+    @Test
+    void testConcurrentConversionsShareTheCache() throws InterruptedException {
+        int dates = 200;
+        int[] days = new int[dates];
+        double[] values = new double[2 * dates];
+        for (int row = 0; row < dates; row++) {
+            days[row] = row;
+            values[2 * row] = 1;
+            values[2 * row + 1] = 1 + row / 100.0;
+        }
+        ExchangeRates rates = new ExchangeRates(new String[]{"USD", "EUR"}, days, values);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int offset = t * 37;
+            threads[t] = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 20_000; i++) {
+                        int day = (offset + i) % dates;
+                        assertEquals(10_000 + 100 * day, rates.convert(10_000, "EUR", "USD", day));
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+    }
+}
@@ -0,0 +1,127 @@
+package site.aberdeen;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LedgerTest {
+
+    @Test
+    void testRangeTotalsMatchBruteForce() {
+        SplittableRandom random = new SplittableRandom(7);
+        int count = 5000;
+        int[] days = new int[count];
+        long[] amounts = new long[count];
+        boolean[] income = new boolean[count];
+        Ledger ledger = new Ledger();
+        for (int i = 0; i < count; i++) {
+            days[i] = random.nextInt(-400, 4000);
+            amounts[i] = random.nextLong(-5000, 100_000);
+            income[i] = random.nextBoolean();
+            if (income[i]) {
+                ledger.addIncome(days[i], amounts[i]);
+            } else {
+                ledger.addSpending(days[i], amounts[i]);
+            }
+        }
+
+        for (int query = 0; query < 200; query++) {
+            int from = random.nextInt(-500, 4100);
+            int to = from + random.nextInt(0, 800);
+            long expectedIncome = 0;
+            long expectedSpending = 0;
+            for (int i = 0; i < count; i++) {
+                if (days[i] >= from && days[i] < to) {
+                    if (income[i]) {
+                        expectedIncome += amounts[i];
+                    } else {
+                        expectedSpending += amounts[i];
+                    }
+                }
+            }
+            assertEquals(expectedIncome, ledger.getIncome(from, to));
+            assertEquals(expectedSpending, ledger.getSpending(from, to));
+        }
+        for (int i = 1; i < count; i++) {
+            assertTrue(ledger.getDay(i - 1) <= ledger.getDay(i));
+        }
+        long[] daily = ledger.getDailyCashFlow();
+        int first = ledger.getFirstDay();
+        assertEquals(ledger.getLastDay() - first + 1, daily.length);
+        for (int day = 0; day < daily.length; day += 97) {
+            assertEquals(ledger.getIncome(first + day, first + day + 1)
+                    - ledger.getSpending(first + day, first + day + 1), daily[day]);
+        }
+    }
+
+    @Test
+    void testAveragesAndRollingWindows() {
+        Ledger ledger = new Ledger();
+        int start = (int) LocalDate.of(2015, 1, 1).toEpochDay();
+        int days = 7 * 52 * 10;
+        for (int day = start; day < start + days; day++) {
+            ledger.addSpending(day, 200);
+            if ((day - start) % 7 == 0) {
+                ledger.addIncome(day, 7000);
+            }
+        }
+
+        int end = start + days;
+        assertEquals(1400, ledger.getAverageSpending(TimePeriod.WEEKLY, start, end));
+        assertEquals(72800, ledger.getAverageSpending(TimePeriod.YEARLY, start, end));
+        assertEquals(6067, ledger.getAverageSpending(TimePeriod.MONTHLY, start, end));
+        assertEquals(7000, ledger.getAverageIncome(TimePeriod.WEEKLY, start, end));
+        assertEquals(30 * 200, ledger.getRollingSpending(start + 100, 30));
+        assertEquals(200, ledger.getRollingSpending(start, 30));
+        assertEquals(0, ledger.getAverageIncome(TimePeriod.WEEKLY, end, end));
+    }
+
+    @Test
+    void testAppendAfterQueryExtendsIndex() {
+        Ledger ledger = new Ledger(1);
+        ledger.addIncome(10, 5);
+        assertEquals(5, ledger.getIncome(0, 100));
+        ledger.addIncome(20, 7);
+        ledger.addSpending(15, 3);
+        assertEquals(12, ledger.getIncome(0, 100));
+        assertEquals(3, ledger.getSpending(15, 16));
+        assertEquals(10, ledger.getFirstDay());
+        assertEquals(20, ledger.getLastDay());
+    }
+
+    @Test
+    void testPreparedLedgerIsReadFromAnotherThread() throws InterruptedException {
+        new Ledger().prepareForReading();
+        Ledger ledger = new Ledger();
+        for (int day = 1000; day > 0; day--) {
+            ledger.addSpending(day, day);
+        }
+        ledger.prepareForReading();
+
+        long[] read = new long[2];
+        Thread reader = new Thread(() -> {
+            read[0] = ledger.getDay(0);
+            read[1] = ledger.getSpending(1, 1001);
+        });
+        reader.start();
+        reader.join();
+        assertEquals(1, read[0]);
+        assertEquals(1000 * 1001 / 2, read[1]);
+    }
+
+    @Test
+    void testParseDay() {
+        assertEquals(LocalDate.of(2024, 2, 29).toEpochDay(), Ledger.parseDay("2024-02-29"));
+        assertEquals(LocalDate.of(1969, 12, 31).toEpochDay(), Ledger.parseDay("1969/12/31"));
+        assertEquals(LocalDate.of(2024, 1, 2).toEpochDay(), Ledger.parseDay("20240102120000.000[-5:EST]"));
+        assertEquals(Ledger.NO_DAY, Ledger.parseDay("2023-02-29"));
+        assertEquals(Ledger.NO_DAY, Ledger.parseDay("Date"));
+        assertEquals(Ledger.NO_DAY, Ledger.parseDay(""));
+        for (LocalDate date = LocalDate.of(1600, 1, 1); date.getYear() < 2500; date = date.plusDays(13)) {
+            assertEquals(date.toEpochDay(), Ledger.epochDay(date.getYear(), date.getMonthValue(), date.getDayOfMonth()));
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package site.aberdeen;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongVectorTest {
+
+    @Test
+    void testWithLeavesOriginalUnchanged() {
+        SplittableRandom random = new SplittableRandom(3);
+        for (int size : new int[]{0, 1, 31, 32, 33, 1024, 1025, 40_000}) {
+            long[] values = random.longs(size).toArray();
+            LongVector vector = LongVector.of(values);
+            assertArrayEquals(values, vector.toArray());
+            assertEquals(Arrays.hashCode(values), vector.hashCode());
+            assertEquals(Arrays.stream(values).sum(), vector.sum());
+            if (size == 0) {
+                continue;
+            }
+
+            int index = random.nextInt(size);
+            LongVector changed = vector.with(index, values[index] + 1);
+            assertEquals(values[index], vector.get(index));
+            assertEquals(values[index] + 1, changed.get(index));
+            assertNotEquals(vector, changed);
+            assertEquals(vector, changed.with(index, values[index]));
+            assertSame(vector, vector.with(index, values[index]));
+        }
+    }
+
+    @Test
+    void testIndexOutOfBounds() {
+        LongVector vector = LongVector.of(new long[3]);
+        assertThrows(IndexOutOfBoundsException.class, () -> vector.get(3));
+        assertThrows(IndexOutOfBoundsException.class, () -> vector.with(-1, 0));
+    }
+}
@@ -0,0 +1,52 @@
+package site.aberdeen;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsRegistryTest {
+
+    @Test
+    void testHistogramQuantilesStayWithinBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        for (long nanos = 1; nanos <= 100_000; nanos++) {
+            histogram.record(nanos);
+        }
+
+        assertEquals(100_000, histogram.getCount());
+        assertEquals(100_000, histogram.getMaximum());
+        assertEquals(50_000.5, histogram.getMean(), 1e-6);
+        assertEquals(50_000, histogram.getQuantile(0.5), 50_000 * 0.25);
+        assertEquals(99_000, histogram.getQuantile(0.99), 99_000 * 0.25);
+        assertEquals(100_000, histogram.getQuantile(1.0));
+    }
+
+    @Test
+    void testBucketBoundsAreContiguous() {
+        for (long value = 0; value < 10_000; value++) {
+            int bucket = LatencyHistogram.bucket(value);
+            assertTrue(value <= LatencyHistogram.upperBound(bucket));
+            assertTrue(bucket == 0 || value > LatencyHistogram.upperBound(bucket - 1));
+        }
+        assertTrue(LatencyHistogram.bucket(Long.MAX_VALUE) < 256);
+    }
+
+    @Test
+    void testDumpListsEveryMetric() throws IOException {
+        MetricsRegistry metrics = new MetricsRegistry();
+        metrics.counter(MetricsRegistry.PARSE_FAILURES).add(3);
+        metrics.gauge(MetricsRegistry.HISTORY_DEPTH).set(12);
+        metrics.histogram(MetricsRegistry.CALCULATE_ALL).record(2000);
+
+        StringWriter out = new StringWriter();
+        metrics.dump(out);
+
+        String dump = out.toString();
+        assertTrue(dump.contains("counter parse.failures 3\n"));
+        assertTrue(dump.contains("gauge history.depth 12\n"));
+        assertTrue(dump.contains("histogram calculateAll count=1 mean=2000 "));
+    }
+}
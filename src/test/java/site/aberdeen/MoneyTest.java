@@ -0,0 +1,76 @@
+package site.aberdeen;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyTest {
+
+    @Test
+    void testParseValidAmounts() {
+        assertEquals(4250L, Money.parse("42.5"));
+        assertEquals(4250L, Money.parse(" 42.50 "));
+        assertEquals(-1000L, Money.parse("-10"));
+        assertEquals(5L, Money.parse(".05"));
+        assertEquals(101L, Money.parse("1.005"));
+        assertEquals(100L, Money.parse("0.999"));
+    }
+
+    @Test
+    void testParseInvalidAmounts() {
+        assertEquals(Money.INVALID, Money.parse(""));
+        assertEquals(Money.INVALID, Money.parse("-"));
+        assertEquals(Money.INVALID, Money.parse("."));
+        assertEquals(Money.INVALID, Money.parse("12a"));
+        assertEquals(Money.INVALID, Money.parse("1.2.3"));
+        assertEquals(Money.INVALID, Money.parse("99999999999999999999"));
+    }
+
+    @Test
+    void testFormat() {
+        assertEquals("0.00", Money.toString(0));
+        assertEquals("0.05", Money.toString(5));
+        assertEquals("-36.00", Money.toString(-3600));
+        assertEquals("-0.71", Money.toString(-71));
+        assertEquals("-92233720368547758.08", Money.toString(Long.MIN_VALUE));
+    }
+
+    @Test
+    void testFormatAtOffset() {
+        char[] buffer = new char[2 + Money.MAX_FORMATTED_LENGTH];
+        int length = Money.format(123456, buffer, 2);
+        assertEquals("1234.56", new String(buffer, 2, length));
+    }
+
+    @Test
+    void testDivideRoundedHalfAwayFromZero() {
+        assertEquals(3L, Money.divideRounded(5, 2));
+        assertEquals(-3L, Money.divideRounded(-5, 2));
+        assertEquals(2L, Money.divideRounded(7, 4));
+        assertEquals(-2L, Money.divideRounded(-7, 4));
+    }
+
+    @Test
+    void testPeriodConversionsAreExactInAnnualForm() {
+        long amount = 1000001;
+        for (TimePeriod period : TimePeriod.values()) {
+            assertEquals(amount, period.fromAnnual(period.annualize(amount)));
+        }
+
+        long annual = TimePeriod.YEARLY.annualize(amount);
+        assertEquals(TimePeriod.YEARLY.convert(amount, TimePeriod.MONTHLY), TimePeriod.MONTHLY.fromAnnual(annual));
+        assertEquals(83333L, TimePeriod.MONTHLY.fromAnnual(annual));
+        assertEquals(19231L, TimePeriod.YEARLY.convert(amount, TimePeriod.WEEKLY));
+        assertEquals(433L, TimePeriod.WEEKLY.convert(100, TimePeriod.MONTHLY));
+    }
+
+    @Test
+    void testAnnualizingTooLargeAnAmountThrows() {
+        long largest = Long.MAX_VALUE / 52;
+        assertEquals(largest * 52, TimePeriod.WEEKLY.annualize(largest));
+        assertEquals(-largest * 52, TimePeriod.WEEKLY.annualize(-largest));
+        assertThrows(ArithmeticException.class, () -> TimePeriod.WEEKLY.annualize(largest + 1));
+        assertThrows(ArithmeticException.class, () -> TimePeriod.WEEKLY.convert(-largest - 1, TimePeriod.YEARLY));
+        assertEquals(Long.MAX_VALUE, TimePeriod.YEARLY.annualize(Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,90 @@
+package site.aberdeen;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MonteCarloSimulationTest {
+
+    @Test
+    void testFixedLinesGiveTheDeterministicCashFlow() {
+        BudgetModel model = new BudgetModel(2, 1);
+        model.setValues(new long[]{30000, 15000, 5000});
+        model.setPeriods(TimePeriod.MONTHLY, TimePeriod.WEEKLY, TimePeriod.WEEKLY);
+
+        SimulationResult result = MonteCarloSimulation.forModel(model).run(10000, 1);
+
+        assertEquals(model.getCashFlow(), result.getMinimum());
+        assertEquals(model.getCashFlow(), result.getMaximum());
+        assertEquals(model.getCashFlow(), result.getMean(), 1e-9);
+        assertEquals(0.0, result.getProbabilityNegative());
+    }
+
+    @Test
+    void testNormalSpendingMatchesExpectedProbabilities() {
+        MonteCarloSimulation simulation = new MonteCarloSimulation(1, 1);
+        simulation.setFixed(0, 100000);
+        simulation.setNormal(1, 90000, 10000);
+
+        SimulationResult result = simulation.run(1_000_000, 42);
+
+        assertEquals(10000, result.getMean(), 50);
+        assertEquals(0.1587, result.getProbabilityNegative(), 0.002);
+        assertEquals(10000, result.getPercentile(0.5), 100);
+        assertEquals(10000 - 16449, result.getPercentile(0.05), 150);
+        assertEquals(10000 + 16449, result.getPercentile(0.95), 150);
+    }
+
+    @Test
+    void testUniformLineBands() {
+        MonteCarloSimulation simulation = new MonteCarloSimulation(1, 0);
+        simulation.setUniform(0, 0, 100000);
+
+        long[] bands = new long[3];
+        simulation.run(500_000, 7).getPercentiles(new double[]{0.1, 0.5, 0.9}, bands);
+
+        assertArrayEquals(new long[]{10000, 50000, 90000}, bands, 300);
+    }
+
+    @Test
+    void testExtremePercentilesAreObservedValues() {
+        MonteCarloSimulation simulation = new MonteCarloSimulation(1, 1);
+        simulation.setUniform(0, 20000, 30000);
+        simulation.setNormal(1, 10000, 3000);
+
+        SimulationResult result = simulation.run(100_000, 3);
+
+        assertEquals(result.getMinimum(), result.getPercentile(0));
+        assertEquals(result.getMaximum(), result.getPercentile(1));
+        assertTrue(result.getPercentile(0.001) >= result.getMinimum());
+        assertTrue(result.getPercentile(0.999) <= result.getMaximum());
+    }
+
+    @Test
+    void testResultsDependOnlyOnSeed() {
+        MonteCarloSimulation simulation = new MonteCarloSimulation(2, 2);
+        simulation.setNormal(0, 50000, 5000);
+        simulation.setUniform(1, 0, 20000);
+        simulation.setNormal(2, 40000, 8000);
+        simulation.setFixed(3, 15000);
+
+        SimulationResult serial = simulation.run(300_000, 99, new ForkJoinPool(1));
+        SimulationResult parallel = simulation.run(300_000, 99, new ForkJoinPool(4));
+        SimulationResult otherSeed = simulation.run(300_000, 100, new ForkJoinPool(4));
+
+        assertEquals(serial.getMean(), parallel.getMean());
+        assertEquals(serial.getProbabilityNegative(), parallel.getProbabilityNegative());
+        assertEquals(serial.getPercentile(0.01), parallel.getPercentile(0.01));
+        assertEquals(serial.getMaximum(), parallel.getMaximum());
+        assertNotEquals(serial.getMean(), otherSeed.getMean());
+    }
+
+    private static void assertArrayEquals(long[] expected, long[] actual, long delta) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], actual[i], delta);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package site.aberdeen;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProjectionEngineTest {
+
+    @Test
+    void testFlatScenarioAccumulatesWeeklyCashFlow() {
+        BudgetModel model = new BudgetModel(1, 1);
+        model.getIncomeItems().set(0, 50000);
+        model.getSpendingItems().set(0, 30000);
+        Scenario scenario = new Scenario();
+        scenario.setStartingBalance(100000);
+
+        Projection projection = ProjectionEngine.project(model, new Scenario[]{scenario}, 30);
+
+        assertEquals(30 * 52, projection.getWeekCount());
+        assertEquals(120000L, projection.getBalance(0, 0));
+        assertEquals(100000L + 20000L * 30 * 52, projection.getFinalBalance(0));
+        assertEquals(-1, projection.firstNegativeWeek(0));
+    }
+
+    @Test
+    void testGrowthAndEvents() {
+        Scenario inflation = new Scenario();
+        inflation.setInflation(0.10);
+        Scenario events = new Scenario();
+        events.addEvent(10, -500000);
+        events.addEvent(2, 1000);
+
+        Projection projection = ProjectionEngine.project(52 * 10000, 52 * 10000,
+                new Scenario[]{inflation, events}, 104, ForkJoinPool.commonPool());
+
+        assertEquals(0L, projection.getBalance(0, 0));
+        long shortfall = projection.getBalance(0, 52) - projection.getBalance(0, 53);
+        assertEquals(10000 * (Math.pow(1.10, 53.0 / 52) - 1), shortfall, 1);
+
+        assertEquals(0L, projection.getBalance(1, 1));
+        assertEquals(1000L, projection.getBalance(1, 2));
+        assertEquals(10, projection.firstNegativeWeek(1));
+        assertEquals(-499000L, projection.getFinalBalance(1));
+    }
+
+    @Test
+    void testParallelSweepMatchesSequentialProjection() {
+        Scenario[] scenarios = new Scenario[300];
+        for (int s = 0; s < scenarios.length; s++) {
+            scenarios[s] = new Scenario();
+            scenarios[s].setIncomeGrowth(s * 0.0001);
+            scenarios[s].setInflation(0.02);
+            scenarios[s].setInterestRate(0.01);
+            scenarios[s].addEvent(s, -s * 100L);
+        }
+
+        Projection projection = ProjectionEngine.project(2_600_000, 2_000_000, scenarios, 40 * 52,
+                ForkJoinPool.commonPool());
+
+        long[] expected = new long[40 * 52];
+        long[] actual = new long[40 * 52];
+        for (int s = 0; s < scenarios.length; s += 37) {
+            ProjectionEngine.project(2_600_000, 2_000_000, scenarios[s], expected, 0, expected.length);
+            projection.copySeries(s, actual, 0);
+            assertArrayEquals(expected, actual);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package site.aberdeen;
+
+import org.junit.jupiter.api.Test;
+
+import javax.swing.SwingUtilities;
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecalculatorTest {
+
+    @Test
+    void testBurstPublishesOnlyLatestResult() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> published = new CopyOnWriteArrayList<>();
+        List<Boolean> onEventThread = new CopyOnWriteArrayList<>();
+        Recalculator<Integer, Integer> recalculator = new Recalculator<>(input -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return input * 10;
+        }, result -> {
+            published.add(result);
+            onEventThread.add(SwingUtilities.isEventDispatchThread());
+        });
+
+        onEventThread(() -> {
+            for (int i = 1; i <= 50; i++) {
+                recalculator.request(i);
+            }
+        });
+        release.countDown();
+
+        assertTrue(recalculator.awaitPublished(5000));
+        assertEquals(List.of(500), published);
+        assertEquals(List.of(true), onEventThread);
+        // generations 1 to 49 were coalesced; only the last one was published
+        assertEquals(50, recalculator.getGeneration());
+        assertEquals(50, recalculator.getPublishedGeneration());
+        recalculator.shutdown();
+    }
+
+    @Test
+    void testCancelDropsPendingResult() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> published = new CopyOnWriteArrayList<>();
+        Recalculator<Integer, Integer> recalculator = new Recalculator<>(input -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return input;
+        }, published::add);
+
+        onEventThread(() -> {
+            recalculator.request(1);
+            recalculator.cancel();
+        });
+        release.countDown();
+
+        assertTrue(recalculator.awaitPublished(1000));
+        onEventThread(() -> { });
+        assertTrue(published.isEmpty());
+        recalculator.shutdown();
+    }
+
+    private static void onEventThread(Runnable runnable) throws InterruptedException, InvocationTargetException {
+        SwingUtilities.invokeAndWait(runnable);
+    }
+}
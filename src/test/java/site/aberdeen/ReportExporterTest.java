@@ -0,0 +1,179 @@
+package site.aberdeen;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReportExporterTest {
+
+    @TempDir
+    Path directory;
+
+    private static BudgetModel createModel() {
+        BudgetModel model = new BudgetModel(new LineItems("Wages, net"), new LineItems("Rent <flat>"));
+        model.getIncomeItems().set(0, Money.ofUnits(520));
+        model.getSpendingItems().set(0, Money.ofUnits(120));
+        model.getSpendingItems().setCurrency(0, "EUR");
+        model.setPeriods(TimePeriod.WEEKLY, TimePeriod.WEEKLY, TimePeriod.WEEKLY);
+        return model;
+    }
+
+    @Test
+    void testCsvHoldsSummaryLinesAndHistory() throws IOException {
+        BudgetModel model = createModel();
+        UndoTree versions = new UndoTree(new BudgetModel(1, 1).getSnapshot());
+        versions.commit(model.getSnapshot());
+        ReportExporter exporter = new ReportExporter(model.getSnapshot());
+        exporter.setVersions(versions);
+        Path path = directory.resolve("report.csv");
+
+        exporter.export(path, ReportExporter.Format.CSV);
+
+        String csv = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        String[] rows = csv.split("\r\n", -1);
+        assertEquals("Summary", rows[0]);
+        assertEquals(",Weekly,Monthly,Yearly", rows[1]);
+        assertEquals("Income," + Money.toString(Money.ofUnits(520)) + ","
+                + Money.toString(Money.ofUnits(2253) + 33) + "," + Money.toString(Money.ofUnits(27040)), rows[2]);
+        assertTrue(csv.contains("\r\nCash flow," + Money.toString(Money.ofUnits(400)) + ","));
+        assertTrue(csv.contains("\r\nIncome,\"Wages, net\",,"));
+        assertTrue(csv.contains("\r\nSpending,Rent <flat>,EUR,"));
+        assertTrue(csv.contains("\r\n\r\nHistory\r\nVersion,Parent,Depth,Income,Spending,Cash flow\r\n0,,0,"));
+        assertTrue(csv.contains("\r\n1,0,1," + Money.toString(Money.ofUnits(520)) + ","));
+        assertTrue(csv.endsWith("\r\n"));
+        assertEquals(7, exporter.getRowCount());
+    }
+
+    @Test
+    void testTotalsAreConvertedIntoReportingCurrency() throws IOException {
+        ExchangeRates rates = new ExchangeRates(new String[]{"USD", "EUR"}, new int[]{0}, new double[]{1, 1.5});
+        BudgetModel model = createModel();
+        UndoTree versions = new UndoTree(model.getSnapshot());
+        ReportExporter exporter = new ReportExporter(model.getSnapshot());
+        exporter.setReportingCurrency(rates, "USD", 0);
+        exporter.setVersions(versions);
+        Path path = directory.resolve("report.csv");
+
+        exporter.export(path, ReportExporter.Format.CSV);
+
+        String csv = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        assertTrue(csv.contains("\r\nSpending," + Money.toString(Money.ofUnits(180)) + ","));
+        assertTrue(csv.contains("\r\nCash flow," + Money.toString(Money.ofUnits(340)) + ","));
+        assertTrue(csv.contains("\r\n0,,0," + Money.toString(Money.ofUnits(520)) + ","
+                + Money.toString(Money.ofUnits(180)) + "," + Money.toString(Money.ofUnits(340)) + "\r\n"));
+
+        exporter.setTotals(Money.ofUnits(70), Money.ofUnits(28));
+        exporter.export(path, ReportExporter.Format.CSV);
+        csv = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        assertTrue(csv.contains("\r\nCash flow," + Money.toString(Money.ofUnits(42)) + ","));
+
+        model.getSpendingItems().setCurrency(0, "GBP");
+        ReportExporter unquoted = new ReportExporter(model.getSnapshot());
+        unquoted.setReportingCurrency(rates, "USD", 0);
+        assertThrows(IllegalArgumentException.class, () -> unquoted.export(path, ReportExporter.Format.CSV));
+    }
+
+    @Test
+    void testHtmlEscapesText() throws IOException {
+        Path path = directory.resolve("report.html");
+        assertEquals(ReportExporter.Format.HTML, ReportExporter.Format.forFileName(path.toString()));
+        assertNull(ReportExporter.Format.forFileName("report.txt"));
+
+        new ReportExporter(createModel().getSnapshot()).export(path, ReportExporter.Format.HTML);
+
+        String html = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        assertTrue(html.startsWith("<!DOCTYPE html>"));
+        assertTrue(html.contains("<td>Rent &lt;flat&gt;</td>"));
+        assertTrue(html.contains("<h2>Lines</h2>"));
+        assertTrue(html.endsWith("</html>\n"));
+    }
+
+    @Test
+    void testPdfCrossReferencePointsAtObjects() throws IOException {
+        Ledger ledger = new Ledger();
+        for (int day = 0; day < 500; day++) {
+            ledger.addSpending(day, 100 + day);
+        }
+        ReportExporter exporter = new ReportExporter(createModel().getSnapshot());
+        exporter.setLedger(ledger);
+        Path path = directory.resolve("report.pdf");
+
+        exporter.export(path, ReportExporter.Format.PDF);
+
+        byte[] bytes = Files.readAllBytes(path);
+        String pdf = new String(bytes, StandardCharsets.ISO_8859_1);
+        assertTrue(pdf.startsWith("%PDF-1.4\n"));
+        assertTrue(pdf.endsWith("%%EOF\n"));
+        assertTrue(pdf.contains("(1970-01-01" + " ".repeat(24 - 10 + 1) + "Spending"));
+        int startxref = pdf.lastIndexOf("startxref\n") + "startxref\n".length();
+        int xref = Integer.parseInt(pdf.substring(startxref, pdf.indexOf('\n', startxref)));
+        assertTrue(pdf.startsWith("xref\n0 ", xref));
+        String[] table = pdf.substring(xref, pdf.indexOf("trailer", xref)).split("\n");
+        int objects = Integer.parseInt(table[1].substring(2));
+        assertTrue(objects > 10, "expected several pages");
+        for (int object = 1; object < objects; object++) {
+            int offset = Integer.parseInt(table[2 + object].substring(0, 10));
+            assertTrue(pdf.startsWith(object + " 0 obj\n", offset), "object " + object);
+        }
+        assertTrue(pdf.contains("/Count " + (objects - 4) / 3 + " >>"));
+    }
+
+    @Test
+    void testLargeExportStreamsAndCanBeCancelled() throws IOException {
+        Ledger ledger = new Ledger();
+        for (int i = 0; i < 200_000; i++) {
+            ledger.addIncome(i / 50, 1000 + i % 97);
+        }
+        ReportExporter exporter = new ReportExporter(createModel().getSnapshot());
+        exporter.setLedger(ledger);
+        CountingChannel channel = new CountingChannel();
+
+        exporter.export(channel, ReportExporter.Format.CSV);
+
+        assertTrue(channel.bytes > 20 * ReportExporter.BUFFER_SIZE);
+        assertTrue(channel.largestWrite <= ReportExporter.BUFFER_SIZE);
+        assertEquals(200_000 + 5, exporter.getRowCount());
+
+        exporter.setProgressListener((written, total) -> {
+            if (written >= 10_000) {
+                exporter.cancel();
+            }
+        });
+        CountingChannel cancelled = new CountingChannel();
+        assertThrows(CancellationException.class, () -> exporter.export(cancelled, ReportExporter.Format.HTML));
+        assertTrue(cancelled.bytes < channel.bytes);
+    }
+
+    private static final class CountingChannel implements WritableByteChannel {
+
+        long bytes;
+        int largestWrite;
+
+        @Override
+        public int write(ByteBuffer src) {
+            int count = src.remaining();
+            src.position(src.limit());
+            bytes += count;
+            largestWrite = Math.max(largestWrite, count);
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package site.aberdeen;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StateCacheTest {
+
+    private static final TimePeriod W = TimePeriod.WEEKLY;
+    private static final TimePeriod M = TimePeriod.MONTHLY;
+
+    @Test
+    void testLookupByEqualStateAndPeriods() {
+        StateCache<String> cache = new StateCache<>(4, 100);
+        cache.put(state(1, 2), W, W, W, "weekly");
+        cache.put(state(1, 2), W, W, M, "monthly");
+
+        assertEquals("weekly", cache.get(state(1, 2), W, W, W));
+        assertEquals("monthly", cache.get(state(1, 2), W, W, M));
+        assertNull(cache.get(state(1, 3), W, W, W));
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void testLeastRecentlyUsedEntryIsEvicted() {
+        StateCache<String> cache = new StateCache<>(2, 100);
+        cache.put(state(1), W, W, W, "a");
+        cache.put(state(2), W, W, W, "b");
+        cache.get(state(1), W, W, W);
+        cache.put(state(3), W, W, W, "c");
+
+        assertEquals(2, cache.size());
+        assertEquals("a", cache.get(state(1), W, W, W));
+        assertNull(cache.get(state(2), W, W, W));
+    }
+
+    @Test
+    void testLineBudgetLimitsLargeStates() {
+        StateCache<String> cache = new StateCache<>(10, 5);
+        cache.put(state(1, 2, 3), W, W, W, "a");
+        cache.put(state(4, 5, 6), W, W, W, "b");
+
+        assertEquals(1, cache.size());
+        assertEquals("b", cache.get(state(4, 5, 6), W, W, W));
+    }
+
+    @Test
+    void testBudgetStateHashIsStableAndConsistentWithEquals() {
+        BudgetState a = state(7, 8, 9);
+        BudgetState b = state(7, 8, 9);
+        assertEquals(a.hashCode(), a.hashCode());
+        assertEquals(a.hashCode(), b.hashCode());
+        assertEquals(a, b);
+        assertNotEquals(a, state(7, 8, 10));
+    }
+
+    private static BudgetState state(long... spending) {
+        return new BudgetState(new long[]{100}, spending);
+    }
+}
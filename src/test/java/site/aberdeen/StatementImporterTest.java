@@ -0,0 +1,120 @@
+package site.aberdeen;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatementImporterTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testCsvRowsAreAggregatedByCategory() throws IOException {
+        Path csv = write("statement.csv", "Date,Description,Amount\r\n"
+                + "2024-01-02,\"ACME, Inc. payroll\",\"1,500.00\"\r\n"
+                + "2024-01-03,Grocer,-42.10\r\n"
+                + "2024-01-04,Tax office,(300.00)\r\n"
+                + "2024-01-05,Grocer,-7.90");
+        StatementImporter importer = new StatementImporter(1, 2,
+                (description, cents) -> cents >= 0 ? 0 : description.charAt(0) == 'G' ? 1 : 2,
+                new AmountParser(Locale.US));
+
+        BudgetState state = importer.importFile(csv);
+
+        assertArrayEquals(new long[]{150000}, state.getIncomeValues());
+        assertArrayEquals(new long[]{5000, 30000}, state.getSpendingValues());
+        assertEquals(4, importer.getRowCount());
+        assertEquals(1, importer.getRejectedCount());
+    }
+
+    @Test
+    void testDatedTransactionsAreRecordedInLedger() throws IOException {
+        Path csv = write("dated.csv", "Date,Description,Amount\n"
+                + "2024-01-02,Payroll,1500.00\n"
+                + "2024-01-09,Grocer,-42.10\n"
+                + "undated,Grocer,-1.00\n");
+        Path ofx = write("dated.ofx", "<STMTTRN><DTPOSTED>20240201120000<TRNAMT>-19.99<NAME>Streaming</STMTTRN>\n");
+        Ledger ledger = new Ledger();
+        StatementImporter importer = new StatementImporter(1, 1, StatementImporter.bySign(1),
+                new AmountParser(Locale.US));
+        importer.setLedger(ledger, 0);
+
+        importer.importFile(csv);
+        BudgetState state = importer.importFile(ofx);
+
+        assertArrayEquals(new long[]{6309}, state.getSpendingValues());
+        assertEquals(3, ledger.size());
+        int january = (int) LocalDate.of(2024, 1, 1).toEpochDay();
+        assertEquals(150000, ledger.getIncome(january, january + 31));
+        assertEquals(4210, ledger.getSpending(january, january + 31));
+        assertEquals(1999, ledger.getSpending(january + 31, january + 60));
+    }
+
+    @Test
+    void testRowsSpanningWindowsAreNotSplit() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            content.append(i).append(",Row ").append(i).append(",1.01\n");
+        }
+        Path csv = write("many.csv", content.toString());
+        StatementImporter importer = new StatementImporter(1, 1, StatementImporter.bySign(1),
+                new AmountParser(Locale.US));
+        importer.setWindowSize(64);
+        long[] lastProgress = new long[2];
+        importer.setProgressListener((read, total) -> {
+            lastProgress[0] = read;
+            lastProgress[1] = total;
+        });
+
+        BudgetState state = importer.importFile(csv);
+
+        assertArrayEquals(new long[]{101000}, state.getIncomeValues());
+        assertEquals(0, importer.getRejectedCount());
+        assertEquals(lastProgress[1], lastProgress[0]);
+    }
+
+    @Test
+    void testOfxTransactions() throws IOException {
+        Path ofx = write("bank.ofx", "OFXHEADER:100\n<OFX><BANKTRANLIST>\n"
+                + "<STMTTRN>\n<TRNTYPE>CREDIT\n<TRNAMT>2500.00\n<NAME>Salary\n</STMTTRN>\n"
+                + "<STMTTRN><TRNTYPE>DEBIT<TRNAMT>-19.99<MEMO>Streaming</STMTTRN>\n"
+                + "</BANKTRANLIST></OFX>\n");
+        StringBuilder names = new StringBuilder();
+        StatementImporter importer = new StatementImporter(1, 1, (description, cents) -> {
+            names.append(description).append('|');
+            return cents >= 0 ? 0 : 1;
+        }, new AmountParser(Locale.US));
+
+        BudgetState state = importer.importFile(ofx);
+
+        assertArrayEquals(new long[]{250000}, state.getIncomeValues());
+        assertArrayEquals(new long[]{1999}, state.getSpendingValues());
+        assertEquals("Salary|Streaming|", names.toString());
+    }
+
+    @Test
+    void testCancelStopsImport() throws IOException {
+        Path csv = write("cancel.csv", "1,a,1\n2,b,2\n3,c,3\n");
+        StatementImporter importer = new StatementImporter(1, 1, StatementImporter.bySign(1),
+                new AmountParser(Locale.US));
+        importer.setWindowSize(6);
+        importer.setProgressListener((read, total) -> importer.cancel());
+
+        assertThrows(CancellationException.class, () -> importer.importFile(csv));
+        assertEquals(1, importer.getRowCount());
+    }
+
+    private Path write(String name, String content) throws IOException {
+        return Files.write(directory.resolve(name), content.getBytes(StandardCharsets.ISO_8859_1));
+    }
+}
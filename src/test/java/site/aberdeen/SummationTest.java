@@ -0,0 +1,59 @@
+package site.aberdeen;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SummationTest {
+
+    @Test
+    void testLongSumMatchesPlainLoop() {
+        SplittableRandom random = new SplittableRandom(5);
+        for (int length = 0; length < 40; length++) {
+            long[] values = random.longs(length, -1_000_000_000L, 1_000_000_000L).toArray();
+            long expected = 0;
+            for (long value : values) {
+                expected += value;
+            }
+            assertEquals(expected, Summation.sum(values));
+        }
+        assertEquals(6, Summation.sum(new long[]{9, 1, 2, 3, 9}, 1, 4));
+    }
+
+    @Test
+    void testCompensatedSumRecoversLostLowOrderBits() {
+        assertEquals(2.0, Summation.sum(new double[]{1.0, 1e100, 1.0, -1e100}));
+
+        double[] tenths = new double[1_000_000];
+        Arrays.fill(tenths, 0.1);
+        double naive = 0;
+        for (double value : tenths) {
+            naive += value;
+        }
+        assertNotEquals(100_000.0, naive);
+        assertEquals(100_000.0, Summation.sum(tenths));
+    }
+
+    @Test
+    void testParallelSumIsIdenticalForAnyPoolSize() {
+        SplittableRandom random = new SplittableRandom(9);
+        double[] values = new double[3_000_001];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(12));
+        }
+
+        double sequential = Summation.sum(values);
+        for (int threads : new int[]{1, 2, 3, 8}) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                assertEquals(Double.doubleToLongBits(sequential), Double.doubleToLongBits(Summation.sum(values, pool)));
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+}
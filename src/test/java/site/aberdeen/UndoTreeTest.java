@@ -0,0 +1,160 @@
+package site.aberdeen;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UndoTreeTest {
+
+    @Test
+    void testEditAfterUndoKeepsOldBranch() {
+        BudgetModel model = new BudgetModel(3, 0);
+        UndoTree tree = new UndoTree(model.getSnapshot());
+        model.getIncomeItems().set(0, 100);
+        int first = tree.commit(model.getSnapshot());
+        model.getIncomeItems().set(1, 200);
+        int second = tree.commit(model.getSnapshot());
+
+        model.getIncomeItems().set(1, 0);
+        assertEquals(first, tree.commit(model.getSnapshot()));
+        model.getIncomeItems().set(2, 300);
+        int branch = tree.commit(model.getSnapshot());
+
+        assertEquals(4, tree.size());
+        assertEquals(first, tree.getParent(branch));
+        assertEquals(200, tree.getSnapshot(second).getIncomeValue(1));
+        assertEquals(first, tree.getCommonAncestor(second, branch));
+
+        assertEquals(first, tree.undo());
+        assertEquals(branch, tree.redo());
+        tree.moveTo(second);
+        assertEquals(300, tree.getSnapshot(branch).getTotalIncome() - 100);
+        assertEquals(first, tree.undo());
+        assertEquals(second, tree.redo());
+        assertFalse(tree.canRedo());
+    }
+
+    @Test
+    void testAncestorQueriesMatchParentWalk() {
+        SplittableRandom random = new SplittableRandom(11);
+        BudgetModel model = new BudgetModel(1, 0);
+        UndoTree tree = new UndoTree(model.getSnapshot());
+        for (int i = 1; i < 3000; i++) {
+            tree.moveTo(random.nextInt(tree.size()));
+            model.getIncomeItems().set(0, i);
+            tree.commit(model.getSnapshot());
+        }
+
+        for (int query = 0; query < 500; query++) {
+            int a = random.nextInt(tree.size());
+            int b = random.nextInt(tree.size());
+            int depth = random.nextInt(tree.getDepth(a) + 1);
+            int expected = a;
+            while (tree.getDepth(expected) > depth) {
+                expected = tree.getParent(expected);
+            }
+            assertEquals(expected, tree.getAncestor(a, depth));
+            assertEquals(slowCommonAncestor(tree, a, b), tree.getCommonAncestor(a, b));
+        }
+    }
+
+    @Test
+    void testVersionsShareUnchangedLines() {
+        BudgetModel model = new BudgetModel(10_000, 10_000);
+        UndoTree tree = new UndoTree(model.getSnapshot());
+        for (int i = 1; i <= 1000; i++) {
+            model.getIncomeItems().set(i, i);
+            tree.commit(model.getSnapshot());
+        }
+
+        BudgetState first = tree.getSnapshot(1).getState();
+        BudgetState last = tree.getSnapshot(1000).getState();
+        assertSame(first.getSpendingVector(), last.getSpendingVector());
+        assertEquals(1, first.getTotalIncome());
+        assertEquals(500_500, last.getTotalIncome());
+    }
+
+    @Test
+    void testCapacityEvictsOldestVersions() {
+        BudgetModel model = new BudgetModel(1, 0);
+        UndoTree tree = new UndoTree(model.getSnapshot(), 8);
+        model.getIncomeItems().set(0, 1);
+        int fork = tree.commit(model.getSnapshot());
+        model.getIncomeItems().set(0, 2);
+        int oldBranch = tree.commit(model.getSnapshot());
+        tree.moveTo(fork);
+        for (int i = 3; i <= 100; i++) {
+            model.getIncomeItems().set(0, i);
+            tree.commit(model.getSnapshot());
+        }
+
+        assertEquals(8, tree.size());
+        assertEquals(100, tree.getCurrent());
+        assertEquals(93, tree.getFirstVersion());
+        assertFalse(tree.contains(oldBranch));
+        assertThrows(IndexOutOfBoundsException.class, () -> tree.getSnapshot(fork));
+        assertEquals(100, tree.getSnapshot(100).getTotalIncome());
+        int undos = 0;
+        while (tree.canUndo()) {
+            tree.undo();
+            undos++;
+        }
+        assertEquals(7, undos);
+        assertEquals(UndoTree.NONE, tree.getParent(93));
+        assertEquals(93, tree.getAncestor(100, tree.getDepth(93)));
+        assertThrows(IllegalArgumentException.class, () -> tree.getAncestor(100, tree.getDepth(93) - 1));
+    }
+
+    @Test
+    void testEditFromOldestVersionStaysUndoable() {
+        BudgetModel model = new BudgetModel(1, 0);
+        UndoTree tree = new UndoTree(model.getSnapshot(), 4);
+        for (int i = 1; i <= 3; i++) {
+            model.getIncomeItems().set(0, i);
+            tree.commit(model.getSnapshot());
+        }
+        tree.moveTo(tree.getFirstVersion());
+        model.getIncomeItems().set(0, 0);
+        model.getIncomeItems().set(0, 50);
+
+        int edit = tree.commit(model.getSnapshot());
+
+        assertEquals(4, tree.size());
+        assertEquals(0, tree.getSnapshot(tree.undo()).getTotalIncome());
+        assertEquals(edit, tree.redo());
+        assertEquals(50, tree.getSnapshot(edit).getTotalIncome());
+    }
+
+    @Test
+    void testCommitFindsExistingChildAmongMany() {
+        BudgetModel model = new BudgetModel(1, 0);
+        UndoTree tree = new UndoTree(model.getSnapshot());
+        int[] children = new int[50];
+        for (int i = 0; i < children.length; i++) {
+            tree.moveTo(0);
+            model.getIncomeItems().set(0, i + 1);
+            children[i] = tree.commit(model.getSnapshot());
+        }
+        tree.moveTo(0);
+        model.getIncomeItems().set(0, 10);
+
+        assertEquals(children[9], tree.commit(model.getSnapshot()));
+        assertEquals(51, tree.size());
+    }
+
+    private static int slowCommonAncestor(UndoTree tree, int a, int b) {
+        while (tree.getDepth(a) > tree.getDepth(b)) {
+            a = tree.getParent(a);
+        }
+        while (tree.getDepth(b) > tree.getDepth(a)) {
+            b = tree.getParent(b);
+        }
+        while (a != b) {
+            a = tree.getParent(a);
+            b = tree.getParent(b);
+        }
+        return a;
+    }
+}
@@ -0,0 +1,95 @@
+package site.aberdeen;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.swing.JTable;
+import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WorkspacePanelTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testBudgetsAreEditedSideBySideAndPagedBackIn() throws Exception {
+        onEdt(() -> {
+            Workspace workspace = new Workspace(directory, 0);
+            WorkspacePanel panel = new WorkspacePanel(null, workspace);
+            BudgetBase home = panel.create("home");
+            home.getModel().getIncomeItems().set(0, Money.ofUnits(100));
+            BudgetBase office = panel.create("office");
+            office.getModel().getSpendingItems().set(0, Money.ofUnits(30));
+
+            // a memory budget of 0 keeps only the selected budget resident
+            assertEquals(2, panel.getTabs().getTabCount());
+            assertFalse(workspace.isResident("home"));
+            assertSame(office, panel.getSelectedBudget());
+
+            panel.getTabs().setSelectedIndex(0);
+            BudgetBase reopened = panel.getSelectedBudget();
+            assertNotSame(home, reopened);
+            assertEquals(Money.ofUnits(100), reopened.getModel().getIncomeItems().get(0));
+            assertFalse(workspace.isResident("office"));
+
+            panel.close("home");
+            assertEquals(1, panel.getTabs().getTabCount());
+            assertTrue(workspace.contains("home"));
+            assertEquals(Money.ofUnits(30), panel.open("office").getModel().getSpendingItems().get(0));
+            panel.close();
+        });
+
+        try (Workspace workspace = new Workspace(directory)) {
+            assertEquals(Money.ofUnits(100), workspace.getIncome(TimePeriod.WEEKLY, workspace.getNames().subList(0, 1)));
+        }
+    }
+
+    @Test
+    void testCellEditIsSavedWhenItsBudgetIsEvicted() throws Exception {
+        onEdt(() -> {
+            Workspace workspace = new Workspace(directory, 0);
+            WorkspacePanel panel = new WorkspacePanel(null, workspace);
+            JTable table = panel.create("home").getIncomeTable();
+            table.editCellAt(0, LineItemTableModel.AMOUNT_COLUMN);
+            ((JTextField) table.getEditorComponent()).setText("12");
+
+            panel.create("office");
+
+            assertFalse(workspace.isResident("home"));
+            assertFalse(table.isEditing());
+            assertEquals(Money.ofUnits(12), panel.open("home").getModel().getIncomeItems().get(0));
+            panel.close();
+        });
+    }
+
+    private interface EdtTask {
+        void run() throws IOException;
+    }
+
+    private static void onEdt(EdtTask task) throws Exception {
+        Exception[] failure = new Exception[1];
+        try {
+            SwingUtilities.invokeAndWait(() -> {
+                try {
+                    task.run();
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package site.aberdeen;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WorkspaceTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testLeastRecentlyUsedBudgetsAreEvictedAndPagedBackIn() throws IOException {
+        try (Workspace workspace = new Workspace(directory, Long.MAX_VALUE)) {
+            for (int i = 0; i < 10; i++) {
+                Workspace.Budget budget = workspace.create("client" + i, lines(500, 0), lines(500, 0));
+                budget.getModel().getIncomeItems().set(0, 1000 + i);
+                if (i == 0) {
+                    workspace.setMemoryBudget(3 * budget.estimateBytes());
+                }
+            }
+            assertEquals(3, workspace.getResidentCount());
+            assertTrue(workspace.getResidentBytes() <= workspace.getMemoryBudget());
+            assertFalse(workspace.isResident("client0"));
+            assertTrue(workspace.isResident("client9"));
+            assertFalse(Files.exists(directory.resolve("client0.dat.journal")));
+
+            Workspace.Budget reopened = workspace.open("client0");
+            assertTrue(workspace.isResident("client0"));
+            assertEquals(1000, reopened.getModel().getTotalIncome());
+            assertEquals("Line 499", reopened.getModel().getSpendingItems().getName(499));
+            assertFalse(workspace.isResident("client7"));
+            assertEquals(3, workspace.getResidentCount());
+        }
+    }
+
+    @Test
+    void testAggregateTotalsDoNotNeedResidentBudgets() throws IOException {
+        try (Workspace workspace = new Workspace(directory)) {
+            workspace.create("checking", lines(2, 100_00), lines(1, 50_00));
+            Workspace.Budget savings = workspace.create("savings", lines(1, 1200_00), lines(0, 0));
+            savings.getModel().setPeriods(TimePeriod.MONTHLY, TimePeriod.MONTHLY, TimePeriod.MONTHLY);
+        }
+
+        try (Workspace workspace = new Workspace(directory, 0)) {
+            assertEquals(Arrays.asList("checking", "savings"), workspace.getNames());
+            assertEquals(0, workspace.getResidentCount());
+
+            assertEquals(150_00 + 276_92, workspace.getCashFlow(TimePeriod.WEEKLY));
+            assertEquals(1850_00, workspace.getCashFlow(TimePeriod.MONTHLY, Arrays.asList("checking", "savings")));
+            assertEquals(200_00, workspace.getIncome(TimePeriod.WEEKLY, Arrays.asList("checking")));
+            assertEquals(50_00, workspace.getSpending(TimePeriod.WEEKLY, Arrays.asList("checking", "savings")));
+            assertEquals(0, workspace.getResidentCount());
+        }
+    }
+
+    @Test
+    void testAggregateTotalsKeepEvictionOrder() throws IOException {
+        try (Workspace workspace = new Workspace(directory, Long.MAX_VALUE)) {
+            for (String name : Arrays.asList("a", "b", "c")) {
+                workspace.create(name, lines(100, 1), lines(100, 1));
+            }
+            workspace.open("c");
+            workspace.open("b");
+            workspace.open("a");
+
+            assertEquals(0, workspace.getCashFlow(TimePeriod.WEEKLY));
+            workspace.setMemoryBudget(workspace.getResidentBytes() * 2 / 3);
+
+            assertFalse(workspace.isResident("c"));
+            assertTrue(workspace.isResident("b"));
+            assertTrue(workspace.isResident("a"));
+        }
+    }
+
+    @Test
+    void testInvalidNamesAreRejected() throws IOException {
+        try (Workspace workspace = new Workspace(directory)) {
+            assertThrows(IllegalArgumentException.class, () -> workspace.create("../escape", lines(1, 0), lines(1, 0)));
+            assertThrows(IllegalArgumentException.class, () -> workspace.open("missing"));
+        }
+    }
+
+    private static LineItems lines(int count, long cents) {
+        LineItems items = new LineItems();
+        for (int i = 0; i < count; i++) {
+            items.add("Line " + i, cents);
+        }
+        return items;
+    }
+}